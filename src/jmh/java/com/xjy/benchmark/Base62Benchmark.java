@@ -0,0 +1,122 @@
+package com.xjy.benchmark;
+
+import com.xjy.SessionManager;
+import com.xjy.util.Base62Util;
+import com.xjy.util.SessionKeyGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base62编解码基准测试
+ * <p>
+ * 带Baseline后缀的方法是改用查找表之前的实现（HashMap&lt;Character, Integer&gt;逐字符查表、截取子串后解码），用于对比。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Base62Benchmark {
+    private static final int SAMPLES = 1024;
+    private static final int SESSION_KEY_LENGTH = 8;
+    private static final String BASE62_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final Map<Character, Integer> BASELINE_CHAR_TO_VALUE = new HashMap<>();
+
+    static {
+        for (int i = 0; i < BASE62_CHARACTERS.length(); i++) {
+            BASELINE_CHAR_TO_VALUE.put(BASE62_CHARACTERS.charAt(i), i);
+        }
+    }
+
+    private final int[] numbers = new int[SAMPLES];
+    private final String[] encoded = new String[SAMPLES];
+    private final String[] sessionKeys = new String[SAMPLES];
+    // 格式无效的Key：过长、含非Base62字符（如URL中的%、-）
+    private final String[] malformedKeys = new String[SAMPLES];
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        SessionKeyGenerator keyGenerator = new SessionKeyGenerator(SESSION_KEY_LENGTH);
+        for (int i = 0; i < SAMPLES; i++) {
+            // 覆盖不同长度的编码
+            numbers[i] = random.nextInt(Integer.MAX_VALUE) >>> random.nextInt(31);
+            encoded[i] = Base62Util.encode(numbers[i]);
+            sessionKeys[i] = keyGenerator.generate(numbers[i]);
+            malformedKeys[i] = (i & 1) == 0
+                    ? sessionKeys[i] + sessionKeys[i]
+                    : sessionKeys[i].substring(0, 3) + "%2" + sessionKeys[i].substring(5);
+        }
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base62Util.encode(numbers[index++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int decode() {
+        return Base62Util.decode(encoded[index++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int decodeBaseline() {
+        return baselineDecode(encoded[index++ & (SAMPLES - 1)]);
+    }
+
+    /**
+     * 从SessionKey解出客户ID：校验路径每次提交额度都会执行
+     */
+    @Benchmark
+    public int sessionKeyCustomerId() {
+        return SessionManager.customerIdOf(sessionKeys[index++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int sessionKeyCustomerIdBaseline() {
+        return baselineCustomerId(sessionKeys[index++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int malformedKey() {
+        return SessionManager.customerIdOf(malformedKeys[index++ & (SAMPLES - 1)]);
+    }
+
+    @Benchmark
+    public int malformedKeyBaseline() {
+        return baselineCustomerId(malformedKeys[index++ & (SAMPLES - 1)]);
+    }
+
+    private static int baselineCustomerId(String sessionKey) {
+        if (sessionKey == null || sessionKey.isBlank() || sessionKey.length() <= SESSION_KEY_LENGTH) {
+            return -1;
+        }
+        try {
+            return baselineDecode(sessionKey.substring(SESSION_KEY_LENGTH));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    private static int baselineDecode(String base62Str) {
+        long result = 0;
+        for (int i = 0; i < base62Str.length(); i++) {
+            char c = base62Str.charAt(i);
+            Integer value = BASELINE_CHAR_TO_VALUE.get(c);
+            if (value == null) {
+                throw new IllegalArgumentException("无效的Base62字符: " + c);
+            }
+            result = result * 62 + value;
+            if (result > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Base62字符串对应的数值超出Integer范围: " + base62Str);
+            }
+        }
+        return (int) result;
+    }
+}
@@ -0,0 +1,174 @@
+package com.xjy.benchmark;
+
+import com.xjy.SessionManager;
+import com.xjy.util.Base62Util;
+
+import java.math.BigInteger;
+import java.util.SplittableRandom;
+
+/**
+ * Base62编解码正确性检查（不是JMH基准测试，随benchmarks.jar一起构建，修改Base62Util或SessionKey解析后运行）：
+ * <ol>
+ *     <li>0 ~ Integer.MAX_VALUE全部整数编码后解码（字符区间和字节区间）必须得到原值</li>
+ *     <li>边界用例：最大值、溢出、超长、空串、非Base62字符</li>
+ *     <li>随机字符串（含非ASCII字符）分别经decode(String)和SessionManager.customerIdOf解析，结果必须与BigInteger参照实现一致</li>
+ * </ol>
+ * <pre>
+ * java -cp target/benchmarks.jar com.xjy.benchmark.Base62RoundTripCheck [随机用例数，默认20000000]
+ * </pre>
+ * 发现不一致时打印用例并以状态码1退出。
+ */
+public class Base62RoundTripCheck {
+    private static final String BASE62_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final BigInteger BASE = BigInteger.valueOf(62);
+    private static final BigInteger MAX_INT = BigInteger.valueOf(Integer.MAX_VALUE);
+    // 与SessionManager一致：8位随机前缀 + 客户ID的Base62编码
+    private static final int SESSION_KEY_PREFIX_LENGTH = 8;
+    private static final int MAX_REPORTED = 10;
+
+    private static long failures;
+
+    public static void main(String[] args) {
+        long randomCases = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+        long startNanos = System.nanoTime();
+        checkFullRange();
+        checkBoundaries();
+        checkRandomStrings(randomCases);
+        System.out.printf("Base62 round-trip check finished in %.1f s, %d failures%n",
+                (System.nanoTime() - startNanos) / 1e9, failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * 全部非负int的编码-解码往返
+     */
+    private static void checkFullRange() {
+        char[] chars = new char[Base62Util.MAX_ENCODED_LENGTH];
+        byte[] bytes = new byte[Base62Util.MAX_ENCODED_LENGTH];
+        StringBuilder sb = new StringBuilder(Base62Util.MAX_ENCODED_LENGTH);
+        for (long n = 0; n <= Integer.MAX_VALUE; n++) {
+            int number = (int) n;
+            int end = Base62Util.encodeTo(number, chars, 0);
+            sb.setLength(0);
+            sb.append(chars, 0, end);
+            for (int i = 0; i < end; i++) {
+                bytes[i] = (byte) chars[i];
+            }
+            if (Base62Util.decode(sb, 0, end) != number || Base62Util.decode(bytes, 0, end) != number) {
+                fail("round trip of " + number + " via \"" + sb + "\"");
+            }
+        }
+        System.out.println("Full int range round trip checked");
+    }
+
+    private static void checkBoundaries() {
+        expect(Base62Util.encode(Integer.MAX_VALUE).length() == Base62Util.MAX_ENCODED_LENGTH, "encode(MAX_VALUE) length");
+        expect(Base62Util.decode("CVUmlB") == Integer.MAX_VALUE, "decode(\"CVUmlB\") == MAX_VALUE");
+        expect(Base62Util.decode("CVUmlC", 0, 6) == -1, "overflow by one returns -1");
+        expect(Base62Util.decode("999999", 0, 6) == -1, "largest 6-char value returns -1");
+        expect(Base62Util.decode("AAAAAAB", 0, 7) == -1, "7 chars with leading zeros returns -1");
+        expect(Base62Util.decode("", 0, 0) == -1, "empty range returns -1");
+        expect(Base62Util.decode("ab-c", 0, 4) == -1, "non-Base62 character returns -1");
+        expect(throwsIllegalArgument("ab-c"), "decode(String) throws on non-Base62 character");
+        expect(throwsIllegalArgument("AAAAAAB"), "decode(String) throws on more than 6 characters");
+        expect(throwsIllegalArgument(""), "decode(String) throws on empty string");
+        System.out.println("Boundary cases checked");
+    }
+
+    /**
+     * 随机字符串与BigInteger参照实现对比
+     */
+    private static void checkRandomStrings(long cases) {
+        SplittableRandom random = new SplittableRandom(1);
+        for (long c = 0; c < cases; c++) {
+            int length = random.nextInt(16);
+            char[] chars = new char[length];
+            byte[] bytes = new byte[length];
+            boolean ascii = true;
+            for (int i = 0; i < length; i++) {
+                // 大部分为ASCII（其中约一半为Base62字符），少量为任意字符
+                int kind = random.nextInt(10);
+                chars[i] = kind == 0 ? (char) random.nextInt(0x10000)
+                        : kind < 5 ? (char) random.nextInt(128)
+                        : BASE62_CHARACTERS.charAt(random.nextInt(BASE62_CHARACTERS.length()));
+                bytes[i] = (byte) chars[i];
+                ascii &= chars[i] < 128;
+            }
+            String s = new String(chars);
+
+            int expected = referenceDecode(s);
+            int decoded;
+            try {
+                decoded = Base62Util.decode(s);
+            } catch (IllegalArgumentException e) {
+                decoded = -1;
+            }
+            if (decoded != (length > Base62Util.MAX_ENCODED_LENGTH ? -1 : expected)) {
+                fail("decode(\"" + s + "\") = " + decoded + ", expected " + expected);
+            }
+
+            int expectedCustomerId = length <= SESSION_KEY_PREFIX_LENGTH
+                    || length > SESSION_KEY_PREFIX_LENGTH + Base62Util.MAX_ENCODED_LENGTH
+                    || !isReferenceBase62(s.substring(0, SESSION_KEY_PREFIX_LENGTH))
+                    ? -1 : referenceDecode(s.substring(SESSION_KEY_PREFIX_LENGTH));
+            if (SessionManager.customerIdOf(s) != expectedCustomerId) {
+                fail("customerIdOf(\"" + s + "\") = " + SessionManager.customerIdOf(s) + ", expected " + expectedCustomerId);
+            }
+            if (ascii && SessionManager.customerIdOf(bytes, 0, length) != expectedCustomerId) {
+                fail("customerIdOf(bytes of \"" + s + "\") = " + SessionManager.customerIdOf(bytes, 0, length)
+                        + ", expected " + expectedCustomerId);
+            }
+        }
+        System.out.println(cases + " random strings checked");
+    }
+
+    /**
+     * 参照实现：任意长度，全部为Base62字符且数值不超过Integer.MAX_VALUE时返回数值，否则返回-1
+     */
+    private static int referenceDecode(String s) {
+        if (s.isEmpty()) {
+            return -1;
+        }
+        BigInteger value = BigInteger.ZERO;
+        for (int i = 0; i < s.length(); i++) {
+            int digit = BASE62_CHARACTERS.indexOf(s.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = value.multiply(BASE).add(BigInteger.valueOf(digit));
+        }
+        return value.compareTo(MAX_INT) > 0 ? -1 : value.intValue();
+    }
+
+    private static boolean isReferenceBase62(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (BASE62_CHARACTERS.indexOf(s.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean throwsIllegalArgument(String s) {
+        try {
+            Base62Util.decode(s);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    private static void expect(boolean condition, String description) {
+        if (!condition) {
+            fail(description);
+        }
+    }
+
+    private static void fail(String description) {
+        if (++failures <= MAX_REPORTED) {
+            System.out.println("FAILED: " + description);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.xjy.benchmark;
+
+import com.xjy.util.HttpUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求参数解析基准测试
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestParsingBenchmark {
+    private final String query = "sessionKey=QWERTY12BXs3&stake=4500&channel=web%20mobile";
+    private final byte[] stakeBody = "4500".getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public Map<String, String> parseFormParams() {
+        return HttpUtils.parseFormParams(query);
+    }
+
+    @Benchmark
+    public String getQueryParam() {
+        return HttpUtils.getQueryParam(query, "sessionKey");
+    }
+
+    @Benchmark
+    public int parsePositiveInt() {
+        return HttpUtils.parsePositiveInt(stakeBody);
+    }
+}
@@ -0,0 +1,249 @@
+package com.xjy.benchmark;
+
+import com.xjy.SessionManager;
+import com.xjy.model.Session;
+import com.xjy.util.Base62Util;
+import com.xjy.util.SessionKeyGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * SessionManager基准测试：获取/创建Session、校验Session、生成会话密钥
+ * <p>
+ * 并发场景可通过命令行参数 -t 指定线程数；contended*固定64线程，按90%校验/10%获取的比例集中访问少量或大量客户，
+ * Baseline后缀为改为无锁之前的分段读写锁实现。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionManagerBenchmark {
+    private static final String AVAILABLE_CHARSET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /**
+     * 已登录客户：预先为customers个客户创建Session
+     */
+    @State(Scope.Benchmark)
+    public static class ExistingSessions {
+        @Param({"100000"})
+        public int customers;
+
+        public SessionManager sessionManager;
+        public String[] sessionKeys;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sessionManager = new SessionManager();
+            sessionKeys = new String[customers];
+            for (int i = 0; i < customers; i++) {
+                sessionKeys[i] = sessionManager.getOrCreateSession(i + 1);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            sessionManager.shutdown();
+        }
+    }
+
+    /**
+     * 新客户登录：每次调用都创建新Session，每轮迭代重建以控制内存
+     */
+    @State(Scope.Benchmark)
+    public static class NewSessions {
+        public SessionManager sessionManager;
+        public final AtomicInteger nextCustomerId = new AtomicInteger();
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            sessionManager = new SessionManager();
+            nextCustomerId.set(0);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            sessionManager.shutdown();
+        }
+    }
+
+    /**
+     * 高并发混合访问：customers个客户均已登录，当前实现与分段读写锁实现各一份
+     */
+    @State(Scope.Benchmark)
+    public static class ContendedSessions {
+        @Param({"16", "100000"})
+        public int customers;
+
+        public SessionManager sessionManager;
+        public StripedLockSessionManager baseline;
+        public String[] sessionKeys;
+        public String[] baselineSessionKeys;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            sessionManager = new SessionManager();
+            baseline = new StripedLockSessionManager();
+            sessionKeys = new String[customers];
+            baselineSessionKeys = new String[customers];
+            for (int i = 0; i < customers; i++) {
+                sessionKeys[i] = sessionManager.getOrCreateSession(i + 1);
+                baselineSessionKeys[i] = baseline.getOrCreateSession(i + 1);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            sessionManager.shutdown();
+        }
+    }
+
+    /**
+     * 改为无锁之前的实现：每次访问按客户ID取32个分段读写锁之一，校验和读取持读锁，创建持写锁
+     * <p>
+     * 只保留加锁结构，会话密钥改用当前的生成器、不维护过期时间轮和统计，对比只体现加锁的开销。
+     */
+    public static class StripedLockSessionManager {
+        private static final long SESSION_TTL = 10 * 60 * 1000L;
+        private static final int SESSION_KEY_LENGTH = 8;
+        private static final int LOCK_POOL_SIZE = 32;
+
+        private final Map<Integer, Session> customerSessionMap = new ConcurrentHashMap<>();
+        private final ReentrantReadWriteLock[] customerLocks = new ReentrantReadWriteLock[LOCK_POOL_SIZE];
+        private final SessionKeyGenerator keyGenerator = new SessionKeyGenerator(SESSION_KEY_LENGTH);
+
+        public StripedLockSessionManager() {
+            for (int i = 0; i < LOCK_POOL_SIZE; i++) {
+                customerLocks[i] = new ReentrantReadWriteLock();
+            }
+        }
+
+        private ReentrantReadWriteLock getLockForCustomer(int customerId) {
+            return customerLocks[Math.abs(customerId % LOCK_POOL_SIZE)];
+        }
+
+        public String getOrCreateSession(int customerId) {
+            long now = System.currentTimeMillis();
+            ReentrantReadWriteLock lock = getLockForCustomer(customerId);
+            lock.readLock().lock();
+            try {
+                Session existing = customerSessionMap.get(customerId);
+                if (existing != null && existing.getExpireTime() >= now) {
+                    return existing.getSessionKey();
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            lock.writeLock().lock();
+            try {
+                Session existing = customerSessionMap.get(customerId);
+                if (existing != null && existing.getExpireTime() >= now) {
+                    return existing.getSessionKey();
+                }
+                String newKey = keyGenerator.generate(customerId);
+                customerSessionMap.put(customerId, new Session(customerId, newKey, now + SESSION_TTL));
+                return newKey;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        public Integer validateSession(String sessionKey) {
+            if (sessionKey == null || sessionKey.isBlank() || sessionKey.length() <= SESSION_KEY_LENGTH) {
+                return null;
+            }
+            int customerId;
+            try {
+                customerId = Base62Util.decode(sessionKey.substring(SESSION_KEY_LENGTH));
+            } catch (Exception e) {
+                return null;
+            }
+            ReentrantReadWriteLock lock = getLockForCustomer(customerId);
+            lock.readLock().lock();
+            try {
+                Session session = customerSessionMap.get(customerId);
+                if (session == null
+                        || !session.getSessionKey().equals(sessionKey)
+                        || session.getExpireTime() < System.currentTimeMillis()) {
+                    return null;
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            return customerId;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class KeyGeneratorState {
+        public final SessionKeyGenerator keyGenerator = new SessionKeyGenerator(8);
+    }
+
+    @Benchmark
+    public String getExistingSession(ExistingSessions state) {
+        return state.sessionManager.getOrCreateSession(1 + ThreadLocalRandom.current().nextInt(state.customers));
+    }
+
+    @Benchmark
+    public String createSession(NewSessions state) {
+        return state.sessionManager.getOrCreateSession(state.nextCustomerId.incrementAndGet());
+    }
+
+    @Benchmark
+    public Integer validateSession(ExistingSessions state) {
+        return state.sessionManager.validateSession(
+                state.sessionKeys[ThreadLocalRandom.current().nextInt(state.customers)]);
+    }
+
+    /**
+     * 64线程混合访问：90%校验Session，10%获取Session（已登录，走读路径）
+     */
+    @Benchmark
+    @Threads(64)
+    public Object contended(ContendedSessions state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(state.customers);
+        if (random.nextInt(10) == 0) {
+            return state.sessionManager.getOrCreateSession(index + 1);
+        }
+        return state.sessionManager.validateSession(state.sessionKeys[index]);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object contendedBaseline(ContendedSessions state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int index = random.nextInt(state.customers);
+        if (random.nextInt(10) == 0) {
+            return state.baseline.getOrCreateSession(index + 1);
+        }
+        return state.baseline.validateSession(state.baselineSessionKeys[index]);
+    }
+
+    @Benchmark
+    public String generateKey(KeyGeneratorState state) {
+        return state.keyGenerator.generate(ThreadLocalRandom.current().nextInt(1 << 24));
+    }
+
+    /**
+     * 旧实现对照：每次新建SecureRandom并逐字符取随机数
+     */
+    @Benchmark
+    public String generateKeyLegacy() {
+        SecureRandom random = new SecureRandom();
+        StringBuilder sb = new StringBuilder(8);
+        for (int i = 0; i < 8; i++) {
+            sb.append(AVAILABLE_CHARSET.charAt(random.nextInt(AVAILABLE_CHARSET.length())));
+        }
+        sb.append(Base62Util.encode(ThreadLocalRandom.current().nextInt(1 << 24)));
+        return sb.toString();
+    }
+}
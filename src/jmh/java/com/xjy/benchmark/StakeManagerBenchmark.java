@@ -0,0 +1,157 @@
+package com.xjy.benchmark;
+
+import com.xjy.StakeManager;
+import com.xjy.store.HeapStakeStore;
+import com.xjy.store.OffHeapStakeStore;
+import com.xjy.store.StakeStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * StakeManager基准测试：并发写入、Top20查询、名次与分页查询、结果格式化
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StakeManagerBenchmark {
+
+    /**
+     * 并发写入场景：所有线程共享同一个StakeManager，offers控制写入分散到多少个投注项，store选择堆内/堆外存储
+     */
+    @State(Scope.Benchmark)
+    public static class WriteState {
+        @Param({"1", "1000"})
+        public int offers;
+
+        @Param({"100000"})
+        public int customers;
+
+        @Param({"heap", "offheap"})
+        public String store;
+
+        public StakeManager stakeManager;
+        private StakeStore stakeStore;
+        private Path storeDir;
+
+        @Setup(Level.Iteration)
+        public void setup() throws IOException {
+            if (store.equals("offheap")) {
+                storeDir = Files.createTempDirectory("stake-store");
+                stakeStore = new OffHeapStakeStore(storeDir, 1L << 30);
+            } else {
+                stakeStore = new HeapStakeStore();
+            }
+            stakeManager = new StakeManager(stakeStore);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            stakeStore.close();
+            if (storeDir != null) {
+                try (Stream<Path> paths = Files.walk(storeDir)) {
+                    for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                        Files.delete(path);
+                    }
+                }
+                storeDir = null;
+            }
+        }
+    }
+
+    /**
+     * 查询场景：单个投注项预先写入customers个客户的额度
+     */
+    @State(Scope.Benchmark)
+    public static class ReadState {
+        @Param({"1000", "100000", "1000000"})
+        public int customers;
+
+        public StakeManager stakeManager;
+        public List<Map.Entry<Integer, Integer>> topStakes;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            stakeManager = new StakeManager();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int customerId = 1; customerId <= customers; customerId++) {
+                stakeManager.saveStake(1, customerId, 1 + random.nextInt(1_000_000));
+            }
+            topStakes = stakeManager.getTopStakes(1);
+            stakeManager.getRank(1, 1); // 预先建立名次索引
+        }
+    }
+
+    /**
+     * 批量查询场景：offers个投注项，每个预先写入1000个客户的额度
+     */
+    @State(Scope.Benchmark)
+    public static class MultiReadState {
+        @Param({"10", "100"})
+        public int offers;
+
+        public StakeManager stakeManager;
+        public int[] betOfferIds;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            stakeManager = new StakeManager();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            betOfferIds = new int[offers];
+            for (int i = 0; i < offers; i++) {
+                betOfferIds[i] = i + 1;
+                for (int customerId = 1; customerId <= 1000; customerId++) {
+                    stakeManager.saveStake(i + 1, customerId, 1 + random.nextInt(1_000_000));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void saveStake(WriteState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        state.stakeManager.saveStake(1 + random.nextInt(state.offers),
+                1 + random.nextInt(state.customers), 1 + random.nextInt(1_000_000));
+    }
+
+    @Benchmark
+    public List<Map.Entry<Integer, Integer>> getTopStakes(ReadState state) {
+        return state.stakeManager.getTopStakes(1);
+    }
+
+    @Benchmark
+    public byte[] getTopStakesResponse(ReadState state) {
+        return state.stakeManager.getTopStakesResponse(1);
+    }
+
+    @Benchmark
+    public byte[] getTopStakesResponses(MultiReadState state) {
+        return state.stakeManager.getTopStakesResponses(state.betOfferIds, state.betOfferIds.length);
+    }
+
+    @Benchmark
+    public int getRank(ReadState state) {
+        return state.stakeManager.getRank(1, 1 + ThreadLocalRandom.current().nextInt(state.customers));
+    }
+
+    @Benchmark
+    public List<Map.Entry<Integer, Integer>> getStakesPage(ReadState state) {
+        return state.stakeManager.getStakesPage(1, 1 + ThreadLocalRandom.current().nextInt(state.customers), 50);
+    }
+
+    @Benchmark
+    public String formatEntryList(ReadState state) {
+        return state.stakeManager.formatEntryList(state.topStakes);
+    }
+}
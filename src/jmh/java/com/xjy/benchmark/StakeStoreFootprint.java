@@ -0,0 +1,88 @@
+package com.xjy.benchmark;
+
+import com.xjy.store.HeapStakeStore;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 额度存储内存占用测量（不是JMH基准测试，随benchmarks.jar一起构建，修改额度存储结构后运行）：
+ * <ol>
+ *     <li>分别向嵌套装箱的ConcurrentHashMap（原实现）和HeapStakeStore写入相同的额度数据</li>
+ *     <li>写入前后各执行多轮GC，以堆使用量之差作为存储的保留堆大小，并换算为每条记录的字节数</li>
+ *     <li>两种分布：少量投注项、每个投注项大量客户（10 × 1M），以及大量投注项、每个投注项少量客户（1000 × 10k）</li>
+ * </ol>
+ * <pre>
+ * java -XX:+UseParallelGC -Xmx4g -cp target/benchmarks.jar com.xjy.benchmark.StakeStoreFootprint [额度记录总数，默认10000000]
+ * </pre>
+ * 结果与JVM版本、GC和是否开启压缩指针有关，对比时应使用相同的JVM参数。
+ */
+public class StakeStoreFootprint {
+    private static final int GC_ROUNDS = 5;
+    private static final int MAX_STAKE = 1_000_000;
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) {
+        long totalStakes = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        System.out.printf("%,d stakes, %s %s, max heap %d MB%n", totalStakes,
+                System.getProperty("java.vm.name"), System.getProperty("java.version"),
+                Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%-20s %-18s %12s %10s%n", "layout", "store", "retained MB", "B/stake");
+        for (int offers : new int[]{10, 1000}) {
+            int customers = (int) (totalStakes / offers);
+            String layout = offers + " x " + customers;
+            measureNested(layout, offers, customers);
+            measureHeapStore(layout, offers, customers);
+        }
+    }
+
+    /**
+     * 原实现：投注项ID → (客户ID → 额度)，均为装箱的ConcurrentHashMap
+     */
+    private static void measureNested(String layout, int offers, int customers) {
+        long before = usedHeapAfterGc();
+        ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, Integer>> store = new ConcurrentHashMap<>();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int offer = 0; offer < offers; offer++) {
+            for (int customer = 0; customer < customers; customer++) {
+                store.computeIfAbsent(offer, k -> new ConcurrentHashMap<>())
+                        .merge(customer, 1 + random.nextInt(MAX_STAKE), Math::max);
+            }
+        }
+        long retained = usedHeapAfterGc() - before;
+        Reference.reachabilityFence(store);
+        report(layout, "nested CHM", retained, (long) offers * customers);
+    }
+
+    private static void measureHeapStore(String layout, int offers, int customers) {
+        long before = usedHeapAfterGc();
+        HeapStakeStore store = new HeapStakeStore();
+        SplittableRandom random = new SplittableRandom(1);
+        for (int offer = 0; offer < offers; offer++) {
+            for (int customer = 0; customer < customers; customer++) {
+                store.mergeMax(offer, customer, 1 + random.nextInt(MAX_STAKE));
+            }
+        }
+        long retained = usedHeapAfterGc() - before;
+        long estimated = store.estimatedHeapBytes();
+        Reference.reachabilityFence(store);
+        report(layout, "HeapStakeStore", retained, (long) offers * customers);
+        System.out.printf("%-20s %-18s %12d %10.1f%n", layout, "  (estimated)", estimated >> 20,
+                (double) estimated / ((long) offers * customers));
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < GC_ROUNDS; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void report(String layout, String store, long retainedBytes, long stakes) {
+        System.out.printf("%-20s %-18s %12d %10.1f%n", layout, store, retainedBytes >> 20, (double) retainedBytes / stakes);
+    }
+}
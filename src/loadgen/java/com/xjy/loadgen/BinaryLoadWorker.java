@@ -0,0 +1,161 @@
+package com.xjy.loadgen;
+
+import com.xjy.binary.BinaryClient;
+import com.xjy.binary.BinaryStatusException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 二进制协议压测线程：独占一条连接，保持最多pipeline个请求在途，请求比例与HTTP压测相同
+ * <p>
+ * 结果在连接的读取线程中记录，状态按HTTP接口的对应状态码统计，便于与HTTP压测结果直接对比。
+ */
+public class BinaryLoadWorker implements Runnable {
+    private final LoadGenerator generator;
+    private final int pipeline;
+    private final EndpointStats[] stats = new EndpointStats[Endpoint.values().length];
+    // 在途请求许可，压测结束时取回全部许可即表示所有请求都已记录
+    private final Semaphore permits;
+
+    private BinaryClient client;
+    // 连接读写失败（由读取线程设置），下次发送前重新连接
+    private volatile boolean broken;
+
+    public BinaryLoadWorker(LoadGenerator generator, int pipeline) {
+        this.generator = generator;
+        this.pipeline = pipeline;
+        this.permits = new Semaphore(pipeline);
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new EndpointStats();
+        }
+    }
+
+    public EndpointStats[] getStats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long intervalNanos = generator.getIntervalNanos();
+        long deadline = generator.getDeadlineNanos();
+        long nextSend = System.nanoTime();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                long start;
+                if (intervalNanos > 0) {
+                    if (nextSend > now) {
+                        LockSupport.parkNanos(nextSend - now);
+                    }
+                    start = nextSend;
+                    nextSend += intervalNanos;
+                } else {
+                    start = now;
+                }
+                permits.acquireUninterruptibly();
+                int customerIndex = random.nextInt(generator.getCustomers());
+                Endpoint endpoint = generator.pickEndpoint(random.nextInt(100));
+                String sessionKey = generator.getSessionKey(customerIndex);
+                if (endpoint == Endpoint.STAKE && sessionKey == null) {
+                    // 尚未登录的客户先获取会话
+                    endpoint = Endpoint.SESSION;
+                }
+                if (!execute(endpoint, customerIndex, sessionKey, random, start)) {
+                    // 连接失败时稍作等待，避免空转
+                    LockSupport.parkNanos(10_000_000L);
+                }
+            }
+            // 等待在途请求全部返回
+            permits.acquireUninterruptibly(pipeline);
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * 发送一次请求，响应到达后记录结果
+     * @return 连接不可用时返回false
+     */
+    private boolean execute(Endpoint endpoint, int customerIndex, String sessionKey, ThreadLocalRandom random,
+                            long start) {
+        if (client != null && broken) {
+            // 连接已断开（在途请求已全部失败），重新连接
+            client.close();
+            client = null;
+        }
+        if (client == null) {
+            try {
+                broken = false;
+                client = new BinaryClient(generator.getHost(), generator.getPort(), pipeline);
+            } catch (IOException e) {
+                record(endpoint, EndpointStats.IO_ERROR, start);
+                return false;
+            }
+        }
+        int customerId = customerIndex + 1;
+        CompletableFuture<?> future;
+        int okStatus = 204;
+        switch (endpoint) {
+            case SESSION:
+                okStatus = 200;
+                future = client.getSession(customerId)
+                        .thenAccept(key -> generator.setSessionKey(customerIndex, key));
+                break;
+            case STAKE:
+                future = client.postStake(sessionKey, generator.pickOffer(random),
+                        1 + random.nextInt(generator.getMaxStake()));
+                break;
+            case STAKE_INVALID_KEY:
+                future = client.postStake(LoadWorker.forgeSessionKey(customerId, random), generator.pickOffer(random),
+                        1 + random.nextInt(generator.getMaxStake()));
+                break;
+            default:
+                okStatus = 200;
+                future = client.getHighStakes(generator.pickOffer(random));
+                break;
+        }
+        int status = okStatus;
+        future.whenComplete((result, error) -> {
+            int recorded = status;
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                if (cause instanceof BinaryStatusException) {
+                    recorded = ((BinaryStatusException) cause).getHttpStatus();
+                } else {
+                    recorded = EndpointStats.IO_ERROR;
+                    broken = true;
+                }
+                if (endpoint == Endpoint.STAKE && recorded == 401) {
+                    // 会话已过期，下次重新获取
+                    generator.setSessionKey(customerIndex, null);
+                }
+            }
+            record(endpoint, recorded, start);
+        });
+        return true;
+    }
+
+    /**
+     * 记录结果并归还在途许可（读取线程和重连失败时的压测线程都会调用）
+     */
+    private void record(Endpoint endpoint, int status, long start) {
+        long end = System.nanoTime();
+        if (start >= generator.getMeasureStartNanos()) {
+            synchronized (stats) {
+                stats[endpoint.ordinal()].record(status, (end - start) / 1000, generator.getDeadlineMicros());
+            }
+        }
+        permits.release();
+    }
+}
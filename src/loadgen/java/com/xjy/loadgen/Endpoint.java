@@ -0,0 +1,22 @@
+package com.xjy.loadgen;
+
+/**
+ * 压测请求类型
+ */
+public enum Endpoint {
+    SESSION("GET /{customerId}/session"),
+    STAKE("POST /{betOfferId}/stake"),
+    // 使用伪造/过期的会话密钥提交，预期401
+    STAKE_INVALID_KEY("POST /{betOfferId}/stake (invalid key)"),
+    HIGH_STAKES("GET /{betOfferId}/highstakes");
+
+    private final String label;
+
+    Endpoint(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,78 @@
+package com.xjy.loadgen;
+
+/**
+ * 单个请求类型的统计：延迟直方图 + 状态码分布
+ * <p>
+ * 非线程安全：每个压测线程各自记录，结束后合并。
+ */
+public class EndpointStats {
+    // 状态码为-1表示连接或读写异常
+    public static final int IO_ERROR = -1;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final long[] statusCounts = new long[600];
+    private long ioErrors;
+    // 有效吞吐：在客户端截止时间内返回、且不是5xx或连接异常的响应数
+    private long goodCount;
+
+    /**
+     * 记录一次请求结果
+     * @param status HTTP状态码，IO_ERROR表示请求失败
+     * @param latencyMicros 延迟（微秒）
+     * @param deadlineMicros 客户端截止时间（微秒），超过即视为客户端已放弃
+     */
+    public void record(int status, long latencyMicros, long deadlineMicros) {
+        latency.record(latencyMicros);
+        if (status >= 0 && status < 500 && latencyMicros <= deadlineMicros) {
+            goodCount++;
+        }
+        if (status >= 0 && status < statusCounts.length) {
+            statusCounts[status]++;
+        } else {
+            ioErrors++;
+        }
+    }
+
+    public void add(EndpointStats other) {
+        latency.add(other.latency);
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] += other.statusCounts[i];
+        }
+        ioErrors += other.ioErrors;
+        goodCount += other.goodCount;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getGoodCount() {
+        return goodCount;
+    }
+
+    public long getIoErrors() {
+        return ioErrors;
+    }
+
+    /**
+     * 状态码分布，如 "204:1200 401:35"
+     */
+    public String formatStatusCounts() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statusCounts.length; i++) {
+            if (statusCounts[i] > 0) {
+                if (sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(i).append(':').append(statusCounts[i]);
+            }
+        }
+        if (ioErrors > 0) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append("io-error:").append(ioErrors);
+        }
+        return sb.toString();
+    }
+}
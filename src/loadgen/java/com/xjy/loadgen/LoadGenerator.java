@@ -0,0 +1,247 @@
+package com.xjy.loadgen;
+
+import com.xjy.ServerConfig;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 端到端压测工具：仅依赖JDK，通过多条keep-alive连接对本地服务发送混合请求，输出各接口的吞吐与延迟分位
+ * <p>
+ * 请求组成：获取会话、有效会话提交额度、伪造会话提交额度、查询Top20（集中在少数热门投注项）。
+ * 有效吞吐（goodput）只统计在客户端截止时间（--deadlineMs）内返回且不是5xx的响应，用于衡量过载时的表现。
+ * <p>
+ * --protocol=binary 时改为压测二进制协议端口（--port指向--binaryPort），每条连接保持--pipeline个请求在途，
+ * 请求比例和统计方式不变，状态按HTTP接口的对应状态码输出，可直接与HTTP压测结果对比。
+ * 用法（mvn -P loadgen package 构建）：java -jar betting-stake-service-loadgen.jar --port=8001 --connections=32 --duration=30
+ */
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final boolean binary;
+    // 二进制协议每条连接的在途请求数（HTTP固定为1）
+    private final int pipeline;
+    private final int connections;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    private final int rate;
+    private final long deadlineMicros;
+    private final int customers;
+    private final int offers;
+    private final int hotOffers;
+    private final int hotPercent;
+    private final int maxStake;
+    // 请求比例累计阈值：[0, sessionEnd)获取会话，[sessionEnd, stakeEnd)提交额度，依此类推，其余为查询
+    private final int sessionEnd;
+    private final int stakeEnd;
+    private final int invalidStakeEnd;
+
+    // 各客户已获取的会话密钥（所有压测线程共享），按客户下标存放
+    private final AtomicReferenceArray<String> sessionKeys;
+
+    private long measureStartNanos;
+    private long deadlineNanos;
+
+    public LoadGenerator(ServerConfig config) {
+        this.host = config.getString("host", "127.0.0.1");
+        this.port = config.getInt("port", 8001);
+        String protocol = config.getString("protocol", "http");
+        if (!protocol.equalsIgnoreCase("http") && !protocol.equalsIgnoreCase("binary")) {
+            throw new IllegalArgumentException("Unknown protocol: " + protocol + " (expected http or binary)");
+        }
+        this.binary = protocol.equalsIgnoreCase("binary");
+        this.pipeline = binary ? positive(config, "pipeline", 16) : 1;
+        this.connections = positive(config, "connections", 16);
+        this.durationSeconds = positive(config, "duration", 30);
+        this.warmupSeconds = Math.max(0, config.getInt("warmup", 5));
+        this.rate = Math.max(0, config.getInt("rate", 0));
+        this.deadlineMicros = positive(config, "deadlineMs", 1000) * 1000L;
+        this.customers = positive(config, "customers", 10000);
+        this.offers = positive(config, "offers", 1000);
+        this.hotOffers = Math.min(offers, positive(config, "hotOffers", 10));
+        this.hotPercent = percent(config, "hotPercent", 80);
+        this.maxStake = positive(config, "maxStake", 100000);
+        int sessionPercent = percent(config, "sessionPercent", 10);
+        int stakePercent = percent(config, "stakePercent", 40);
+        int invalidStakePercent = percent(config, "invalidStakePercent", 5);
+        if (sessionPercent + stakePercent + invalidStakePercent > 100) {
+            throw new IllegalArgumentException("sessionPercent + stakePercent + invalidStakePercent must not exceed 100");
+        }
+        this.sessionEnd = sessionPercent;
+        this.stakeEnd = sessionEnd + stakePercent;
+        this.invalidStakeEnd = stakeEnd + invalidStakePercent;
+        this.sessionKeys = new AtomicReferenceArray<>(customers);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator(new ServerConfig(args));
+        generator.printSettings();
+        EndpointStats[] total = generator.run();
+        generator.printReport(total);
+    }
+
+    /**
+     * 启动全部压测线程，等待结束后合并统计结果
+     */
+    public EndpointStats[] run() throws InterruptedException {
+        long now = System.nanoTime();
+        measureStartNanos = now + warmupSeconds * 1_000_000_000L;
+        deadlineNanos = measureStartNanos + durationSeconds * 1_000_000_000L;
+
+        EndpointStats[][] workerStats = new EndpointStats[connections][];
+        Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            Runnable worker;
+            if (binary) {
+                BinaryLoadWorker binaryWorker = new BinaryLoadWorker(this, pipeline);
+                workerStats[i] = binaryWorker.getStats();
+                worker = binaryWorker;
+            } else {
+                LoadWorker httpWorker = new LoadWorker(this);
+                workerStats[i] = httpWorker.getStats();
+                worker = httpWorker;
+            }
+            threads[i] = new Thread(worker, "loadgen-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        EndpointStats[] total = new EndpointStats[Endpoint.values().length];
+        for (int i = 0; i < total.length; i++) {
+            total[i] = new EndpointStats();
+            for (EndpointStats[] stats : workerStats) {
+                total[i].add(stats[i]);
+            }
+        }
+        return total;
+    }
+
+    private void printSettings() {
+        System.out.printf("Target %s:%d (%s), %d connections, %ds warmup + %ds measured, %s, goodput deadline %d ms%n",
+                host, port, binary ? "binary, pipeline " + pipeline : "http", connections, warmupSeconds, durationSeconds,
+                rate > 0 ? "fixed rate " + rate + " req/s" : "closed loop", deadlineMicros / 1000);
+        System.out.printf("Mix: session %d%%, stake %d%%, invalid-key stake %d%%, highstakes %d%%; "
+                        + "%d customers, %d offers (%d%% of offer traffic on %d hot offers)%n",
+                sessionEnd, stakeEnd - sessionEnd, invalidStakeEnd - stakeEnd, 100 - invalidStakeEnd,
+                customers, offers, hotPercent, hotOffers);
+    }
+
+    private void printReport(EndpointStats[] stats) {
+        System.out.printf("%n%-40s %10s %10s %10s %8s %8s %8s %8s %8s %8s  %s%n",
+                "endpoint (latency in ms)", "count", "req/s", "goodput/s", "mean", "p50", "p90", "p99", "p99.9", "max",
+                "status");
+        EndpointStats all = new EndpointStats();
+        for (Endpoint endpoint : Endpoint.values()) {
+            EndpointStats endpointStats = stats[endpoint.ordinal()];
+            all.add(endpointStats);
+            printLine(endpoint.label(), endpointStats);
+        }
+        printLine("total", all);
+    }
+
+    private void printLine(String label, EndpointStats stats) {
+        LatencyHistogram latency = stats.getLatency();
+        System.out.printf("%-40s %10d %10.1f %10.1f %8.2f %8.2f %8.2f %8.2f %8.2f %8.2f  %s%n",
+                label, latency.getTotalCount(), (double) latency.getTotalCount() / durationSeconds,
+                (double) stats.getGoodCount() / durationSeconds,
+                latency.getMean() / 1000.0,
+                latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(90) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0,
+                latency.getValueAtPercentile(99.9) / 1000.0,
+                latency.getMaxValue() / 1000.0,
+                stats.formatStatusCounts());
+    }
+
+    /**
+     * 按配置比例选择请求类型
+     * @param roll 0~99的随机数
+     */
+    Endpoint pickEndpoint(int roll) {
+        if (roll < sessionEnd) {
+            return Endpoint.SESSION;
+        }
+        if (roll < stakeEnd) {
+            return Endpoint.STAKE;
+        }
+        if (roll < invalidStakeEnd) {
+            return Endpoint.STAKE_INVALID_KEY;
+        }
+        return Endpoint.HIGH_STAKES;
+    }
+
+    /**
+     * 选择投注项：hotPercent比例的请求落在前hotOffers个热门投注项上
+     */
+    int pickOffer(ThreadLocalRandom random) {
+        if (random.nextInt(100) < hotPercent) {
+            return 1 + random.nextInt(hotOffers);
+        }
+        return 1 + random.nextInt(offers);
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    String getHostHeader() {
+        return host + ":" + port;
+    }
+
+    int getCustomers() {
+        return customers;
+    }
+
+    String getSessionKey(int customerIndex) {
+        return sessionKeys.get(customerIndex);
+    }
+
+    void setSessionKey(int customerIndex, String sessionKey) {
+        sessionKeys.set(customerIndex, sessionKey);
+    }
+
+    int getMaxStake() {
+        return maxStake;
+    }
+
+    /**
+     * 固定速率模式下单个连接的发送间隔，闭环模式返回0
+     */
+    long getIntervalNanos() {
+        return rate > 0 ? connections * 1_000_000_000L / rate : 0;
+    }
+
+    long getDeadlineMicros() {
+        return deadlineMicros;
+    }
+
+    long getMeasureStartNanos() {
+        return measureStartNanos;
+    }
+
+    long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    private static int positive(ServerConfig config, String key, int defaultValue) {
+        int value = config.getInt(key, defaultValue);
+        if (value <= 0) {
+            throw new IllegalArgumentException(key + " must be positive: " + value);
+        }
+        return value;
+    }
+
+    private static int percent(ServerConfig config, String key, int defaultValue) {
+        int value = config.getInt(key, defaultValue);
+        if (value < 0 || value > 100) {
+            throw new IllegalArgumentException(key + " must be between 0 and 100: " + value);
+        }
+        return value;
+    }
+}
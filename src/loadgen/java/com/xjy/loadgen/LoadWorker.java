@@ -0,0 +1,282 @@
+package com.xjy.loadgen;
+
+import com.xjy.util.Base62Util;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测线程：独占一条keep-alive连接，按配置的请求比例循环发送请求并记录延迟
+ * <p>
+ * 固定速率模式下延迟从计划发送时间开始计算，服务端变慢导致的排队时间也计入延迟（避免协调遗漏）。
+ */
+public class LoadWorker implements Runnable {
+    private static final String KEY_CHARSET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int READ_TIMEOUT_MILLIS = 30000;
+
+    private final LoadGenerator generator;
+    private final EndpointStats[] stats = new EndpointStats[Endpoint.values().length];
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private final StringBuilder request = new StringBuilder(256);
+    private byte[] body = new byte[1024];
+    private int bodyLength;
+    private boolean closeAfterResponse;
+
+    public LoadWorker(LoadGenerator generator) {
+        this.generator = generator;
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new EndpointStats();
+        }
+    }
+
+    public EndpointStats[] getStats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long intervalNanos = generator.getIntervalNanos();
+        long measureStart = generator.getMeasureStartNanos();
+        long deadline = generator.getDeadlineNanos();
+        long nextSend = System.nanoTime();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                long start;
+                if (intervalNanos > 0) {
+                    if (nextSend > now) {
+                        LockSupport.parkNanos(nextSend - now);
+                    }
+                    start = nextSend;
+                    nextSend += intervalNanos;
+                } else {
+                    start = now;
+                }
+                int customerIndex = random.nextInt(generator.getCustomers());
+                Endpoint endpoint = generator.pickEndpoint(random.nextInt(100));
+                if (endpoint == Endpoint.STAKE && generator.getSessionKey(customerIndex) == null) {
+                    // 尚未登录的客户先获取会话
+                    endpoint = Endpoint.SESSION;
+                }
+                int status = execute(endpoint, customerIndex, random);
+                long end = System.nanoTime();
+                if (start >= measureStart) {
+                    stats[endpoint.ordinal()].record(status, (end - start) / 1000, generator.getDeadlineMicros());
+                }
+                if (status == EndpointStats.IO_ERROR) {
+                    // 连接失败时稍作等待，避免空转
+                    LockSupport.parkNanos(10_000_000L);
+                }
+            }
+        } finally {
+            closeConnection();
+        }
+    }
+
+    /**
+     * 发送一次请求并读取完整响应
+     * @return HTTP状态码，失败返回IO_ERROR
+     */
+    private int execute(Endpoint endpoint, int customerIndex, ThreadLocalRandom random) {
+        int customerId = customerIndex + 1;
+        request.setLength(0);
+        switch (endpoint) {
+            case SESSION:
+                appendGet("/" + customerId + "/session");
+                break;
+            case STAKE:
+                appendPost("/" + generator.pickOffer(random) + "/stake?sessionKey=" + generator.getSessionKey(customerIndex),
+                        String.valueOf(1 + random.nextInt(generator.getMaxStake())));
+                break;
+            case STAKE_INVALID_KEY:
+                appendPost("/" + generator.pickOffer(random) + "/stake?sessionKey=" + forgeSessionKey(customerId, random),
+                        String.valueOf(1 + random.nextInt(generator.getMaxStake())));
+                break;
+            default:
+                appendGet("/" + generator.pickOffer(random) + "/highstakes");
+                break;
+        }
+        try {
+            if (socket == null) {
+                openConnection();
+            }
+            out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            int status = readResponse();
+            if (endpoint == Endpoint.SESSION && status == 200) {
+                generator.setSessionKey(customerIndex, new String(body, 0, bodyLength, StandardCharsets.UTF_8));
+            } else if (endpoint == Endpoint.STAKE && status == 401) {
+                // 会话已过期，下次重新获取
+                generator.setSessionKey(customerIndex, null);
+            }
+            if (closeAfterResponse) {
+                closeConnection();
+            }
+            return status;
+        } catch (IOException e) {
+            closeConnection();
+            return EndpointStats.IO_ERROR;
+        }
+    }
+
+    private void appendGet(String target) {
+        request.append("GET ").append(target).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(generator.getHostHeader()).append("\r\n\r\n");
+    }
+
+    private void appendPost(String target, String content) {
+        request.append("POST ").append(target).append(" HTTP/1.1\r\n")
+                .append("Host: ").append(generator.getHostHeader()).append("\r\n")
+                .append("Content-Type: text/plain\r\n")
+                .append("Content-Length: ").append(content.length()).append("\r\n\r\n")
+                .append(content);
+    }
+
+    /**
+     * 伪造格式合法但随机前缀错误的会话密钥，与过期密钥走相同的校验失败路径
+     */
+    static String forgeSessionKey(int customerId, ThreadLocalRandom random) {
+        StringBuilder sb = new StringBuilder(16);
+        for (int i = 0; i < 8; i++) {
+            sb.append(KEY_CHARSET.charAt(random.nextInt(KEY_CHARSET.length())));
+        }
+        return sb.append(Base62Util.encode(customerId)).toString();
+    }
+
+    private void openConnection() throws IOException {
+        Socket s = new Socket();
+        s.setTcpNoDelay(true);
+        s.setSoTimeout(READ_TIMEOUT_MILLIS);
+        s.connect(new InetSocketAddress(generator.getHost(), generator.getPort()), CONNECT_TIMEOUT_MILLIS);
+        socket = s;
+        in = new BufferedInputStream(s.getInputStream(), 8192);
+        out = s.getOutputStream();
+    }
+
+    private void closeConnection() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭失败无需处理
+            }
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+
+    /**
+     * 读取响应：状态行、响应头，以及按Content-Length或chunked编码的响应体
+     */
+    private int readResponse() throws IOException {
+        String statusLine = readLine();
+        if (statusLine.length() < 12 || !statusLine.startsWith("HTTP/1.")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        int status = Integer.parseInt(statusLine.substring(9, 12));
+        long contentLength = -1;
+        boolean chunked = false;
+        closeAfterResponse = statusLine.startsWith("HTTP/1.0");
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Long.parseLong(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.toLowerCase().contains("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                closeAfterResponse = value.equalsIgnoreCase("close");
+            }
+        }
+        bodyLength = 0;
+        if (status == 204 || status == 304 || (status >= 100 && status < 200)) {
+            return status;
+        }
+        if (chunked) {
+            int size;
+            while ((size = Integer.parseInt(stripChunkExtension(readLine()), 16)) > 0) {
+                readBody(size);
+                readLine();
+            }
+            // 跳过trailer
+            while (!readLine().isEmpty()) {
+                // 忽略
+            }
+        } else if (contentLength >= 0) {
+            readBody((int) contentLength);
+        } else {
+            // 无长度信息：读到连接关闭
+            closeAfterResponse = true;
+            int b;
+            while ((b = in.read()) >= 0) {
+                ensureBodyCapacity(bodyLength + 1);
+                body[bodyLength++] = (byte) b;
+            }
+        }
+        return status;
+    }
+
+    private static String stripChunkExtension(String line) {
+        int semicolon = line.indexOf(';');
+        return (semicolon < 0 ? line : line.substring(0, semicolon)).trim();
+    }
+
+    private void readBody(int length) throws IOException {
+        ensureBodyCapacity(bodyLength + length);
+        int read = 0;
+        while (read < length) {
+            int n = in.read(body, bodyLength + read, length - read);
+            if (n < 0) {
+                throw new EOFException("Connection closed while reading body");
+            }
+            read += n;
+        }
+        bodyLength += length;
+    }
+
+    private void ensureBodyCapacity(int capacity) {
+        if (capacity > body.length) {
+            byte[] larger = new byte[Math.max(capacity, body.length * 2)];
+            System.arraycopy(body, 0, larger, 0, bodyLength);
+            body = larger;
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder sb = new StringBuilder(64);
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (b == '\n') {
+                int length = sb.length();
+                if (length > 0 && sb.charAt(length - 1) == '\r') {
+                    sb.setLength(length - 1);
+                }
+                return sb.toString();
+            }
+            sb.append((char) b);
+        }
+        throw new EOFException("Connection closed by server");
+    }
+}
@@ -0,0 +1,379 @@
+package com.xjy;
+
+import com.xjy.cluster.PeerUnavailableException;
+import com.xjy.model.ApiResponse;
+import com.xjy.replica.ReadOnlyReplicaException;
+import com.xjy.util.HttpUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 接口处理器：与HTTP服务器实现无关的业务处理，JDK HttpServer和NIO前端共用
+ * <p>
+ * 会话和额度操作通过SessionService/StakeService完成，单机与集群模式共用同一套参数校验和响应格式
+ */
+public class ApiHandler {
+    // 批量查询单次最多的投注项数
+    private static final int MAX_OFFERS_PER_QUERY = 1000;
+    // 分页查询默认和最多返回的条数
+    private static final int DEFAULT_PAGE_LIMIT = 20;
+    private static final int MAX_PAGE_LIMIT = 1000;
+
+    private final SessionService sessionService;
+    private final StakeService stakeService;
+    // 管理接口令牌（未设置时为null，管理接口不开放）
+    private final byte[] adminToken;
+
+    public ApiHandler(SessionService sessionService, StakeService stakeService) {
+        this(sessionService, stakeService, null);
+    }
+
+    /**
+     * @param adminToken 管理接口令牌，为null时管理接口返回404
+     */
+    public ApiHandler(SessionService sessionService, StakeService stakeService, String adminToken) {
+        this.sessionService = sessionService;
+        this.stakeService = stakeService;
+        this.adminToken = adminToken == null ? null : adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * GET /{customerId}/session
+     */
+    public ApiResponse getSession(int customerId) {
+        return ApiResponse.ok(sessionService.getOrCreateSession(customerId));
+    }
+
+    /**
+     * POST /{betOfferId}/stake?sessionKey=...
+     * @param query 查询字符串（可为null）
+     * @param body 请求体（额度）
+     */
+    public ApiResponse postStake(int betOfferId, String query, byte[] body) {
+        // 直接在字节上解析额度，不构造字符串
+        int stake = HttpUtils.parsePositiveInt(body);
+        if (stake <= 0) {
+            return ApiResponse.error(400, "Invalid stake value. Stake must be a positive integer");
+        }
+        // 只提取sessionKey，不构建参数Map
+        String sessionKey = HttpUtils.getQueryParam(query, "sessionKey");
+        if (sessionKey == null || sessionKey.isBlank()) {
+            return ApiResponse.error(401, "Unauthorized. Invalid sessionId");
+        }
+        Integer customerId = sessionService.validateSession(sessionKey);
+        if (customerId == null) {
+            return ApiResponse.error(401, "Unauthorized. Invalid sessionId");
+        }
+        stakeService.saveStake(betOfferId, customerId, stake);
+        return ApiResponse.NO_CONTENT;
+    }
+
+    /**
+     * POST /batch/stakes?sessionKey=...
+     * <p>
+     * 请求体每行一条记录：{@code betOfferId=stake}；以{@code @sessionKey}开头的行切换后续记录使用的会话
+     * （未切换前使用查询参数中的sessionKey），空行忽略。每个会话只校验一次，合法记录按投注项分组批量保存。
+     * 响应体按顺序每条记录一行状态码：204成功，400记录格式或额度无效，401会话无效。
+     */
+    public ApiResponse postStakeBatch(String query, byte[] body) {
+        // 会话Key → 客户ID（无效会话为-1），同一请求内每个会话只校验一次
+        Map<String, Integer> validatedSessions = new HashMap<>();
+        int customerId = validateBatchSession(HttpUtils.getQueryParam(query, "sessionKey"), validatedSessions);
+
+        int capacity = Math.max(16, body.length / 8);
+        int[] betOfferIds = new int[capacity];
+        int[] customerIds = new int[capacity];
+        int[] stakes = new int[capacity];
+        int count = 0;
+        byte[] results = new byte[capacity * 4];
+        int resultLength = 0;
+
+        int length = body.length;
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && body[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && body[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (end > lineStart) {
+                if (body[lineStart] == '@') {
+                    String sessionKey = new String(body, lineStart + 1, end - lineStart - 1, StandardCharsets.UTF_8);
+                    customerId = validateBatchSession(sessionKey, validatedSessions);
+                } else {
+                    if (resultLength + 4 > results.length) {
+                        results = Arrays.copyOf(results, results.length * 2);
+                    }
+                    int status = 400;
+                    int eq = indexOf(body, (byte) '=', lineStart, end);
+                    int betOfferId = eq < 0 ? -1 : parseNonNegativeInt(body, lineStart, eq);
+                    int stake = eq < 0 ? -1 : parseNonNegativeInt(body, eq + 1, end);
+                    if (betOfferId >= 0 && stake > 0) {
+                        if (customerId < 0) {
+                            status = 401;
+                        } else {
+                            if (count == betOfferIds.length) {
+                                betOfferIds = Arrays.copyOf(betOfferIds, count * 2);
+                                customerIds = Arrays.copyOf(customerIds, count * 2);
+                                stakes = Arrays.copyOf(stakes, count * 2);
+                            }
+                            betOfferIds[count] = betOfferId;
+                            customerIds[count] = customerId;
+                            stakes[count] = stake;
+                            count++;
+                            status = 204;
+                        }
+                    }
+                    results[resultLength++] = (byte) ('0' + status / 100);
+                    results[resultLength++] = (byte) ('0' + status / 10 % 10);
+                    results[resultLength++] = (byte) ('0' + status % 10);
+                    results[resultLength++] = '\n';
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        if (count > 0) {
+            stakeService.saveStakes(betOfferIds, customerIds, stakes, count);
+        }
+        return ApiResponse.ok(Arrays.copyOf(results, resultLength));
+    }
+
+    /**
+     * GET /{betOfferId}/highstakes[?window=秒数]
+     * <p>
+     * 带window参数时返回最近window秒内提交的额度的Top20（每个客户取窗口内的最大值），需启用窗口模式
+     * @param query 查询字符串（可为null）
+     */
+    public ApiResponse getHighStakes(int betOfferId, String query) {
+        String windowParam = HttpUtils.getQueryParam(query, "window");
+        if (windowParam == null) {
+            // 直接使用缓存的响应体字节，无需格式化和编码
+            return ApiResponse.ok(stakeService.getTopStakesResponse(betOfferId));
+        }
+        int maxWindowSeconds = stakeService.getMaxWindowSeconds();
+        if (maxWindowSeconds == 0) {
+            return ApiResponse.error(400, "Windowed high stakes are not enabled");
+        }
+        int windowSeconds = parseNonNegativeInt(windowParam, 0, windowParam.length());
+        if (windowSeconds < 1 || windowSeconds > maxWindowSeconds) {
+            return ApiResponse.error(400, "Invalid window parameter. Must be between 1 and " + maxWindowSeconds);
+        }
+        return ApiResponse.ok(stakeService.getWindowedTopStakesResponse(betOfferId, windowSeconds));
+    }
+
+    /**
+     * GET /highstakes?offers=1,2,3
+     * <p>
+     * 每个投注项的Top20都是读取缓存字节，单个投注项只需几十纳秒，因此顺序汇总，不拆分到多个线程。
+     * @param query 查询字符串（可为null）
+     */
+    public ApiResponse getHighStakesMulti(String query) {
+        String offers = HttpUtils.getQueryParam(query, "offers");
+        if (offers == null || offers.isEmpty()) {
+            return ApiResponse.error(400, "Missing offers parameter");
+        }
+        int count = 1;
+        for (int i = 0; i < offers.length(); i++) {
+            if (offers.charAt(i) == ',') {
+                count++;
+            }
+        }
+        if (count > MAX_OFFERS_PER_QUERY) {
+            return ApiResponse.error(400, "Too many offers. At most " + MAX_OFFERS_PER_QUERY + " per request");
+        }
+        int[] betOfferIds = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = offers.indexOf(',', start);
+            if (end < 0) {
+                end = offers.length();
+            }
+            int betOfferId = parseNonNegativeInt(offers, start, end);
+            if (betOfferId < 0) {
+                return ApiResponse.error(400, "Invalid bet offer id: " + offers.substring(start, end));
+            }
+            betOfferIds[i] = betOfferId;
+            start = end + 1;
+        }
+        return ApiResponse.ok(stakeService.getTopStakesResponses(betOfferIds, count));
+    }
+
+    /**
+     * GET /{betOfferId}/rank?customerId=...
+     * <p>
+     * 响应体为从1开始的名次（排序规则与Top20一致），客户在该投注项下没有额度时为0
+     * @param query 查询字符串（可为null）
+     */
+    public ApiResponse getRank(int betOfferId, String query) {
+        String customerParam = HttpUtils.getQueryParam(query, "customerId");
+        if (customerParam == null || customerParam.isEmpty()) {
+            return ApiResponse.error(400, "Missing customerId parameter");
+        }
+        int customerId = parseNonNegativeInt(customerParam, 0, customerParam.length());
+        if (customerId < 0) {
+            return ApiResponse.error(400, "Invalid customer id: " + customerParam);
+        }
+        return ApiResponse.ok(Integer.toString(stakeService.getRank(betOfferId, customerId)));
+    }
+
+    /**
+     * GET /{betOfferId}/stakes?from=1&limit=20
+     * <p>
+     * 返回名次从from开始的最多limit条额度，格式与highstakes一致；超出范围时响应体为空
+     * @param query 查询字符串（可为null）
+     */
+    public ApiResponse getStakesPage(int betOfferId, String query) {
+        String fromParam = HttpUtils.getQueryParam(query, "from");
+        int from = fromParam == null ? 1 : parseNonNegativeInt(fromParam, 0, fromParam.length());
+        if (from < 1) {
+            return ApiResponse.error(400, "Invalid from parameter: " + fromParam);
+        }
+        String limitParam = HttpUtils.getQueryParam(query, "limit");
+        int limit = limitParam == null ? DEFAULT_PAGE_LIMIT : parseNonNegativeInt(limitParam, 0, limitParam.length());
+        if (limit < 1 || limit > MAX_PAGE_LIMIT) {
+            return ApiResponse.error(400, "Invalid limit parameter. Must be between 1 and " + MAX_PAGE_LIMIT);
+        }
+        return ApiResponse.ok(stakeService.getStakesPageResponse(betOfferId, from, limit));
+    }
+
+    /**
+     * POST /{betOfferId}/close?adminToken=...
+     * <p>
+     * 管理接口：关闭已结算的投注项，删除其全部额度和索引（写入日志并复制到副本）。未配置管理令牌时不开放。
+     * @param query 查询字符串（可为null）
+     */
+    public ApiResponse closeOffer(int betOfferId, String query) {
+        if (adminToken == null) {
+            return notFound("/" + betOfferId + "/close");
+        }
+        String token = HttpUtils.getQueryParam(query, "adminToken");
+        // 按固定时间比较，避免通过响应时间逐字节猜测令牌
+        if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            return ApiResponse.error(403, "Forbidden. Invalid admin token");
+        }
+        try {
+            if (!stakeService.closeOffer(betOfferId)) {
+                return ApiResponse.error(404, "Bet offer not found: " + betOfferId);
+            }
+        } catch (UnsupportedOperationException e) {
+            return ApiResponse.error(501, e.getMessage());
+        }
+        return ApiResponse.NO_CONTENT;
+    }
+
+    /**
+     * 校验批量请求中的会话（结果缓存在本次请求内）
+     * @return 客户ID，无效返回-1
+     */
+    private int validateBatchSession(String sessionKey, Map<String, Integer> validatedSessions) {
+        if (sessionKey == null || sessionKey.isBlank()) {
+            return -1;
+        }
+        return validatedSessions.computeIfAbsent(sessionKey, key -> {
+            Integer customerId = sessionService.validateSession(key);
+            return customerId == null ? -1 : customerId;
+        });
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析[from, to)范围内的非负十进制整数
+     * @return 解析结果，格式无效或溢出返回-1
+     */
+    private static int parseNonNegativeInt(byte[] bytes, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * 解析字符串[from, to)范围内的非负十进制整数
+     * @return 解析结果，格式无效或溢出返回-1
+     */
+    private static int parseNonNegativeInt(String s, int from, int to) {
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return (int) value;
+    }
+
+    /**
+     * 集群模式下推送流只能由投注项所在节点提供：其他节点返回421和所在节点的HTTP地址
+     * @return 由本节点负责时返回null
+     */
+    public ApiResponse misdirectedStream(int betOfferId) {
+        String owner = stakeService.ownerAddress(betOfferId);
+        return owner == null ? null : ApiResponse.error(421, "Bet offer " + betOfferId + " is served by " + owner);
+    }
+
+    /**
+     * 副本收到会话或写入请求（421）
+     */
+    public ApiResponse readOnlyReplica(ReadOnlyReplicaException e) {
+        return ApiResponse.error(421, e.getMessage());
+    }
+
+    /**
+     * 服务过载，准入控制拒绝请求（503）
+     */
+    public ApiResponse overloaded() {
+        return ApiResponse.error(503, "Server overloaded, retry later");
+    }
+
+    /**
+     * 集群中负责该请求的节点不可用（503）
+     */
+    public ApiResponse peerUnavailable(PeerUnavailableException e) {
+        return ApiResponse.error(503, e.getMessage());
+    }
+
+    /**
+     * 未匹配到接口（404）
+     */
+    public ApiResponse notFound(String path) {
+        return ApiResponse.error(404, "Resource not found: " + path);
+    }
+
+    /**
+     * 路径参数非整数（400）
+     */
+    public ApiResponse invalidNumber(NumberFormatException e) {
+        return ApiResponse.error(400, "Invalid numeric parameter: " + e.getMessage());
+    }
+}
@@ -0,0 +1,94 @@
+package com.xjy;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP服务器执行器模式
+ * <ul>
+ *     <li>fixed：固定线程池 + 无界队列（默认，与原有行为一致）</li>
+ *     <li>virtual：每个请求一个虚拟线程（JDK 21+），阻塞在慢客户端上的请求不占用平台线程；JDK 17回退为fixed</li>
+ *     <li>bounded：固定线程池 + 有界队列，队列满时按拒绝策略处理</li>
+ * </ul>
+ */
+public enum ExecutorMode {
+    FIXED,
+    VIRTUAL,
+    BOUNDED;
+
+    /**
+     * 拒绝策略：abort直接关闭新连接（客户端快速失败），caller-runs由接收线程执行（反压，暂停接收新连接）
+     */
+    public static final String REJECT_ABORT = "abort";
+    public static final String REJECT_CALLER_RUNS = "caller-runs";
+
+    public static ExecutorMode parse(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown executor mode: " + value + " (expected fixed, virtual or bounded)");
+        }
+    }
+
+    /**
+     * 根据模式创建执行器
+     * @param threads 线程数（fixed/bounded）
+     * @param queueCapacity 队列容量（bounded）
+     * @param rejectPolicy 拒绝策略（bounded）
+     */
+    public ExecutorService create(int threads, int queueCapacity, String rejectPolicy) {
+        switch (this) {
+            case VIRTUAL:
+                // JDK HttpServer的请求流读写方法是synchronized的，JDK 21上阻塞读写会把虚拟线程钉在载体线程上，
+                // 因此载体线程数默认取threads（未显式配置时），保证慢客户端场景下不劣于fixed模式
+                if (System.getProperty("jdk.virtualThreadScheduler.parallelism") == null) {
+                    System.setProperty("jdk.virtualThreadScheduler.parallelism", String.valueOf(threads));
+                    System.setProperty("jdk.virtualThreadScheduler.maxPoolSize", String.valueOf(Math.max(256, threads)));
+                }
+                ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+                if (virtual != null) {
+                    return virtual;
+                }
+                System.out.printf("Virtual threads require JDK 21+, falling back to fixed pool of %d threads%n", threads);
+                return Executors.newFixedThreadPool(threads);
+            case BOUNDED:
+                return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity), rejectionHandler(rejectPolicy));
+            case FIXED:
+            default:
+                return Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(String rejectPolicy) {
+        switch (rejectPolicy.toLowerCase(Locale.ROOT)) {
+            case REJECT_ABORT:
+                // HttpServer捕获拒绝异常后关闭该连接
+                return new ThreadPoolExecutor.AbortPolicy();
+            case REJECT_CALLER_RUNS:
+                return new ThreadPoolExecutor.CallerRunsPolicy();
+            default:
+                throw new IllegalArgumentException("Unknown reject policy: " + rejectPolicy
+                        + " (expected " + REJECT_ABORT + " or " + REJECT_CALLER_RUNS + ")");
+        }
+    }
+
+    /**
+     * 通过反射调用Executors.newVirtualThreadPerTaskExecutor()，保证在JDK 17上可编译运行
+     * @return 虚拟线程执行器，当前JDK不支持时返回null
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
@@ -1,38 +1,303 @@
 package com.xjy;
 
 import com.sun.net.httpserver.HttpServer;
+import com.xjy.admission.AdmissionController;
+import com.xjy.binary.BinaryServer;
+import com.xjy.cluster.Cluster;
+import com.xjy.cluster.ClusterNode;
+import com.xjy.cluster.ClusterServer;
+import com.xjy.cluster.ClusterSessions;
+import com.xjy.cluster.ClusterStakes;
+import com.xjy.metrics.MetricsHandler;
+import com.xjy.metrics.ServiceMetrics;
+import com.xjy.nio.NioDispatcher;
+import com.xjy.persist.FsyncPolicy;
+import com.xjy.persist.StakePersistence;
+import com.xjy.nio.NioHttpServer;
+import com.xjy.replica.ReplicaClient;
+import com.xjy.replica.ReplicaServices;
+import com.xjy.replica.ReplicationLog;
+import com.xjy.replica.ReplicationServer;
+import com.xjy.store.BudgetedStakeStore;
+import com.xjy.store.HeapStakeStore;
+import com.xjy.store.OffHeapStakeStore;
+import com.xjy.store.StakeStore;
+import com.xjy.stream.HighStakesStreams;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.Executors;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 服务启动类：配置HTTP服务器、注册Handler、添加关闭钩子
+ * <p>
+ * HTTP引擎通过 --engine=jdk|nio 指定，默认jdk；
+ * jdk引擎的执行器模式通过 --executor=fixed|virtual|bounded 或 -Dexecutor=... 指定，默认fixed；
+ * 集群模式通过 --cluster=host:httpPort:clusterPort,... 和 --nodeId=N 启用；
+ * 主从复制通过 --replicationPort=N（主节点）和 --replicaOf=host:replicationPort（只读副本，可加 --primaryHttp=host:port）启用；
+ * 时间窗口Top20通过 --windowSeconds=N（最长窗口）和 --windowBucketSeconds=N（分桶时长，默认10）启用；
+ * 堆内存储的内存预算通过 --memoryBudgetMb=N 启用，管理接口通过 --adminToken=... 开放；
+ * 面向内部客户端的二进制协议端口通过 --binaryPort=N 启用
  */
 public class Main {
     private static final int PORT = 8001; // 服务端口（与示例一致）
 
     public static void main(String[] args) throws IOException {
+        ServerConfig config = new ServerConfig(args);
+        String engine = config.getString("engine", "jdk");
+
         // 初始化核心管理器
         SessionManager sessionManager = new SessionManager();
-        StakeManager stakeManager = new StakeManager();
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
+        String dataDir = config.getString("dataDir", null);
+        String adminToken = config.getString("adminToken", null);
+        FsyncPolicy fsyncPolicy = FsyncPolicy.parse(config.getString("walFsync", "interval"));
+        if (dataDir != null && fsyncPolicy == FsyncPolicy.ALWAYS && engine.equalsIgnoreCase("nio")) {
+            // nio引擎在事件循环线程中直接执行业务处理，不能在每次提交投注时阻塞等待fsync
+            throw new IllegalArgumentException("--walFsync=always requires --engine=jdk");
+        }
+        if (config.getInt("memoryBudgetMb", 0) > 0 && engine.equalsIgnoreCase("nio")) {
+            // 首次访问已换出的投注项时需读取并校验换出文件，同样不能在事件循环线程中进行
+            throw new IllegalArgumentException("--memoryBudgetMb requires --engine=jdk");
+        }
+        StakeStore stakeStore = createStakeStore(config, dataDir);
+        StakeManager stakeManager = new StakeManager(stakeStore);
+        // 可选时间窗口Top20：GET /{id}/highstakes?window=秒数
+        int windowSeconds = config.getInt("windowSeconds", 0);
+        if (windowSeconds > 0) {
+            int bucketSeconds = config.getInt("windowBucketSeconds", 10);
+            int bucketCount = bucketSeconds > 0 ? (windowSeconds + bucketSeconds - 1) / bucketSeconds : 0;
+            stakeManager.enableWindows(bucketSeconds, bucketCount);
+        }
+
+        // 可选集群模式：投注项和客户按一致性哈希分布到各节点，非本节点的请求经内部协议转发
+        Cluster cluster = null;
+        ClusterServer clusterServer = null;
+        SessionService sessionService = sessionManager;
+        StakeService stakeService = stakeManager;
+        String clusterSpec = config.getString("cluster", null);
+        if (clusterSpec != null) {
+            if (!engine.equalsIgnoreCase("jdk")) {
+                // nio引擎在事件循环线程中直接执行业务处理，不能阻塞等待远程节点
+                throw new IllegalArgumentException("Cluster mode requires --engine=jdk");
+            }
+            cluster = new Cluster(ClusterNode.parseAll(clusterSpec), config.getInt("nodeId", -1),
+                    config.getInt("clusterVirtualNodes", 128), config.getInt("clusterTimeoutMs", 2000));
+            // 先创建，恢复数据并注册写前日志/复制日志之后再开始接收其他节点的转发
+            clusterServer = new ClusterServer(cluster.localNode().getClusterPort(), sessionManager, stakeManager,
+                    adminToken);
+            sessionService = new ClusterSessions(cluster, sessionManager);
+            stakeService = new ClusterStakes(cluster, stakeManager, adminToken);
+            System.out.printf("Cluster node %d of %d, internal protocol on port %d%n",
+                    cluster.localNode().getId(), cluster.size(), cluster.localNode().getClusterPort());
+        }
+
+        // 可选副本模式：从主节点接收复制流，只提供查询接口
+        String replicaOf = config.getString("replicaOf", null);
+        ReplicaClient replicaClient = null;
+        if (replicaOf != null) {
+            if (cluster != null) {
+                throw new IllegalArgumentException("Replica mode cannot be combined with cluster mode");
+            }
+            if (!stakeStore.supportsRemoveOffer()) {
+                // 副本需要应用主节点的关闭记录，全量同步时也要关闭已分叉的投注项
+                throw new IllegalArgumentException("Replica mode requires a store that can close bet offers (--store=heap)");
+            }
+            int colon = replicaOf.lastIndexOf(':');
+            int primaryPort;
+            try {
+                primaryPort = colon < 0 ? -1 : Integer.parseInt(replicaOf.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                primaryPort = -1;
+            }
+            if (colon <= 0 || primaryPort <= 0) {
+                throw new IllegalArgumentException("Invalid replicaOf (expected host:replicationPort): " + replicaOf);
+            }
+            replicaClient = new ReplicaClient(replicaOf.substring(0, colon), primaryPort, stakeManager);
+            // 421响应中带上主节点的HTTP地址（复制地址对客户端没有用处），未配置时不带地址
+            ReplicaServices replicaServices = new ReplicaServices(stakeManager, config.getString("primaryHttp", null));
+            sessionService = replicaServices;
+            stakeService = replicaServices;
+        }
+        int port = config.getInt("port", cluster == null ? PORT : cluster.localNode().getHttpPort());
+        ApiHandler apiHandler = new ApiHandler(sessionService, stakeService, adminToken);
+        // Top20变化推送：每个投注项每秒最多推送streamMaxRate次
+        HighStakesStreams streams = new HighStakesStreams(stakeManager,
+                config.getInt("streamMaxRate", 10), config.getInt("streamMaxSubscribers", 10_000));
+        stakeManager.setTopStakesListener(streams);
+        ServiceMetrics metrics = new ServiceMetrics(stakeManager, sessionManager, streams);
+        if (stakeStore instanceof BudgetedStakeStore) {
+            metrics.setBudgetedStore((BudgetedStakeStore) stakeStore);
+        }
+
+        // 可选持久化：指定数据目录后，启动时恢复快照和写前日志，之后的额度提升写入日志
+        StakePersistence persistence = null;
+        if (dataDir != null) {
+            persistence = new StakePersistence(Paths.get(dataDir),
+                    fsyncPolicy,
+                    config.getInt("walFsyncIntervalMs", 1000),
+                    config.getInt("walSegmentMb", 64) * (1L << 20),
+                    config.getInt("snapshotIntervalSeconds", 300));
+            persistence.start(stakeManager);
+        }
+
+        // 主从复制：恢复数据完成后再开始记录复制日志和接收复制流（副本同样可以开启复制端口，供下级副本级联）
+        ReplicationServer replicationServer = null;
+        int replicationPort = config.getInt("replicationPort", 0);
+        if (replicationPort > 0) {
+            ReplicationLog replicationLog = new ReplicationLog(config.getInt("replicationBacklog", 1 << 20));
+            stakeManager.addStakeListener(replicationLog);
+            replicationServer = new ReplicationServer(replicationPort, stakeManager, replicationLog);
+            replicationServer.start();
+            metrics.setReplicationServer(replicationServer);
+            System.out.printf("Replication primary listening on port %d%n", replicationPort);
+        }
+        if (replicaClient != null) {
+            replicaClient.start();
+            metrics.setReplicaClient(replicaClient);
+            System.out.printf("Replicating from %s (read-only)%n", replicaOf);
+        }
 
-        // 配置线程池（固定线程数：CPU核心数×2，平衡并发与资源）
-        int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
-        server.setExecutor(Executors.newFixedThreadPool(corePoolSize));
-        server.createContext("/", new RequestDispatcher(sessionManager, stakeManager));
+        if (clusterServer != null) {
+            // 转发来的写入同样要经过写前日志和复制日志，因此在恢复和注册监听器之后才开始接收
+            clusterServer.start();
+        }
 
-        // 启动服务器
-        server.start();
-        System.out.printf("Betting Stake Service started on port %d%n", PORT);
+        // 可选二进制协议端口：与HTTP接口共用会话和额度服务
+        BinaryServer binaryServer = null;
+        int binaryPort = config.getInt("binaryPort", 0);
+        if (binaryPort > 0) {
+            binaryServer = new BinaryServer(binaryPort, sessionService, stakeService);
+            binaryServer.start();
+            metrics.setBinaryServer(binaryServer);
+            System.out.printf("Binary protocol listening on port %d%n", binaryPort);
+        }
+
+        Runnable stopServer;
+        if (engine.equalsIgnoreCase("nio")) {
+            if (config.getBoolean("admission", false)) {
+                // nio引擎没有请求队列，业务处理直接在事件循环中完成
+                throw new IllegalArgumentException("Admission control requires --engine=jdk");
+            }
+            // NIO引擎：事件循环数默认等于CPU核心数
+            int eventLoops = config.getInt("eventLoops", Runtime.getRuntime().availableProcessors());
+            NioHttpServer server = new NioHttpServer(port, eventLoops, new NioDispatcher(apiHandler, metrics));
+            server.start();
+            stopServer = server::stop;
+            System.out.printf("Betting Stake Service started on port %d (engine: nio, event loops: %d)%n",
+                    port, eventLoops);
+        } else if (engine.equalsIgnoreCase("jdk")) {
+            // 响应头和响应体分开写出，不关闭Nagle算法时长连接上每个请求会多出约40ms的延迟确认等待
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+
+            // 配置执行器（默认固定线程数：CPU核心数×2，平衡并发与资源）
+            ExecutorMode executorMode = ExecutorMode.parse(config.getString("executor", "fixed"));
+            int threads = config.getInt("threads", Runtime.getRuntime().availableProcessors() * 2);
+            ExecutorService executor = executorMode.create(threads,
+                    config.getInt("queueCapacity", 1024),
+                    config.getString("rejectPolicy", ExecutorMode.REJECT_ABORT));
+            // 可选准入控制：按路由自适应限制并发，过载时快速拒绝并优先保留Top20查询
+            AdmissionController admission = null;
+            if (config.getBoolean("admission", false)) {
+                admission = new AdmissionController(config.getInt("admissionTargetMs", 50),
+                        threads, config.getInt("admissionMaxLimit", threads * 4));
+                metrics.setAdmission(admission);
+            }
+            server.setExecutor(admission == null ? executor : admission.wrap(executor));
+            server.createContext("/", new RequestDispatcher(apiHandler, metrics, streams, admission));
+            server.createContext(MetricsHandler.PATH, new MetricsHandler(metrics));
+
+            // 启动服务器
+            server.start();
+            stopServer = () -> {
+                server.stop(0); // 立即停止服务器
+                executor.shutdown(); // 关闭请求执行器
+                try {
+                    executor.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            };
+            System.out.printf("Betting Stake Service started on port %d (engine: jdk, executor: %s)%n",
+                    port, executorMode.name().toLowerCase());
+        } else {
+            throw new IllegalArgumentException("Unknown engine: " + engine + " (expected jdk or nio)");
+        }
 
         // 添加JVM关闭钩子（优雅清理资源）
+        StakePersistence persistenceToClose = persistence;
+        Cluster clusterToClose = cluster;
+        ClusterServer clusterServerToClose = clusterServer;
+        ReplicationServer replicationServerToClose = replicationServer;
+        ReplicaClient replicaClientToClose = replicaClient;
+        BinaryServer binaryServerToClose = binaryServer;
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down service...");
-            server.stop(0); // 立即停止服务器
+            stopServer.run();
+            if (binaryServerToClose != null) {
+                binaryServerToClose.close(); // 断开二进制协议客户端
+            }
+            if (clusterServerToClose != null) {
+                clusterServerToClose.close(); // 停止接收其他节点的转发
+                clusterToClose.close(); // 关闭到其他节点的连接
+            }
+            if (replicaClientToClose != null) {
+                replicaClientToClose.close(); // 停止接收复制流
+            }
+            if (replicationServerToClose != null) {
+                replicationServerToClose.close(); // 断开所有副本
+            }
+            streams.close(); // 关闭推送订阅
+            if (persistenceToClose != null) {
+                try {
+                    persistenceToClose.close(); // 生成最终快照并关闭写前日志
+                } catch (IOException e) {
+                    System.err.println("Failed to close persistence: " + e.getMessage());
+                }
+            }
+            try {
+                stakeStore.close(); // 堆外存储刷盘并标记正常关闭
+            } catch (IOException e) {
+                System.err.println("Failed to close stake store: " + e.getMessage());
+            }
             sessionManager.shutdown(); // 关闭Session清理线程池
             System.out.println("Service shut down successfully.");
         }));
     }
-}
\ No newline at end of file
+
+    /**
+     * 按 --store=heap|offheap 创建Stake存储；offheap的块文件目录默认为数据目录下的store子目录，
+     * heap设置内存预算后冷投注项换出到spillDir（默认为数据目录下的spill子目录）
+     */
+    private static StakeStore createStakeStore(ServerConfig config, String dataDir) throws IOException {
+        String store = config.getString("store", "heap");
+        if (store.equalsIgnoreCase("heap")) {
+            int memoryBudgetMb = config.getInt("memoryBudgetMb", 0);
+            if (memoryBudgetMb <= 0) {
+                return new HeapStakeStore();
+            }
+            String spillDir = config.getString("spillDir", dataDir == null ? null : Paths.get(dataDir, "spill").toString());
+            if (spillDir == null) {
+                throw new IllegalArgumentException("Memory budget requires --spillDir or --dataDir");
+            }
+            System.out.printf("Heap stake store with a %d MB budget, cold offers spill to %s%n", memoryBudgetMb, spillDir);
+            return new BudgetedStakeStore(Paths.get(spillDir), memoryBudgetMb * (1L << 20));
+        }
+        if (!store.equalsIgnoreCase("offheap")) {
+            throw new IllegalArgumentException("Unknown store: " + store + " (expected heap or offheap)");
+        }
+        String storeDir = config.getString("storeDir", dataDir == null ? null : Paths.get(dataDir, "store").toString());
+        if (storeDir == null) {
+            throw new IllegalArgumentException("Off-heap store requires --storeDir or --dataDir");
+        }
+        OffHeapStakeStore offHeapStore = new OffHeapStakeStore(Paths.get(storeDir),
+                config.getInt("storeChunkMb", 1024) * (1L << 20));
+        System.out.printf("Off-heap stake store opened in %s: %d offers, %d stakes%n",
+                storeDir, offHeapStore.offerCount(), offHeapStore.stakeCount());
+        return offHeapStore;
+    }
+}
@@ -0,0 +1,295 @@
+package com.xjy;
+
+import com.xjy.store.ConcurrentIntIntMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个投注项的名次索引：按(额度降序, 客户ID升序)排列所有客户，支持O(log n)的名次查询和分页
+ * <p>
+ * 结构为数组实现的顺序统计树堆（treap）：每个节点记录子树大小，所有节点字段连续存放在一个int数组中
+ * （每个节点32字节，访问一个节点只读一条缓存行），每个客户固定占用一个节点（额度提升时摘下节点、
+ * 改额度后重新插入），不产生对象。所有操作在索引锁内完成；额度按最大值合并，重复或乱序提交同一客户的额度不影响结果。
+ */
+public class RankIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // 节点字段偏移（节点n的字段从n << NODE_SHIFT开始，节点0为空节点，子树大小为0）
+    private static final int NODE_SHIFT = 3;
+    private static final int STAKE = 0;
+    private static final int CUSTOMER = 1;
+    private static final int LEFT = 2;
+    private static final int RIGHT = 3;
+    private static final int SIZE = 4;
+    private static final int PRIORITY = 5;
+
+    // 客户ID → 节点编号（从1开始，0表示空）
+    private final ConcurrentIntIntMap customerNodes = new ConcurrentIntIntMap();
+
+    private int[] nodes = new int[INITIAL_CAPACITY << NODE_SHIFT];
+    private int nodeCount;
+    private int root;
+    private int seed = 0x9E3779B9;
+
+    // split的两个结果
+    private int splitLeft;
+    private int splitRight;
+
+    // 从存储重建完成前，查询需等待
+    private boolean ready;
+
+    /**
+     * 提交客户的最新额度（按最大值合并）
+     */
+    public synchronized void update(int customerId, int stake) {
+        updateLocked(customerId, stake);
+    }
+
+    /**
+     * 批量提交额度：只加一次锁
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     */
+    public synchronized void updateAll(int[] customerIds, int[] stakes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            updateLocked(customerIds[i], stakes[i]);
+        }
+    }
+
+    /**
+     * 查询客户名次
+     * @return 从1开始的名次，客户在该投注项下没有额度时返回0
+     */
+    public synchronized int rankOf(int customerId) {
+        awaitReady();
+        int node = customerNodes.get(customerId);
+        return node == 0 ? 0 : countBefore(field(node, STAKE), customerId) + 1;
+    }
+
+    /**
+     * 分页查询
+     * @param fromRank 起始名次（从1开始）
+     * @param limit 最多返回条数
+     * @return (客户ID→额度)列表，按名次排列
+     */
+    public synchronized List<Map.Entry<Integer, Integer>> page(int fromRank, int limit) {
+        awaitReady();
+        int available = Math.max(0, field(root, SIZE) - fromRank + 1);
+        List<Map.Entry<Integer, Integer>> entries = new ArrayList<>(Math.min(limit, available));
+        collect(root, fromRank - 1, limit, entries);
+        return entries;
+    }
+
+    /**
+     * 已索引的客户数
+     */
+    public synchronized int size() {
+        return field(root, SIZE);
+    }
+
+    /**
+     * 标记重建完成，唤醒等待的查询
+     */
+    public synchronized void markReady() {
+        ready = true;
+        notifyAll();
+    }
+
+    private void awaitReady() {
+        boolean interrupted = false;
+        while (!ready) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void updateLocked(int customerId, int stake) {
+        int node = customerNodes.get(customerId);
+        if (node == 0) {
+            node = newNode(customerId, stake);
+            customerNodes.mergeMax(customerId, node);
+        } else {
+            if (stake <= field(node, STAKE)) {
+                return; // 额度未提升
+            }
+            // 摘下节点后改额度重新插入
+            root = erase(root, node);
+            int base = node << NODE_SHIFT;
+            nodes[base + STAKE] = stake;
+            nodes[base + LEFT] = 0;
+            nodes[base + RIGHT] = 0;
+            nodes[base + SIZE] = 1;
+        }
+        root = insert(root, node);
+    }
+
+    /**
+     * 排在(stake, customerId)之前的节点数
+     */
+    private int countBefore(int stake, int customerId) {
+        int count = 0;
+        int t = root;
+        while (t != 0) {
+            if (precedes(t, stake, customerId)) {
+                count += field(field(t, LEFT), SIZE) + 1;
+                t = field(t, RIGHT);
+            } else {
+                t = field(t, LEFT);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 中序遍历子树，跳过前skip个节点后最多收集limit个（只访问O(log n + limit)个节点）
+     */
+    private void collect(int t, int skip, int limit, List<Map.Entry<Integer, Integer>> out) {
+        if (t == 0 || out.size() >= limit) {
+            return;
+        }
+        int leftSize = field(field(t, LEFT), SIZE);
+        if (skip < leftSize) {
+            collect(field(t, LEFT), skip, limit, out);
+        }
+        if (out.size() >= limit) {
+            return;
+        }
+        if (skip <= leftSize) {
+            out.add(Map.entry(field(t, CUSTOMER), field(t, STAKE)));
+        }
+        collect(field(t, RIGHT), Math.max(0, skip - leftSize - 1), limit, out);
+    }
+
+    /**
+     * 将单个节点插入子树：沿名次下降到优先级低于新节点的位置，只拆分该处的子树
+     * @return 插入后的子树根
+     */
+    private int insert(int t, int node) {
+        if (t == 0) {
+            return node;
+        }
+        int base = t << NODE_SHIFT;
+        int stake = field(node, STAKE);
+        int customerId = field(node, CUSTOMER);
+        if (field(node, PRIORITY) > nodes[base + PRIORITY]) {
+            split(t, stake, customerId);
+            int nodeBase = node << NODE_SHIFT;
+            nodes[nodeBase + LEFT] = splitLeft;
+            nodes[nodeBase + RIGHT] = splitRight;
+            updateSize(node);
+            return node;
+        }
+        if (precedes(t, stake, customerId)) {
+            nodes[base + RIGHT] = insert(nodes[base + RIGHT], node);
+        } else {
+            nodes[base + LEFT] = insert(nodes[base + LEFT], node);
+        }
+        nodes[base + SIZE]++;
+        return t;
+    }
+
+    /**
+     * 从子树中删除节点（节点必须在子树中）：合并其左右子树顶替原位置
+     * @return 删除后的子树根
+     */
+    private int erase(int t, int node) {
+        int base = t << NODE_SHIFT;
+        if (t == node) {
+            return merge(nodes[base + LEFT], nodes[base + RIGHT]);
+        }
+        if (precedes(t, field(node, STAKE), field(node, CUSTOMER))) {
+            nodes[base + RIGHT] = erase(nodes[base + RIGHT], node);
+        } else {
+            nodes[base + LEFT] = erase(nodes[base + LEFT], node);
+        }
+        nodes[base + SIZE]--;
+        return t;
+    }
+
+    /**
+     * 按名次拆分子树：splitLeft为排在(stake, customerId)之前的部分，splitRight为其余部分
+     */
+    private void split(int t, int stake, int customerId) {
+        if (t == 0) {
+            splitLeft = 0;
+            splitRight = 0;
+            return;
+        }
+        int base = t << NODE_SHIFT;
+        if (precedes(t, stake, customerId)) {
+            split(nodes[base + RIGHT], stake, customerId);
+            nodes[base + RIGHT] = splitLeft;
+            updateSize(t);
+            splitLeft = t;
+        } else {
+            split(nodes[base + LEFT], stake, customerId);
+            nodes[base + LEFT] = splitRight;
+            updateSize(t);
+            splitRight = t;
+        }
+    }
+
+    /**
+     * 合并两棵子树（a的所有节点排在b之前）
+     */
+    private int merge(int a, int b) {
+        if (a == 0) {
+            return b;
+        }
+        if (b == 0) {
+            return a;
+        }
+        if (field(a, PRIORITY) > field(b, PRIORITY)) {
+            nodes[(a << NODE_SHIFT) + RIGHT] = merge(field(a, RIGHT), b);
+            updateSize(a);
+            return a;
+        }
+        nodes[(b << NODE_SHIFT) + LEFT] = merge(a, field(b, LEFT));
+        updateSize(b);
+        return b;
+    }
+
+    /**
+     * 节点t是否排在(stake, customerId)之前：额度更高，或额度相同且客户ID更小
+     */
+    private boolean precedes(int t, int stake, int customerId) {
+        int base = t << NODE_SHIFT;
+        int nodeStake = nodes[base + STAKE];
+        return nodeStake > stake || (nodeStake == stake && nodes[base + CUSTOMER] < customerId);
+    }
+
+    private void updateSize(int t) {
+        int base = t << NODE_SHIFT;
+        nodes[base + SIZE] = field(nodes[base + LEFT], SIZE) + field(nodes[base + RIGHT], SIZE) + 1;
+    }
+
+    private int field(int t, int offset) {
+        return nodes[(t << NODE_SHIFT) + offset];
+    }
+
+    private int newNode(int customerId, int stake) {
+        int node = ++nodeCount;
+        int base = node << NODE_SHIFT;
+        if (base == nodes.length) {
+            nodes = Arrays.copyOf(nodes, nodes.length << 1);
+        }
+        // xorshift32
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        nodes[base + STAKE] = stake;
+        nodes[base + CUSTOMER] = customerId;
+        nodes[base + SIZE] = 1;
+        nodes[base + PRIORITY] = seed;
+        return node;
+    }
+}
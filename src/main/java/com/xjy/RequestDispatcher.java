@@ -1,105 +1,126 @@
 package com.xjy;
 
+import com.xjy.admission.AdmissionController;
+import com.xjy.cluster.PeerUnavailableException;
+import com.xjy.metrics.ServiceMetrics;
+import com.xjy.model.ApiResponse;
+import com.xjy.replica.ReadOnlyReplicaException;
+import com.xjy.stream.ExchangeStreamSink;
+import com.xjy.stream.HighStakesStreams;
 import com.xjy.util.HttpUtils;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * 请求分发器：匹配URL和方法，路由到对应Handler
  */
 public class RequestDispatcher implements HttpHandler {
-    private final SessionManager sessionManager;
-    private final StakeManager stakeManager;
-
-    // 接口URL正则表达式
-    private static final Pattern SESSION_PATTERN = Pattern.compile("^/(\\d+)/session$"); // 获取会话 GET /{customerId}/session
-    private static final Pattern STAKE_PATTERN = Pattern.compile("^/(\\d+)/stake$");     // 投注  POST /{betOfferId}/stake
-    private static final Pattern HIGH_STAKES_PATTERN = Pattern.compile("^/(\\d+)/highstakes$"); // 获取最高投注额度列表 GET /{betOfferId}/highstakes
-
-    public RequestDispatcher(SessionManager sessionManager, StakeManager stakeManager) {
-        this.sessionManager = sessionManager;
-        this.stakeManager = stakeManager;
+    private final ApiHandler apiHandler;
+    private final ServiceMetrics metrics;
+    private final HighStakesStreams streams;
+    // 准入控制（未启用时为null），推送流不经过准入控制
+    private final AdmissionController admission;
+
+    public RequestDispatcher(ApiHandler apiHandler, ServiceMetrics metrics, HighStakesStreams streams,
+                             AdmissionController admission) {
+        this.apiHandler = apiHandler;
+        this.metrics = metrics;
+        this.streams = streams;
+        this.admission = admission;
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
+        long startNanos = System.nanoTime();
         String method = exchange.getRequestMethod();
         String uri = exchange.getRequestURI().getPath();
-
-
+        Route route = null;
+        int status = 500;
         try {
-            // 匹配Get Session接口
-            Matcher sessionMatcher = SESSION_PATTERN.matcher(uri);
-            if (method.equalsIgnoreCase("GET") && sessionMatcher.matches()) {
-                int customerId = Integer.parseInt(sessionMatcher.group(1));
-                String sessionKey = sessionManager.getOrCreateSession(customerId);
-                HttpUtils.sendSuccess(exchange, sessionKey);
-                return;
-            }
-
-            // 匹配Post Stake接口
-            Matcher stakeMatcher = STAKE_PATTERN.matcher(uri);
-            if (method.equalsIgnoreCase("POST") && stakeMatcher.matches()) {
-                int betOfferId = Integer.parseInt(stakeMatcher.group(1));
-                String stakeStr = HttpUtils.readRequestBody(exchange);
-                int stake;
-                try {
-                    assert stakeStr != null;
-                    stake = Integer.parseInt(stakeStr);
-                    if (stake <= 0) {
-                        HttpUtils.sendError(exchange, 400, "Invalid stake value. Stake must be a positive integer");
+            ApiResponse response;
+            try {
+                long match = Route.match(method, uri);
+                if (match == Route.NO_MATCH) {
+                    // 未匹配到接口（404）
+                    response = apiHandler.notFound(uri);
+                } else if (Route.routeOf(match) == Route.HIGH_STAKES_STREAM) {
+                    // 推送流：响应头发出后连接保持打开，由推送线程继续写出（集群模式下只订阅本节点的投注项）
+                    route = Route.HIGH_STAKES_STREAM;
+                    ApiResponse misdirected = apiHandler.misdirectedStream(Route.idOf(match));
+                    if (misdirected != null) {
+                        response = misdirected;
+                    } else if (streams.subscribe(Route.idOf(match), new ExchangeStreamSink(exchange))) {
+                        status = 200;
                         return;
+                    } else {
+                        response = ApiResponse.error(503, "Too many stream subscribers");
                     }
-                } catch (Exception e) {
-                    HttpUtils.sendError(exchange, 400, "Invalid stake value. Stake must be a positive integer");
-                    return;
-                }
-                Map<String, String> requestBodyParamMap = HttpUtils.readParamMapFromQueryString(exchange);
-                String sessionKey = requestBodyParamMap.getOrDefault("sessionKey", "");
-                if (sessionKey == null || sessionKey.isBlank()) {
-                    HttpUtils.sendError(exchange, 401, "Unauthorized. Invalid sessionId");
                 } else {
-                    Integer customerId = sessionManager.validateSession(sessionKey);
-                    if (customerId == null) {
-                        HttpUtils.sendError(exchange, 401, "Unauthorized. Invalid sessionId");
-                    }
-                    stakeManager.saveStake(betOfferId, customerId, stake);
-                    HttpUtils.sendNoContent(exchange);
-                }
-
-                return;
-            }
-
-            // 匹配Get HighStakes接口
-            Matcher highStakesMatcher = HIGH_STAKES_PATTERN.matcher(uri);
-            if (method.equalsIgnoreCase("GET") && highStakesMatcher.matches()) {
-                int betOfferId = Integer.parseInt(highStakesMatcher.group(1));
-                String highStakeStr = stakeManager.formatEntryList(stakeManager.getTopStakes(betOfferId));
-                if (highStakeStr == null || highStakeStr.isBlank()) {
-                    HttpUtils.sendSuccess(exchange, "No valid stake found in this bet offer");
-                    return;
+                    route = Route.routeOf(match);
+                    response = admitAndDispatch(exchange, route, Route.idOf(match));
                 }
-                HttpUtils.sendSuccess(exchange, highStakeStr);
-                return;
+            } catch (NumberFormatException e) {
+                // 参数非整数（400）
+                response = apiHandler.invalidNumber(e);
+            } catch (PeerUnavailableException e) {
+                // 集群模式下负责该请求的节点不可用（503）
+                response = apiHandler.peerUnavailable(e);
+            } catch (ReadOnlyReplicaException e) {
+                // 副本不接受会话和写入请求（421）
+                response = apiHandler.readOnlyReplica(e);
             }
-
-            // 未匹配到接口（404）
-            HttpUtils.sendError(exchange, 404, "Resource not found: " + uri);
-
-        } catch (NumberFormatException e) {
-            // 参数非整数（400）
-            HttpUtils.sendError(exchange, 400, "Invalid numeric parameter: " + e.getMessage());
+            status = response.getStatusCode();
+            HttpUtils.sendResponse(exchange, response);
         } catch (Exception e) {
             // 其他异常（500）
+            status = 500;
             HttpUtils.sendError(exchange, 500, "Internal server error: " + e.getMessage());
+        } finally {
+            metrics.record(route, status, System.nanoTime() - startNanos);
         }
     }
 
+    /**
+     * 经准入控制后分发：过载时快速返回503并建议重试时间
+     */
+    private ApiResponse admitAndDispatch(HttpExchange exchange, Route route, int id) {
+        if (admission == null) {
+            return dispatch(exchange, route, id);
+        }
+        if (!admission.tryAcquire(route)) {
+            exchange.getResponseHeaders().set("Retry-After", AdmissionController.RETRY_AFTER_SECONDS);
+            return apiHandler.overloaded();
+        }
+        try {
+            return dispatch(exchange, route, id);
+        } finally {
+            admission.release(route);
+        }
+    }
 
-
+    private ApiResponse dispatch(HttpExchange exchange, Route route, int id) {
+        switch (route) {
+            case SESSION:
+                return apiHandler.getSession(id);
+            case STAKE:
+                return apiHandler.postStake(id, exchange.getRequestURI().getRawQuery(),
+                        HttpUtils.readRequestBodyBytes(exchange));
+            case BATCH_STAKES:
+                return apiHandler.postStakeBatch(exchange.getRequestURI().getRawQuery(),
+                        HttpUtils.readRequestBodyBytes(exchange));
+            case HIGH_STAKES_MULTI:
+                return apiHandler.getHighStakesMulti(exchange.getRequestURI().getRawQuery());
+            case RANK:
+                return apiHandler.getRank(id, exchange.getRequestURI().getRawQuery());
+            case STAKES_PAGE:
+                return apiHandler.getStakesPage(id, exchange.getRequestURI().getRawQuery());
+            case CLOSE_OFFER:
+                return apiHandler.closeOffer(id, exchange.getRequestURI().getRawQuery());
+            case HIGH_STAKES:
+            default:
+                return apiHandler.getHighStakes(id, exchange.getRequestURI().getRawQuery());
+        }
+    }
 }
@@ -0,0 +1,141 @@
+package com.xjy;
+
+/**
+ * 接口路由：/{id}/{name}或固定路径，单次扫描路径完成匹配和数字解析，不使用正则和子串
+ */
+public enum Route {
+    SESSION(Route.METHOD_GET, "session", true),             // 获取会话 GET /{customerId}/session
+    STAKE(Route.METHOD_POST, "stake", true),                // 投注  POST /{betOfferId}/stake
+    HIGH_STAKES(Route.METHOD_GET, "highstakes", true),      // 获取最高投注额度列表 GET /{betOfferId}/highstakes
+    HIGH_STAKES_STREAM(Route.METHOD_GET, "highstakes/stream", true), // 订阅最高投注额度变化（SSE） GET /{betOfferId}/highstakes/stream
+    BATCH_STAKES(Route.METHOD_POST, "/batch/stakes", false), // 批量投注 POST /batch/stakes
+    HIGH_STAKES_MULTI(Route.METHOD_GET, "/highstakes", false), // 批量查询最高投注额度列表 GET /highstakes?offers=1,2,3
+    RANK(Route.METHOD_GET, "rank", true),                   // 查询客户名次 GET /{betOfferId}/rank?customerId=...
+    STAKES_PAGE(Route.METHOD_GET, "stakes", true),          // 按名次分页查询额度 GET /{betOfferId}/stakes?from=1&limit=20
+    CLOSE_OFFER(Route.METHOD_POST, "close", true);          // 关闭投注项（管理接口） POST /{betOfferId}/close?adminToken=...
+
+    /**
+     * 请求方法编码：路由只使用GET和POST，其他方法均不匹配
+     */
+    public static final int METHOD_OTHER = 0;
+    public static final int METHOD_GET = 1;
+    public static final int METHOD_POST = 2;
+
+    /**
+     * 未匹配到路由
+     */
+    public static final long NO_MATCH = -1L;
+
+    private static final Route[] ROUTES = values();
+
+    private final int method;
+    private final String name;   // 带ID路由为路径最后一段，固定路由为完整路径
+    private final boolean hasId;
+
+    Route(int method, String name, boolean hasId) {
+        this.method = method;
+        this.name = name;
+        this.hasId = hasId;
+    }
+
+    /**
+     * 请求方法的编码（忽略大小写）
+     * @return METHOD_GET、METHOD_POST，其他方法为METHOD_OTHER
+     */
+    public static int methodOf(String method) {
+        if (method.equalsIgnoreCase("GET")) {
+            return METHOD_GET;
+        }
+        if (method.equalsIgnoreCase("POST")) {
+            return METHOD_POST;
+        }
+        return METHOD_OTHER;
+    }
+
+    /**
+     * 匹配请求方法和路径
+     * @param method 请求方法（忽略大小写）
+     * @param path 请求路径
+     * @return 匹配成功返回 (路由序号 << 32 | ID)（固定路由ID为0），否则返回NO_MATCH
+     * @throws NumberFormatException 路由匹配但ID超出int范围（与Integer.parseInt的异常信息一致）
+     */
+    public static long match(String method, String path) {
+        return match(methodOf(method), path, 0, path.length());
+    }
+
+    /**
+     * 匹配请求方法和路径区间[from, to)，jdk引擎直接传入路径字符串，nio引擎传入请求行字节的字符视图，两者共用同一套规则
+     * @param method 请求方法编码（METHOD_*）
+     * @return 匹配成功返回 (路由序号 << 32 | ID)（固定路由ID为0），否则返回NO_MATCH
+     * @throws NumberFormatException 路由匹配但ID超出int范围（与Integer.parseInt的异常信息一致）
+     */
+    public static long match(int method, CharSequence path, int from, int to) {
+        if (method == METHOD_OTHER || to - from < 2 || path.charAt(from) != '/') {
+            return NO_MATCH;
+        }
+        for (Route route : ROUTES) {
+            if (!route.hasId && route.method == method && regionEquals(path, from, to, route.name)) {
+                return (long) route.ordinal() << 32;
+            }
+        }
+        int i = from + 1;
+        long id = 0;
+        while (i < to) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            // 超过int范围后不再累加，避免long溢出
+            if (id <= Integer.MAX_VALUE) {
+                id = id * 10 + (c - '0');
+            }
+            i++;
+        }
+        if (i == from + 1 || i >= to || path.charAt(i) != '/') {
+            return NO_MATCH;
+        }
+        int nameStart = i + 1;
+        for (Route route : ROUTES) {
+            if (route.hasId && route.method == method && regionEquals(path, nameStart, to, route.name)) {
+                if (id > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("For input string: \"" + path.subSequence(from + 1, i) + "\"");
+                }
+                return ((long) route.ordinal() << 32) | id;
+            }
+        }
+        return NO_MATCH;
+    }
+
+    private static boolean regionEquals(CharSequence path, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (path.charAt(from + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 固定路由的完整路径
+     */
+    public String path() {
+        return name;
+    }
+
+    /**
+     * 从match结果中取出路由
+     */
+    public static Route routeOf(long match) {
+        return ROUTES[(int) (match >>> 32)];
+    }
+
+    /**
+     * 从match结果中取出路径ID
+     */
+    public static int idOf(long match) {
+        return (int) match;
+    }
+}
@@ -0,0 +1,50 @@
+package com.xjy;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 启动配置：命令行参数（--key=value）优先，其次为系统属性（-Dkey=value），最后为默认值
+ */
+public class ServerConfig {
+    private final Map<String, String> args = new HashMap<>();
+
+    public ServerConfig(String[] commandLineArgs) {
+        for (String arg : commandLineArgs) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Invalid argument (expected --key=value): " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                args.put(arg.substring(2), "true");
+            } else {
+                args.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    public String getString(String key, String defaultValue) {
+        String value = args.get(key);
+        if (value == null) {
+            value = System.getProperty(key);
+        }
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid integer for " + key + ": " + value);
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
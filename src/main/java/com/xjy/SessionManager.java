@@ -4,104 +4,93 @@ package com.xjy;
 
 import com.xjy.model.Session;
 import com.xjy.util.Base62Util;
+import com.xjy.util.SessionKeyGenerator;
+import com.xjy.util.TimingWheel;
 
-import java.security.SecureRandom;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Session管理器：负责Session的创建、校验、过期清理
+ * <p>
+ * 过期清理由时间轮驱动：Session创建时按过期时间放入对应的秒级槽位，清理任务每秒只处理刚到期的槽位，
+ * 工作量与实际过期的Session数量成正比，过期Session最多滞留约1秒。
+ * <p>
+ * 读写路径不加锁：Session不可变，创建与过期替换通过ConcurrentHashMap的putIfAbsent/replace原子完成，
+ * 保证每个客户同一时刻只有一个有效Session，使用时不延长有效期。
  */
-public class SessionManager {
+public class SessionManager implements SessionService {
     private static final long SESSION_TTL = 10 * 60 * 1000L; // 10分钟有效期（毫秒）
-    private static final String AVAILABLE_CHARSET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
     private static final int SESSION_KEY_LENGTH = 8; // 8位字母数字混合Key
 
+    // 会话密钥生成器：8位随机前缀 + 客户ID的Base62编码
+    private final SessionKeyGenerator keyGenerator = new SessionKeyGenerator(SESSION_KEY_LENGTH);
+
     // 客户ID → Session（正向映射）
     private final Map<Integer, Session> customerSessionMap = new ConcurrentHashMap<>();
 
     // 定时清理线程池（单线程足够，避免并发修改问题）
     private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor();
 
-    // 锁池：按客户ID余数分散到不同读写锁，减少竞争
-    private final ReentrantReadWriteLock[] customerLocks;
-    // 锁池大小（建议为2的幂）
-    private static final int LOCK_POOL_SIZE = 32;
-
+    // 过期时间轮：1秒一个槽位，槽位数覆盖整个有效期，每个Session只会在到期时被处理一次
+    private static final long EXPIRY_TICK_MILLIS = 1000L;
+    private final TimingWheel<Session> expiryWheel = new TimingWheel<>(EXPIRY_TICK_MILLIS,
+            (int) (SESSION_TTL / EXPIRY_TICK_MILLIS) + 2, Session::getExpireTime, System.currentTimeMillis());
 
+    // 统计：累计创建、累计过期的Session数量
+    private final LongAdder createdSessions = new LongAdder();
+    private final LongAdder expiredSessions = new LongAdder();
 
     public SessionManager() {
-        // 初始化锁池
-        customerLocks = new ReentrantReadWriteLock[LOCK_POOL_SIZE];
-        for (int i = 0; i < LOCK_POOL_SIZE; i++) {
-            customerLocks[i] = new ReentrantReadWriteLock();
-        }
-
-        // 启动定时清理：延迟1分钟开始，每1分钟执行1次
+        // 启动定时清理：每秒推进一次时间轮
         cleaner.scheduleAtFixedRate(
                 this::cleanExpiredSessions,
-                1, 1, TimeUnit.MINUTES
+                EXPIRY_TICK_MILLIS, EXPIRY_TICK_MILLIS, TimeUnit.MILLISECONDS
         );
     }
 
-    /**
-     * 获取客户id对应的锁（通过余数计算）
-     */
-    private ReentrantReadWriteLock getLockForCustomer(int customerId) {
-        // 哈希值取绝对值，避免负索引
-        int index = Math.abs(customerId % LOCK_POOL_SIZE);
-        return customerLocks[index];
-    }
-
     /**
      * 获取或创建客户的Session
      * @param customerId 客户ID
      * @return 有效SessionKey
      */
+    @Override
     public String getOrCreateSession(int customerId) {
         long now = System.currentTimeMillis();
-        long expireTime = now + SESSION_TTL;
 
-        ReentrantReadWriteLock lock = getLockForCustomer(customerId);
-        // 检查是否有已存在的会话，申请读锁
-        lock.readLock().lock();
-        try {
-            // 1. 检查现有Session是否有效
-            Session existing = customerSessionMap.get(customerId);
-            if (existing != null && existing.getExpireTime() >= now) {
-                return existing.getSessionKey();
-            }
-        } finally {
-            lock.readLock().unlock();
+        // 1. 快速路径：已有有效Session直接返回（Session不可变，无需加锁）
+        Session existing = customerSessionMap.get(customerId);
+        if (existing != null && existing.getExpireTime() >= now) {
+            return existing.getSessionKey();
         }
 
-        // 无有效会话，需要重新生成新会话，申请写锁
-        lock.writeLock().lock();
-        String newKey = generateSessionKey(customerId);
-        try {
-            // 重新检查获得写锁前，是否有新的有效会话
-            Session existing = customerSessionMap.get(customerId);
+        // 2. 在任何原子操作之外生成新Key，CAS失败时直接丢弃
+        Session newSession = new Session(customerId, keyGenerator.generate(customerId), now + SESSION_TTL);
+        while (true) {
+            if (existing == null) {
+                existing = customerSessionMap.putIfAbsent(customerId, newSession);
+                if (existing == null) {
+                    break;
+                }
+            } else if (customerSessionMap.replace(customerId, existing, newSession)) {
+                // 原子替换已过期的旧Session（按引用比较，期间被并发替换或清理则重试）
+                expiredSessions.increment();
+                break;
+            } else {
+                existing = customerSessionMap.get(customerId);
+            }
+            // 其他线程已抢先创建有效Session，使用对方的Key
             if (existing != null && existing.getExpireTime() >= now) {
                 return existing.getSessionKey();
             }
-
-            // 2. 生成新Session并原子更新
-            Session newSession = new Session(newKey, expireTime);
-
-            // 替换旧Session（若存在）
-            Session oldSession = customerSessionMap.put(customerId, newSession);
-
-
-        } finally {
-            lock.writeLock().unlock();
         }
-
-        return newKey;
+        createdSessions.increment();
+        expiryWheel.schedule(newSession);
+        return newSession.getSessionKey();
     }
 
     /**
@@ -109,96 +98,93 @@ public class SessionManager {
      * @param sessionKey 待验证的SessionKey
      * @return 有效则返回客户ID，无效则返回null
      */
+    @Override
     public Integer validateSession(String sessionKey) {
-        if (sessionKey == null || sessionKey.isBlank()) {
+        // 长度或字符集不合法的Key在查询Session表之前即被拒绝
+        int customerId = customerIdOf(sessionKey);
+        if (customerId < 0) {
             return null;
         }
 
-        // 查询客户ID
-        Integer customerId = getCustomerIdFromSessionKey(sessionKey);
-        if (customerId == null) {
+        // 验证Session是否匹配且未过期（读取的是不可变快照，无需加锁）
+        Session session = customerSessionMap.get(customerId);
+        if (session == null
+                || session.getExpireTime() < System.currentTimeMillis()
+                || !session.getSessionKey().equals(sessionKey)) {
             return null;
         }
-
-        // 检查前获取读锁
-        ReentrantReadWriteLock lock = getLockForCustomer(customerId);
-        lock.readLock().lock();
-        try {
-            // 验证Session是否匹配且未过期
-            Session session = customerSessionMap.get(customerId);
-            if (session == null
-                    || !session.getSessionKey().equals(sessionKey)
-                    || session.getExpireTime() < System.currentTimeMillis()) {
-                return null;
-            }
-        } finally {
-            lock.readLock().unlock();
-        }
         return customerId;
     }
 
     /**
-     * 清理过期Session
+     * 清理过期Session：推进时间轮，只处理刚到期槽位中的Session
      */
     private void cleanExpiredSessions() {
-        long now = System.currentTimeMillis();
-        List<Map.Entry<Integer, Session>> expired = new ArrayList<>();
-
-        // 收集过期Session
-        for (Map.Entry<Integer, Session> entry : customerSessionMap.entrySet()) {
-            if (entry.getValue().getExpireTime() < now) {
-                expired.add(entry);
-            }
-        }
-        Map<ReentrantReadWriteLock, List<Integer>> map = expired.stream()
-                .collect(Collectors.groupingBy(entry -> getLockForCustomer(entry.getKey()),
-                        Collectors.mapping(Map.Entry::getKey,
-                                Collectors.toList())));
-
-        // 按分段锁批量清理，降低锁占用
-        for (Map.Entry<ReentrantReadWriteLock, List<Integer>> entry : map.entrySet()) {
-            entry.getKey().writeLock().lock();
-            try {
-                for (Integer customerId : entry.getValue()) {
-                    // 进入写锁后二次检查
-                    if (customerSessionMap.containsKey(customerId) &&  customerSessionMap.get(customerId).getExpireTime() < now) {
-                        customerSessionMap.remove(customerId);
-                    }
+        try {
+            expiryWheel.advance(System.currentTimeMillis(), session -> {
+                // 条件删除：Session已被替换为新Session时不做处理
+                if (customerSessionMap.remove(session.getCustomerId(), session)) {
+                    expiredSessions.increment();
                 }
-            } finally {
-                entry.getKey().writeLock().unlock();
-            }
+            });
+        } catch (RuntimeException e) {
+            // 异常不能抛出，否则定时任务会被取消
+            System.err.println("Session expiry failed: " + e.getMessage());
         }
+    }
 
-        // 日志：便于调试
-        if (!expired.isEmpty()) {
-            System.out.printf("[%s] 清理过期Session数量：%d%n", new Date(now), expired.size());
-        }
+    /**
+     * 当前有效（未清理）的Session数量
+     */
+    public int getLiveSessionCount() {
+        return customerSessionMap.size();
     }
 
     /**
-     * 生成8位字母数字混合的SessionKey
+     * 累计创建的Session数量
      */
-    private String generateSessionKey(int customerId) {
-        SecureRandom random = new SecureRandom();
-        StringBuilder sb = new StringBuilder(SESSION_KEY_LENGTH);
-        for (int i = 0; i < SESSION_KEY_LENGTH; i++) {
-            sb.append(AVAILABLE_CHARSET.charAt(random.nextInt(AVAILABLE_CHARSET.length())));
-        }
-        sb.append(Base62Util.encode(customerId));
-        return sb.toString();
+    public long getCreatedSessionCount() {
+        return createdSessions.sum();
     }
 
-    private Integer getCustomerIdFromSessionKey(String sessionKey) {
-        if (sessionKey == null || sessionKey.isBlank() || sessionKey.length() <= SESSION_KEY_LENGTH) {
-            return null;
+    /**
+     * 累计过期的Session数量
+     */
+    public long getExpiredSessionCount() {
+        return expiredSessions.sum();
+    }
+
+    /**
+     * 从SessionKey中解出客户ID（Key末尾为客户ID的Base62编码），不检查Session是否存在；
+     * 直接在原字符串上查表解码，不截取子串、不抛出异常
+     * <p>
+     * 合法的Key长度为 8 + 1~6，且全部为Base62字符，否则不可能由本服务生成。
+     * @return 客户ID，格式无效返回-1
+     */
+    public static int customerIdOf(String sessionKey) {
+        if (sessionKey == null) {
+            return -1;
         }
-        String encodedSessionKey = sessionKey.substring(SESSION_KEY_LENGTH);
-        try {
-            return Base62Util.decode(encodedSessionKey);
-        } catch (Exception e) {
-            return null;
+        int length = sessionKey.length();
+        if (length <= SESSION_KEY_LENGTH || length > SESSION_KEY_LENGTH + Base62Util.MAX_ENCODED_LENGTH
+                || !Base62Util.isBase62(sessionKey, 0, SESSION_KEY_LENGTH)) {
+            return -1;
+        }
+        return Base62Util.decode(sessionKey, SESSION_KEY_LENGTH, length);
+    }
+
+    /**
+     * 从ASCII字节形式的SessionKey中解出客户ID，规则与customerIdOf(String)相同，
+     * 供二进制协议在构造字符串之前拒绝格式无效的Key
+     * @return 客户ID，格式无效返回-1
+     */
+    public static int customerIdOf(byte[] sessionKey, int from, int to) {
+        int length = to - from;
+        if (length <= SESSION_KEY_LENGTH || length > SESSION_KEY_LENGTH + Base62Util.MAX_ENCODED_LENGTH
+                || !Base62Util.isBase62(sessionKey, from, from + SESSION_KEY_LENGTH)) {
+            return -1;
         }
+        return Base62Util.decode(sessionKey, from + SESSION_KEY_LENGTH, to);
     }
 
     /**
@@ -0,0 +1,21 @@
+package com.xjy;
+
+/**
+ * 会话服务：单机模式由SessionManager直接提供，集群模式按客户ID路由到所在节点
+ */
+public interface SessionService {
+
+    /**
+     * 获取或创建客户的Session
+     * @param customerId 客户ID
+     * @return 有效SessionKey
+     */
+    String getOrCreateSession(int customerId);
+
+    /**
+     * 验证Session有效性
+     * @param sessionKey 待验证的SessionKey
+     * @return 有效则返回客户ID，无效则返回null
+     */
+    Integer validateSession(String sessionKey);
+}
@@ -1,17 +1,77 @@
 package com.xjy;
 
 
+import com.xjy.store.ConcurrentIntObjectMap;
+import com.xjy.store.HeapStakeStore;
+import com.xjy.store.StakeListener;
+import com.xjy.store.StakeStore;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
 
 /**
  * Stake管理器：负责Stake的存储（保留最高值）和Top20查询
  */
-public class StakeManager {
+public class StakeManager implements StakeService {
     private static final int TOP_LIMIT = 20; // 最多返回Top20
+    // 投注项无数据时的响应内容
+    private static final byte[] EMPTY_RESPONSE = "No valid stake found in this bet offer".getBytes(StandardCharsets.UTF_8);
+    // 投注项无数据时的二进制编码（条数为0）
+    private static final byte[] EMPTY_BINARY = new byte[4];
+    // 从存储重建名次索引时每次加锁提交的记录数（期间并发写入可以穿插执行）
+    private static final int RANK_BUILD_CHUNK = 4096;
+
+    // Stake存储：投注项ID → (客户ID → 最高Stake)
+    private final StakeStore stakeStore;
+
+    // 额度提升回调（如写前日志、复制日志），按注册顺序调用；注册和注销时整体替换数组
+    private volatile StakeListener[] stakeListeners = new StakeListener[0];
+    // Top20变化回调（参数为投注项ID，如推送订阅），未设置时为null
+    private volatile IntConsumer topStakesListener;
+
+    // 投注项ID → Top20索引（写入时增量维护，查询时无需排序）
+    private final ConcurrentIntObjectMap<TopStakes> offerTopStakes = new ConcurrentIntObjectMap<>();
+    // 投注项ID → 名次索引（首次名次/分页查询时创建，之后写入时增量维护）
+    private final ConcurrentIntObjectMap<RankIndex> offerRankIndexes = new ConcurrentIntObjectMap<>();
+    // 投注项ID → 时间窗口Top20（启用窗口模式后，首次写入时创建）
+    private final ConcurrentIntObjectMap<WindowedTopStakes> offerWindows = new ConcurrentIntObjectMap<>();
+    // 窗口模式的分桶时长和桶数（未启用时桶数为0）
+    private volatile long windowBucketMillis;
+    private volatile int windowBucketCount;
+
+    // 响应缓存命中/未命中计数
+    private final LongAdder responseCacheHits = new LongAdder();
+    private final LongAdder responseCacheMisses = new LongAdder();
+    // Top20发生变化（发布新快照）的次数
+    private final LongAdder topStakesUpdates = new LongAdder();
 
-    // 双层ConcurrentHashMap：投注项ID → (客户ID → 最高Stake)
-    private final Map<Integer, Map<Integer, Integer>> offerStakes = new ConcurrentHashMap<>();
+    public StakeManager() {
+        this(new HeapStakeStore());
+    }
+
+    public StakeManager(StakeStore stakeStore) {
+        this.stakeStore = stakeStore;
+        // 投注项换出内存时一并释放名次索引（与额度表同量级），下次名次查询时重建；Top20只有20条，继续保留
+        stakeStore.setEvictionListener(offerRankIndexes::remove);
+    }
+
+    /**
+     * 启用时间窗口Top20：每个投注项按bucketSeconds分桶，最多保留bucketCount个桶（需在接收写入前调用）
+     * <p>
+     * 窗口数据只在内存中按提交时间累积，不写入日志和快照、不参与复制，重启后从空窗口开始。
+     * @param bucketSeconds 每个桶覆盖的时长（秒），也是窗口查询的时间精度
+     * @param bucketCount 查询窗口最多包含的整桶数，最长查询窗口为 bucketSeconds×bucketCount 秒
+     */
+    public void enableWindows(int bucketSeconds, int bucketCount) {
+        if (bucketSeconds < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Window bucket seconds and bucket count must be positive");
+        }
+        this.windowBucketMillis = bucketSeconds * 1000L;
+        this.windowBucketCount = bucketCount;
+    }
 
     /**
      * 保存Stake（同一客户同一投注项保留最高值）
@@ -19,38 +79,486 @@ public class StakeManager {
      * @param customerId 客户ID
      * @param stake 本次提交的Stake
      */
+    @Override
     public void saveStake(int betOfferId, int customerId, int stake) {
-        // 1. 原子获取或创建投注项的Stake映射
-        Map<Integer, Integer> customerStakes = offerStakes.computeIfAbsent(
-                betOfferId, v -> new ConcurrentHashMap<>()
-        );
+        // 1. 原子更新为最大值（避免竞态条件）
+        int previous = stakeStore.mergeMax(betOfferId, customerId, stake);
+        // 时间窗口记录每次提交的额度，与历史最高值无关
+        if (windowBucketCount > 0) {
+            window(betOfferId).offer(customerId, stake, System.currentTimeMillis());
+        }
+        if (stake <= previous) {
+            return; // 额度未提升，Top20不受影响
+        }
+
+        // 2. 用新的最高值更新Top20（进不了Top20时无锁返回）
+        if (topStakes(betOfferId).offer(customerId, stake)) {
+            topStakesChanged(betOfferId);
+        }
+
+        // 3. 投注项已建名次索引时同步更新
+        RankIndex rankIndex = offerRankIndexes.get(betOfferId);
+        if (rankIndex != null) {
+            rankIndex.update(customerId, stake);
+        }
+
+        // 4. 通知额度提升（如写前日志，按落盘策略可能等待fsync）
+        for (StakeListener listener : stakeListeners) {
+            listener.onStakeRaised(betOfferId, customerId, stake);
+        }
+    }
+
+    /**
+     * 批量保存Stake：按投注项分组，每个投注项只查找一次存储、只更新一次Top20
+     * @param betOfferIds 投注项ID数组
+     * @param customerIds 客户ID数组
+     * @param stakes 额度数组
+     * @param count 有效记录数
+     */
+    @Override
+    public void saveStakes(int[] betOfferIds, int[] customerIds, int[] stakes, int count) {
+        // 1. 按投注项排序（投注项ID非负，高32位放投注项、低32位放原下标）
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) betOfferIds[i] << 32) | i;
+        }
+        Arrays.sort(order);
+        int[] groupCustomerIds = new int[count];
+        int[] groupStakes = new int[count];
+        for (int i = 0; i < count; i++) {
+            int index = (int) order[i];
+            groupCustomerIds[i] = customerIds[index];
+            groupStakes[i] = stakes[index];
+        }
+
+        // 2. 逐个投注项批量合并，只把额度提升的记录提交给Top20
+        int[] previous = new int[count];
+        boolean windowed = windowBucketCount > 0;
+        long nowMillis = windowed ? System.currentTimeMillis() : 0L;
+        int from = 0;
+        while (from < count) {
+            int betOfferId = (int) (order[from] >>> 32);
+            int to = from + 1;
+            while (to < count && (int) (order[to] >>> 32) == betOfferId) {
+                to++;
+            }
+            stakeStore.mergeMaxBatch(betOfferId, groupCustomerIds, groupStakes, from, to, previous);
+            if (windowed) {
+                // 时间窗口记录本组全部额度，需在下面压缩出提升记录之前提交
+                window(betOfferId).offerAll(groupCustomerIds, groupStakes, from, to, nowMillis);
+            }
+            int raised = from;
+            for (int i = from; i < to; i++) {
+                if (groupStakes[i] > previous[i]) {
+                    groupCustomerIds[raised] = groupCustomerIds[i];
+                    groupStakes[raised] = groupStakes[i];
+                    raised++;
+                }
+            }
+            if (raised > from && topStakes(betOfferId).offerAll(groupCustomerIds, groupStakes, from, raised)) {
+                topStakesChanged(betOfferId);
+            }
+            RankIndex rankIndex = offerRankIndexes.get(betOfferId);
+            if (rankIndex != null && raised > from) {
+                rankIndex.updateAll(groupCustomerIds, groupStakes, from, raised);
+            }
+            if (raised > from) {
+                for (StakeListener listener : stakeListeners) {
+                    listener.onStakesRaised(betOfferId, groupCustomerIds, groupStakes, from, raised);
+                }
+            }
+            from = to;
+        }
+    }
 
-        // 2. 原子更新为最大值（避免竞态条件）
-        customerStakes.compute(
-                customerId,
-                (k, existing) -> existing == null ? stake : Math.max(existing, stake)
-        );
+    /**
+     * 关闭投注项（如已结算）：删除存储中的全部额度以及Top20、名次索引和时间窗口，并通知日志和复制
+     * <p>
+     * 调用方需保证投注项已停止接收投注；关闭后到达的投注会重新创建该投注项。
+     * @param betOfferId 投注项ID
+     * @return 投注项存在并被关闭时返回true
+     * @throws UnsupportedOperationException 存储不支持删除投注项
+     */
+    @Override
+    public boolean closeOffer(int betOfferId) {
+        boolean removed = stakeStore.removeOffer(betOfferId);
+        TopStakes topStakes = offerTopStakes.remove(betOfferId);
+        offerRankIndexes.remove(betOfferId);
+        offerWindows.remove(betOfferId);
+        if (!removed) {
+            return false;
+        }
+        for (StakeListener listener : stakeListeners) {
+            listener.onOfferClosed(betOfferId);
+        }
+        if (topStakes != null && topStakes.snapshot().size() > 0) {
+            // 推送订阅者收到空列表
+            topStakesChanged(betOfferId);
+        }
+        return true;
     }
 
     /**
-     * 查询投注项的Top20最高Stake（按Stake降序，每个客户仅1条）
+     * 查询投注项的Top20最高Stake（按Stake降序，额度相同按客户ID升序，每个客户仅1条）
      * @param betOfferId 投注项ID
      * @return Top20 Stake列表（客户ID→Stake）
      */
     public List<Map.Entry<Integer, Integer>> getTopStakes(int betOfferId) {
-        // 1. 获取该投注项的所有Stake（无数据则返回空列表）
-        Map<Integer, Integer> customerStakes = offerStakes.get(betOfferId);
-        if (customerStakes == null || customerStakes.isEmpty()) {
+        // 直接读取增量维护的Top20快照（无数据则返回空列表）
+        TopStakes topStakes = existingTopStakes(betOfferId);
+        if (topStakes == null) {
             return Collections.emptyList();
         }
+        return topStakes.snapshot().toEntryList();
+    }
+
+    /**
+     * 查询投注项Top20的响应体字节（按快照缓存，Top20未变化时直接复用）
+     * @param betOfferId 投注项ID
+     * @return UTF-8编码的响应体
+     */
+    @Override
+    public byte[] getTopStakesResponse(int betOfferId) {
+        TopStakes topStakes = existingTopStakes(betOfferId);
+        if (topStakes == null) {
+            return EMPTY_RESPONSE;
+        }
+        // 快照只在Top20变化时替换，缓存随之失效
+        TopStakes.Snapshot snapshot = topStakes.snapshot();
+        byte[] cached = snapshot.encoded();
+        if (cached != null) {
+            responseCacheHits.increment();
+            return cached;
+        }
+        responseCacheMisses.increment();
+        byte[] encoded = snapshot.size() == 0 ? EMPTY_RESPONSE : formatSnapshot(snapshot);
+        snapshot.cacheEncoded(encoded);
+        return encoded;
+    }
+
+    /**
+     * 投注项Top20的定长二进制编码，与文本响应体一样缓存在快照上
+     * @param betOfferId 投注项ID
+     * @return int 条数 + 条数 × (int customerId, int stake)，整数均为大端
+     */
+    @Override
+    public byte[] getTopStakesBinary(int betOfferId) {
+        TopStakes topStakes = existingTopStakes(betOfferId);
+        if (topStakes == null) {
+            return EMPTY_BINARY;
+        }
+        TopStakes.Snapshot snapshot = topStakes.snapshot();
+        byte[] cached = snapshot.binaryEncoded();
+        if (cached != null) {
+            return cached;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + snapshot.size() * 8).putInt(snapshot.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            buffer.putInt(snapshot.customerId(i)).putInt(snapshot.stake(i));
+        }
+        byte[] encoded = buffer.array();
+        snapshot.cacheBinaryEncoded(encoded);
+        return encoded;
+    }
+
+    /**
+     * 一次查询多个投注项的Top20：每个投注项一行{@code betOfferId:列表}，列表格式与formatEntryList一致（无数据时为空），
+     * 按请求顺序输出；每个投注项直接复用缓存的响应体字节
+     * @param betOfferIds 投注项ID数组
+     * @param count 有效个数
+     * @return UTF-8编码的响应体
+     */
+    @Override
+    public byte[] getTopStakesResponses(int[] betOfferIds, int count) {
+        byte[][] bodies = new byte[count][];
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] body = getTopStakesResponse(betOfferIds[i]);
+            bodies[i] = body == EMPTY_RESPONSE ? null : body;
+            length += 12 + (bodies[i] == null ? 0 : body.length); // ID最多10位 + ':' + '\n'
+        }
+        byte[] response = new byte[length];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            position = writeDecimal(response, position, betOfferIds[i]);
+            response[position++] = ':';
+            if (bodies[i] != null) {
+                System.arraycopy(bodies[i], 0, response, position, bodies[i].length);
+                position += bodies[i].length;
+            }
+            response[position++] = '\n';
+        }
+        return Arrays.copyOf(response, position);
+    }
+
+    /**
+     * 查询投注项最近windowSeconds秒内提交的额度的Top20（每个客户取窗口内的最大值）
+     * <p>
+     * 窗口按桶对齐：包含当前桶及之前ceil(windowSeconds/桶时长)个整桶，覆盖时长不少于windowSeconds，最多多出一个桶。
+     * @param betOfferId 投注项ID
+     * @param windowSeconds 窗口时长（秒），超出最长窗口时按最长窗口计算
+     * @return UTF-8编码的响应体，格式与getTopStakesResponse一致
+     */
+    @Override
+    public byte[] getWindowedTopStakesResponse(int betOfferId, int windowSeconds) {
+        WindowedTopStakes window = offerWindows.get(betOfferId);
+        if (window == null) {
+            return EMPTY_RESPONSE;
+        }
+        long bucketMillis = window.getBucketMillis();
+        int sealedBuckets = (int) Math.min(window.getBucketCount(),
+                Math.max(1L, (windowSeconds * 1000L + bucketMillis - 1) / bucketMillis));
+        int[][] top = window.top(sealedBuckets, System.currentTimeMillis());
+        int[] customerIds = top[0];
+        int[] stakes = top[1];
+        if (customerIds.length == 0) {
+            return EMPTY_RESPONSE;
+        }
+        StringBuilder sb = new StringBuilder(customerIds.length * 16);
+        for (int i = 0; i < customerIds.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(customerIds[i]).append('=').append(stakes[i]);
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 支持的最长时间窗口（秒），未启用窗口模式时返回0
+     */
+    @Override
+    public int getMaxWindowSeconds() {
+        return (int) (windowBucketMillis / 1000 * windowBucketCount);
+    }
 
-        // 2. 转换为列表并按Stake降序排序
-        List<Map.Entry<Integer, Integer>> sorted = new ArrayList<>(customerStakes.entrySet());
-        sorted.sort((e1, e2) -> Integer.compare(e2.getValue(), e1.getValue()));
+    /**
+     * 已创建时间窗口Top20的投注项数量
+     */
+    public int getWindowCount() {
+        return offerWindows.size();
+    }
+
+    /**
+     * 查询客户在投注项下的名次（排序规则与Top20一致），O(log n)
+     * @param betOfferId 投注项ID
+     * @param customerId 客户ID
+     * @return 从1开始的名次，客户在该投注项下没有额度时返回0
+     */
+    @Override
+    public int getRank(int betOfferId, int customerId) {
+        RankIndex rankIndex = rankIndex(betOfferId);
+        return rankIndex == null ? 0 : rankIndex.rankOf(customerId);
+    }
 
-        // 3. 截取Top20
-        int end = Math.min(sorted.size(), TOP_LIMIT);
-        return sorted.subList(0, end);
+    /**
+     * 按名次分页查询投注项的额度（排序规则与Top20一致），O(log n + limit)
+     * @param betOfferId 投注项ID
+     * @param fromRank 起始名次（从1开始）
+     * @param limit 最多返回条数
+     * @return 额度列表（客户ID→Stake），超出范围时返回空列表
+     */
+    public List<Map.Entry<Integer, Integer>> getStakesPage(int betOfferId, int fromRank, int limit) {
+        RankIndex rankIndex = rankIndex(betOfferId);
+        if (rankIndex == null) {
+            return Collections.emptyList();
+        }
+        return rankIndex.page(fromRank, limit);
+    }
+
+    /**
+     * 按名次分页查询的响应体字节（格式与Top20一致），超出范围时为空
+     */
+    @Override
+    public byte[] getStakesPageResponse(int betOfferId, int fromRank, int limit) {
+        return formatEntryList(getStakesPage(betOfferId, fromRank, limit)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 已创建名次索引的投注项数量
+     */
+    public int getRankIndexCount() {
+        return offerRankIndexes.size();
+    }
+
+    /**
+     * 获取投注项的名次索引，首次访问时创建并从存储重建；投注项没有任何额度时返回null，不创建索引
+     * <p>
+     * 索引先发布再扫描存储，扫描期间的并发写入直接提交给索引；额度按最大值合并，结果与提交顺序无关。
+     * 扫描结果分块提交，避免长时间阻塞该投注项的写入；重建完成前的查询在索引上等待。
+     */
+    private RankIndex rankIndex(int betOfferId) {
+        RankIndex rankIndex = offerRankIndexes.get(betOfferId);
+        if (rankIndex != null || !stakeStore.containsOffer(betOfferId)) {
+            return rankIndex;
+        }
+        RankIndex created = new RankIndex();
+        rankIndex = offerRankIndexes.computeIfAbsent(betOfferId, v -> created);
+        if (rankIndex == created) {
+            try {
+                int[] customerIds = new int[RANK_BUILD_CHUNK];
+                int[] stakes = new int[RANK_BUILD_CHUNK];
+                int[] count = new int[1];
+                stakeStore.forEachStake(betOfferId, (customerId, stake) -> {
+                    customerIds[count[0]] = customerId;
+                    stakes[count[0]] = stake;
+                    if (++count[0] == RANK_BUILD_CHUNK) {
+                        created.updateAll(customerIds, stakes, 0, RANK_BUILD_CHUNK);
+                        count[0] = 0;
+                    }
+                });
+                created.updateAll(customerIds, stakes, 0, count[0]);
+            } finally {
+                created.markReady();
+            }
+        }
+        return rankIndex;
+    }
+
+    /**
+     * 获取投注项的Top20索引，首次访问时从存储重建（存储可能来自重启镜像，已有数据）
+     * <p>
+     * 重建在表锁外扫描存储；扫描期间的并发写入在合并后都会再提交给发布出去的索引，
+     * 额度按最大值合并、重复提交无副作用，因此结果精确。
+     */
+    private TopStakes topStakes(int betOfferId) {
+        TopStakes topStakes = offerTopStakes.get(betOfferId);
+        if (topStakes != null) {
+            return topStakes;
+        }
+        TopStakes rebuilt = new TopStakes(TOP_LIMIT);
+        stakeStore.forEachStake(betOfferId, rebuilt::offer);
+        topStakes = offerTopStakes.computeIfAbsent(betOfferId, v -> rebuilt);
+        if (topStakes == rebuilt && rebuilt.snapshot().size() > 0) {
+            topStakesChanged(betOfferId);
+        }
+        return topStakes;
+    }
+
+    /**
+     * 获取投注项的时间窗口Top20，首次写入时创建（窗口只记录启用后的提交，无需从存储重建）
+     */
+    private WindowedTopStakes window(int betOfferId) {
+        WindowedTopStakes window = offerWindows.get(betOfferId);
+        if (window != null) {
+            return window;
+        }
+        return offerWindows.computeIfAbsent(betOfferId,
+                v -> new WindowedTopStakes(TOP_LIMIT, windowBucketMillis, windowBucketCount));
+    }
+
+    private void topStakesChanged(int betOfferId) {
+        topStakesUpdates.increment();
+        IntConsumer listener = topStakesListener;
+        if (listener != null) {
+            listener.accept(betOfferId);
+        }
+    }
+
+    /**
+     * 查询路径获取Top20索引：投注项没有任何额度时返回null，不创建索引
+     */
+    private TopStakes existingTopStakes(int betOfferId) {
+        TopStakes topStakes = offerTopStakes.get(betOfferId);
+        if (topStakes != null || !stakeStore.containsOffer(betOfferId)) {
+            return topStakes;
+        }
+        return topStakes(betOfferId);
+    }
+
+    /**
+     * 注册额度提升回调（恢复数据完成后再注册，避免回放的数据被重复记录）
+     */
+    public synchronized void addStakeListener(StakeListener stakeListener) {
+        StakeListener[] listeners = Arrays.copyOf(stakeListeners, stakeListeners.length + 1);
+        listeners[listeners.length - 1] = stakeListener;
+        stakeListeners = listeners;
+    }
+
+    /**
+     * 注销额度提升回调
+     */
+    public synchronized void removeStakeListener(StakeListener stakeListener) {
+        StakeListener[] listeners = stakeListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == stakeListener) {
+                StakeListener[] remaining = new StakeListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                stakeListeners = remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 设置Top20变化回调：在写入线程中同步执行，必须轻量且不阻塞
+     */
+    public void setTopStakesListener(IntConsumer topStakesListener) {
+        this.topStakesListener = topStakesListener;
+    }
+
+    public StakeStore getStakeStore() {
+        return stakeStore;
+    }
+
+    public long getResponseCacheHits() {
+        return responseCacheHits.sum();
+    }
+
+    public long getResponseCacheMisses() {
+        return responseCacheMisses.sum();
+    }
+
+    /**
+     * Top20累计变化次数
+     */
+    public long getTopStakesUpdateCount() {
+        return topStakesUpdates.sum();
+    }
+
+    /**
+     * 已有投注的投注项数量
+     */
+    public int getOfferCount() {
+        return stakeStore.offerCount();
+    }
+
+    /**
+     * 已保存的(投注项, 客户)额度记录总数
+     */
+    public long getStakeCount() {
+        return stakeStore.stakeCount();
+    }
+
+    /**
+     * 将Top20快照编码为响应体，格式与formatEntryList一致
+     */
+    private static byte[] formatSnapshot(TopStakes.Snapshot snapshot) {
+        StringBuilder sb = new StringBuilder(snapshot.size() * 16);
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(snapshot.customerId(i)).append('=').append(snapshot.stake(i));
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写出非负整数的十进制表示
+     * @return 写入后的位置
+     */
+    private static int writeDecimal(byte[] bytes, int position, int value) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = position + digits - 1; i >= position; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return position + digits;
     }
 
     /**
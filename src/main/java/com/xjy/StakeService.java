@@ -0,0 +1,74 @@
+package com.xjy;
+
+/**
+ * 额度服务：单机模式由StakeManager直接提供，集群模式按投注项ID路由到所在节点
+ */
+public interface StakeService {
+
+    /**
+     * 保存Stake（同一客户同一投注项只保留最高值）
+     */
+    void saveStake(int betOfferId, int customerId, int stake);
+
+    /**
+     * 批量保存Stake
+     * @param count 有效记录数
+     */
+    void saveStakes(int[] betOfferIds, int[] customerIds, int[] stakes, int count);
+
+    /**
+     * 关闭投注项：删除其全部额度和索引
+     * @return 投注项存在并被关闭时返回true
+     * @throws UnsupportedOperationException 额度存储不支持删除投注项
+     */
+    boolean closeOffer(int betOfferId);
+
+    /**
+     * 投注项Top20的响应体字节
+     */
+    byte[] getTopStakesResponse(int betOfferId);
+
+    /**
+     * 投注项Top20的定长二进制编码（大端）：int 条数 + 条数 × (int customerId, int stake)
+     */
+    byte[] getTopStakesBinary(int betOfferId);
+
+    /**
+     * 多个投注项Top20的响应体字节：按请求顺序每个投注项一行{@code betOfferId:列表}
+     * @param count 有效个数
+     */
+    byte[] getTopStakesResponses(int[] betOfferIds, int count);
+
+    /**
+     * 投注项最近windowSeconds秒内提交的额度的Top20响应体字节（格式与Top20一致）
+     * @param windowSeconds 窗口时长（秒），1到getMaxWindowSeconds()
+     */
+    byte[] getWindowedTopStakesResponse(int betOfferId, int windowSeconds);
+
+    /**
+     * 支持的最长时间窗口（秒）
+     * @return 未启用窗口模式时返回0
+     */
+    int getMaxWindowSeconds();
+
+    /**
+     * 客户在投注项下的名次
+     * @return 从1开始的名次，客户在该投注项下没有额度时返回0
+     */
+    int getRank(int betOfferId, int customerId);
+
+    /**
+     * 按名次分页查询的响应体字节（格式与Top20一致）
+     * @param fromRank 起始名次（从1开始）
+     * @param limit 最多返回条数
+     */
+    byte[] getStakesPageResponse(int betOfferId, int fromRank, int limit);
+
+    /**
+     * 投注项所在节点的HTTP地址（host:port）
+     * @return 由本节点负责时返回null
+     */
+    default String ownerAddress(int betOfferId) {
+        return null;
+    }
+}
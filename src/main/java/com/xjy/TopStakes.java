@@ -0,0 +1,238 @@
+package com.xjy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单个投注项的TopK额度索引：写入时增量维护，读取时直接返回不可变快照
+ * <p>
+ * 排序规则：额度降序，额度相同时客户ID升序。
+ * 由于每个客户的额度只增不减，被挤出TopK的客户只有在额度提升后才可能重新进入，
+ * 因此只保留K条记录即可得到精确结果，无需回查全量数据。
+ */
+public class TopStakes {
+    private final int capacity;
+
+    // 当前快照（不可变），读操作无锁
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public TopStakes(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 提交客户的最新额度（按最大值合并）
+     * @param customerId 客户ID
+     * @param stake 客户在该投注项下的额度
+     * @return TopK是否发生变化
+     */
+    public boolean offer(int customerId, int stake) {
+        // 快速路径：不可能改变TopK时不加锁
+        if (!snapshot.mayAccept(customerId, stake, capacity)) {
+            return false;
+        }
+        synchronized (this) {
+            Snapshot current = snapshot;
+            if (!current.mayAccept(customerId, stake, capacity)) {
+                return false;
+            }
+            snapshot = current.with(customerId, stake, capacity, current.version + 1);
+            return true;
+        }
+    }
+
+    /**
+     * 批量提交同一投注项下的多条额度：只加一次锁、只发布一次快照
+     * @param customerIds 客户ID数组
+     * @param stakes 额度数组
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     * @return TopK是否发生变化
+     */
+    public boolean offerAll(int[] customerIds, int[] stakes, int from, int to) {
+        Snapshot current = snapshot;
+        int first = from;
+        while (first < to && !current.mayAccept(customerIds[first], stakes[first], capacity)) {
+            first++;
+        }
+        if (first == to) {
+            return false;
+        }
+        synchronized (this) {
+            Snapshot updated = snapshot;
+            for (int i = first; i < to; i++) {
+                if (updated.mayAccept(customerIds[i], stakes[i], capacity)) {
+                    updated = updated.with(customerIds[i], stakes[i], capacity, updated.version);
+                }
+            }
+            if (updated == snapshot) {
+                return false;
+            }
+            snapshot = updated.withVersion(snapshot.version + 1);
+            return true;
+        }
+    }
+
+    /**
+     * 获取当前TopK快照
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * TopK不可变快照：按排序规则存放客户ID和额度
+     */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new int[0], new int[0], 0L);
+
+        private final int[] customerIds;
+        private final int[] stakes;
+        private final long version;
+
+        // 编码后的响应体缓存（快照不可变，生成一次即可复用；并发重复生成结果相同）
+        private volatile byte[] encoded;
+        // 二进制协议的定长编码缓存
+        private volatile byte[] binaryEncoded;
+
+        private Snapshot(int[] customerIds, int[] stakes, long version) {
+            this.customerIds = customerIds;
+            this.stakes = stakes;
+            this.version = version;
+        }
+
+        public int size() {
+            return customerIds.length;
+        }
+
+        public int customerId(int index) {
+            return customerIds[index];
+        }
+
+        public int stake(int index) {
+            return stakes[index];
+        }
+
+        /**
+         * 版本号：TopK每变化一次加1
+         */
+        public long version() {
+            return version;
+        }
+
+        /**
+         * 获取缓存的响应体字节
+         * @return 已缓存则返回字节数组，否则返回null
+         */
+        public byte[] encoded() {
+            return encoded;
+        }
+
+        /**
+         * 缓存编码后的响应体字节
+         */
+        public void cacheEncoded(byte[] bytes) {
+            this.encoded = bytes;
+        }
+
+        /**
+         * 获取缓存的定长二进制编码
+         * @return 已缓存则返回字节数组，否则返回null
+         */
+        public byte[] binaryEncoded() {
+            return binaryEncoded;
+        }
+
+        /**
+         * 缓存定长二进制编码
+         */
+        public void cacheBinaryEncoded(byte[] bytes) {
+            this.binaryEncoded = bytes;
+        }
+
+        /**
+         * 转换为(客户ID→额度)列表，最多复制K条
+         */
+        public List<Map.Entry<Integer, Integer>> toEntryList() {
+            if (customerIds.length == 0) {
+                return Collections.emptyList();
+            }
+            List<Map.Entry<Integer, Integer>> list = new ArrayList<>(customerIds.length);
+            for (int i = 0; i < customerIds.length; i++) {
+                list.add(Map.entry(customerIds[i], stakes[i]));
+            }
+            return list;
+        }
+
+        /**
+         * 判断(customerId, stake)是否可能改变TopK
+         */
+        private boolean mayAccept(int customerId, int stake, int capacity) {
+            int size = customerIds.length;
+            for (int i = 0; i < size; i++) {
+                if (customerIds[i] == customerId) {
+                    // 已在TopK中，只有额度提升才需要更新
+                    return stake > stakes[i];
+                }
+            }
+            if (size < capacity) {
+                return true;
+            }
+            // 已满：必须严格优于当前最后一名
+            return ranksBefore(stake, customerId, stakes[size - 1], customerIds[size - 1]);
+        }
+
+        /**
+         * 生成合并(customerId, stake)后的新快照，调用前需确认mayAccept为true
+         */
+        private Snapshot with(int customerId, int stake, int capacity, long newVersion) {
+            int size = customerIds.length;
+            int existing = -1;
+            for (int i = 0; i < size; i++) {
+                if (customerIds[i] == customerId) {
+                    existing = i;
+                    break;
+                }
+            }
+            int newSize = existing >= 0 ? size : Math.min(size + 1, capacity);
+            int[] newCustomerIds = new int[newSize];
+            int[] newStakes = new int[newSize];
+
+            // 依次拷贝原有条目（跳过该客户旧记录），并在合适位置插入新记录
+            boolean inserted = false;
+            int j = 0;
+            for (int i = 0; i < size && j < newSize; i++) {
+                if (i == existing) {
+                    continue;
+                }
+                if (!inserted && ranksBefore(stake, customerId, stakes[i], customerIds[i])) {
+                    newCustomerIds[j] = customerId;
+                    newStakes[j] = stake;
+                    j++;
+                    inserted = true;
+                    if (j == newSize) {
+                        break;
+                    }
+                }
+                newCustomerIds[j] = customerIds[i];
+                newStakes[j] = stakes[i];
+                j++;
+            }
+            if (!inserted && j < newSize) {
+                newCustomerIds[j] = customerId;
+                newStakes[j] = stake;
+            }
+            return new Snapshot(newCustomerIds, newStakes, newVersion);
+        }
+
+        private Snapshot withVersion(long newVersion) {
+            return new Snapshot(customerIds, stakes, newVersion);
+        }
+
+        private static boolean ranksBefore(int stake1, int customerId1, int stake2, int customerId2) {
+            return stake1 > stake2 || (stake1 == stake2 && customerId1 < customerId2);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.xjy;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 单个投注项的时间窗口TopK：按固定时长分桶，每个桶是一个独立的TopStakes（桶内每个客户取最大值）
+ * <p>
+ * 窗口内客户的额度取其在各个桶中的最大值。若某客户进入窗口TopK，则在其最大值所在的桶中排在他前面的客户
+ * 在窗口中同样排在他前面，因此他必然在该桶的TopK中——每个桶只保留K条记录，合并各桶的TopK即可得到精确结果。
+ * <p>
+ * 桶按时间序号放入环形数组，序号不匹配的槽位即已过期，写入时直接替换（O(1)），无需清理线程；
+ * 每个投注项占用的内存固定为 (桶数+1)×K 条记录（多出的一个槽位存放尚未写满的当前桶）。
+ * <p>
+ * 查询时把当前桶与已封闭桶的合并结果再合并一次；已封闭桶的合并结果按(当前桶序号, 桶数)缓存，
+ * 只在跨入新桶或已封闭桶收到迟到的写入时重新计算。
+ */
+public class WindowedTopStakes {
+    private static final int[] EMPTY = new int[0];
+
+    private final int capacity;
+    private final long bucketMillis;
+    private final int bucketCount;
+    // 槽位 = 桶序号 % (bucketCount + 1)
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    // 已封闭桶的合并结果缓存（不可变，整体替换）
+    private volatile Merged sealedCache;
+
+    /**
+     * @param capacity 每个桶及查询结果保留的条数
+     * @param bucketMillis 每个桶覆盖的时长（毫秒）
+     * @param bucketCount 已封闭桶的最大个数，最长查询窗口为 bucketMillis×bucketCount
+     */
+    public WindowedTopStakes(int capacity, long bucketMillis, int bucketCount) {
+        this.capacity = capacity;
+        this.bucketMillis = bucketMillis;
+        this.bucketCount = bucketCount;
+        this.buckets = new AtomicReferenceArray<>(bucketCount + 1);
+    }
+
+    /**
+     * 记录客户本次提交的额度（不要求高于其历史最高值）
+     * @param nowMillis 当前时间（毫秒）
+     */
+    public void offer(int customerId, int stake, long nowMillis) {
+        bucket(nowMillis / bucketMillis).topStakes.offer(customerId, stake);
+    }
+
+    /**
+     * 批量记录同一投注项下的多条额度
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     * @param nowMillis 当前时间（毫秒）
+     */
+    public void offerAll(int[] customerIds, int[] stakes, int from, int to, long nowMillis) {
+        bucket(nowMillis / bucketMillis).topStakes.offerAll(customerIds, stakes, from, to);
+    }
+
+    /**
+     * 查询当前桶及之前若干个已封闭桶内的TopK（排序规则与TopStakes一致）
+     * @param sealedBuckets 已封闭桶的个数，0到bucketCount
+     * @param nowMillis 当前时间（毫秒）
+     * @return [客户ID数组, 额度数组]
+     */
+    public int[][] top(int sealedBuckets, long nowMillis) {
+        long current = nowMillis / bucketMillis;
+        Merged sealed = sealed(current, sealedBuckets);
+        Bucket bucket = buckets.get(slot(current));
+        if (bucket == null || bucket.index != current) {
+            return new int[][]{sealed.customerIds, sealed.stakes};
+        }
+        TopStakes.Snapshot snapshot = bucket.topStakes.snapshot();
+        int[] customerIds = new int[snapshot.size()];
+        int[] stakes = new int[snapshot.size()];
+        for (int i = 0; i < customerIds.length; i++) {
+            customerIds[i] = snapshot.customerId(i);
+            stakes[i] = snapshot.stake(i);
+        }
+        return merge(sealed.customerIds, sealed.stakes, customerIds, stakes);
+    }
+
+    /**
+     * 每个桶覆盖的时长（毫秒）
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * 获取当前桶，槽位中是已过期的桶时直接替换
+     */
+    private Bucket bucket(long index) {
+        int slot = slot(index);
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.index >= index) {
+                // 时钟回拨或线程在桶边界处被延后：写入较新的桶，保证不会复活已过期的槽位
+                return bucket;
+            }
+            Bucket created = new Bucket(index, new TopStakes(capacity));
+            if (buckets.compareAndSet(slot, bucket, created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 当前桶之前sealedBuckets个桶的合并结果，按缓存键和各桶版本号校验缓存
+     */
+    private Merged sealed(long current, int sealedBuckets) {
+        // 各桶版本号之和：已封闭桶收到迟到写入、或有桶过期被替换时都会变化
+        long versionSum = 0;
+        for (int i = 1; i <= sealedBuckets; i++) {
+            Bucket bucket = buckets.get(slot(current - i));
+            if (bucket != null && bucket.index == current - i) {
+                versionSum += bucket.topStakes.snapshot().version() + 1;
+            }
+        }
+        Merged cached = sealedCache;
+        if (cached != null && cached.current == current && cached.sealedBuckets == sealedBuckets
+                && cached.versionSum == versionSum) {
+            return cached;
+        }
+        int[] customerIds = EMPTY;
+        int[] stakes = EMPTY;
+        for (int i = 1; i <= sealedBuckets; i++) {
+            Bucket bucket = buckets.get(slot(current - i));
+            if (bucket == null || bucket.index != current - i) {
+                continue;
+            }
+            TopStakes.Snapshot snapshot = bucket.topStakes.snapshot();
+            int[] bucketCustomerIds = new int[snapshot.size()];
+            int[] bucketStakes = new int[snapshot.size()];
+            for (int j = 0; j < bucketCustomerIds.length; j++) {
+                bucketCustomerIds[j] = snapshot.customerId(j);
+                bucketStakes[j] = snapshot.stake(j);
+            }
+            int[][] merged = merge(customerIds, stakes, bucketCustomerIds, bucketStakes);
+            customerIds = merged[0];
+            stakes = merged[1];
+        }
+        Merged merged = new Merged(current, sealedBuckets, versionSum, customerIds, stakes);
+        sealedCache = merged;
+        return merged;
+    }
+
+    /**
+     * 合并两个已排序的TopK列表：同一客户只保留较高额度，结果最多capacity条
+     */
+    private int[][] merge(int[] customerIds1, int[] stakes1, int[] customerIds2, int[] stakes2) {
+        int[] customerIds = new int[Math.min(capacity, customerIds1.length + customerIds2.length)];
+        int[] stakes = new int[customerIds.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (size < customerIds.length && (i < customerIds1.length || j < customerIds2.length)) {
+            int customerId;
+            int stake;
+            if (j == customerIds2.length || (i < customerIds1.length
+                    && ranksBefore(stakes1[i], customerIds1[i], stakes2[j], customerIds2[j]))) {
+                customerId = customerIds1[i];
+                stake = stakes1[i++];
+            } else {
+                customerId = customerIds2[j];
+                stake = stakes2[j++];
+            }
+            // 按额度降序依次取出，客户第一次出现时即为其最大值，之后的重复记录跳过
+            boolean seen = false;
+            for (int k = 0; k < size; k++) {
+                if (customerIds[k] == customerId) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) {
+                customerIds[size] = customerId;
+                stakes[size] = stake;
+                size++;
+            }
+        }
+        return new int[][]{Arrays.copyOf(customerIds, size), Arrays.copyOf(stakes, size)};
+    }
+
+    private int slot(long index) {
+        return (int) Math.floorMod(index, bucketCount + 1L);
+    }
+
+    private static boolean ranksBefore(int stake1, int customerId1, int stake2, int customerId2) {
+        return stake1 > stake2 || (stake1 == stake2 && customerId1 < customerId2);
+    }
+
+    private static final class Bucket {
+        final long index;
+        final TopStakes topStakes;
+
+        Bucket(long index, TopStakes topStakes) {
+            this.index = index;
+            this.topStakes = topStakes;
+        }
+    }
+
+    private static final class Merged {
+        final long current;
+        final int sealedBuckets;
+        final long versionSum;
+        final int[] customerIds;
+        final int[] stakes;
+
+        Merged(long current, int sealedBuckets, long versionSum, int[] customerIds, int[] stakes) {
+            this.current = current;
+            this.sealedBuckets = sealedBuckets;
+            this.versionSum = versionSum;
+            this.customerIds = customerIds;
+            this.stakes = stakes;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.xjy.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个路由的自适应并发上限（AIMD）：请求延迟在目标以内且上限确实被用到时每个窗口加1，
+ * 超过目标时乘以BACKOFF（每个目标时长内最多下调一次，避免同一批慢请求把上限连续压到底）
+ * <p>
+ * 并发计数为CAS，上限调整只在tryLock成功时进行：竞争时跳过本次样本，采样路径不阻塞。
+ */
+final class AdaptiveLimit {
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile double limit;
+    // 以下字段由updateLock保护
+    private long lastDecreaseNanos;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * 并发数未达到上限时占用一个名额
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并按本次延迟调整上限
+     * @param latencyNanos 请求延迟（含排队时间）
+     * @param targetNanos 目标延迟
+     * @param now 当前时间（System.nanoTime）
+     */
+    void release(long latencyNanos, long targetNanos, long now) {
+        int current = inFlight.getAndDecrement();
+        if (!updateLock.tryLock()) {
+            return;
+        }
+        try {
+            double value = limit;
+            if (latencyNanos > targetNanos) {
+                if (now - lastDecreaseNanos >= targetNanos) {
+                    limit = Math.max(minLimit, value * BACKOFF);
+                    lastDecreaseNanos = now;
+                }
+            } else if (current * 2 >= value && value < maxLimit) {
+                limit = Math.min(maxLimit, value + 1.0 / value);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+}
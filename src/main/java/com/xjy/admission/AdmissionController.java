@@ -0,0 +1,136 @@
+package com.xjy.admission;
+
+import com.xjy.Route;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 准入控制：在RequestDispatcher处理请求前按路由决定接收或快速拒绝（503 + Retry-After）
+ * <p>
+ * 包装HTTP执行器，在请求入队时记录时间，延迟按“排队 + 处理”计算，即客户端实际等待的时间。
+ * 两层判断：
+ * <ul>
+ *     <li>排队时间已超过路由优先级对应的延迟预算：客户端很可能已超时，直接拒绝，不做无人等待的工作；</li>
+ *     <li>路由的并发数达到自适应上限（AIMD，按同一预算调整）。</li>
+ * </ul>
+ * 预算按优先级放大：会话创建为目标延迟的1倍，写入和名次查询2倍，Top20查询4倍。过载时排队时间上升，
+ * 会话创建最先被拒绝，释放出的线程留给廉价的Top20查询。
+ */
+public class AdmissionController {
+    /**
+     * 拒绝时建议客户端等待的秒数（Retry-After）
+     */
+    public static final String RETRY_AFTER_SECONDS = "1";
+
+    private static final Route[] ROUTES = Route.values();
+    // 当前线程正在处理的请求的入队时间（0表示未经包装的执行器提交）
+    private static final ThreadLocal<long[]> ENQUEUED_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final long targetNanos;
+    // 按Route序号存放
+    private final AdaptiveLimit[] limits = new AdaptiveLimit[ROUTES.length];
+    private final LongAdder[] rejected = new LongAdder[ROUTES.length];
+
+    /**
+     * @param targetMillis 最低优先级路由的目标延迟（毫秒）
+     * @param initialLimit 每个路由的初始并发上限
+     * @param maxLimit 每个路由的并发上限最大值
+     */
+    public AdmissionController(int targetMillis, int initialLimit, int maxLimit) {
+        if (targetMillis <= 0 || maxLimit <= 0) {
+            throw new IllegalArgumentException("Admission target and limit must be positive");
+        }
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        for (Route route : ROUTES) {
+            limits[route.ordinal()] = new AdaptiveLimit(initialLimit, 1, maxLimit);
+            rejected[route.ordinal()] = new LongAdder();
+        }
+    }
+
+    /**
+     * 包装HTTP执行器：记录每个任务的入队时间
+     */
+    public Executor wrap(Executor executor) {
+        return command -> {
+            long enqueued = System.nanoTime();
+            executor.execute(() -> {
+                long[] holder = ENQUEUED_NANOS.get();
+                holder[0] = enqueued;
+                try {
+                    command.run();
+                } finally {
+                    holder[0] = 0;
+                }
+            });
+        };
+    }
+
+    /**
+     * 尝试接收请求，接收后必须在处理完成时调用release
+     * @return 是否接收
+     */
+    public boolean tryAcquire(Route route) {
+        long now = System.nanoTime();
+        long queued = now - enqueuedNanos(now);
+        if (queued > budgetNanos(route) || !limits[route.ordinal()].tryAcquire()) {
+            rejected[route.ordinal()].increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求处理完成：释放并发名额，按本次延迟调整路由上限
+     */
+    public void release(Route route) {
+        long now = System.nanoTime();
+        limits[route.ordinal()].release(now - enqueuedNanos(now), budgetNanos(route), now);
+    }
+
+    /**
+     * 路由当前的并发上限
+     */
+    public int getLimit(Route route) {
+        return limits[route.ordinal()].limit();
+    }
+
+    /**
+     * 路由当前的并发数
+     */
+    public int getInFlight(Route route) {
+        return limits[route.ordinal()].inFlight();
+    }
+
+    /**
+     * 路由累计拒绝的请求数
+     */
+    public long getRejected(Route route) {
+        return rejected[route.ordinal()].sum();
+    }
+
+    private long budgetNanos(Route route) {
+        return targetNanos * priorityOf(route);
+    }
+
+    /**
+     * 优先级即延迟预算倍数：Top20查询最高，会话创建最低
+     */
+    private static int priorityOf(Route route) {
+        switch (route) {
+            case HIGH_STAKES:
+            case HIGH_STAKES_MULTI:
+                return 4;
+            case SESSION:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    private static long enqueuedNanos(long now) {
+        long enqueued = ENQUEUED_NANOS.get()[0];
+        return enqueued == 0 ? now : enqueued;
+    }
+}
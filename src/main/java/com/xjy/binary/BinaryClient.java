@@ -0,0 +1,212 @@
+package com.xjy.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * 二进制协议客户端（仅依赖JDK）：单条连接上流水线发送请求，最多maxInFlight个请求同时等待响应
+ * <p>
+ * 可被多个线程同时调用；在途请求达到上限时调用线程阻塞等待。结果由连接的读取线程完成，
+ * 注册在返回的CompletableFuture上的回调也在该线程中执行，不应阻塞。连接断开后所有在途和后续请求都以
+ * UncheckedIOException失败，需要新建客户端重连。
+ */
+public class BinaryClient implements Closeable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final Semaphore inFlight;
+    private final Map<Integer, Pending<?>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+
+    private int nextRequestId;
+    private volatile IOException failure;
+
+    public BinaryClient(String host, int port, int maxInFlight) throws IOException {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 8192));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+        this.reader = new Thread(() -> readLoop(in), "binary-client-" + host + ":" + port);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * 获取或创建客户的会话
+     * @return 完成值为sessionKey
+     */
+    public CompletableFuture<String> getSession(int customerId) {
+        byte[] args = ByteBuffer.allocate(4).putInt(customerId).array();
+        return send(BinaryProtocol.OP_GET_SESSION, args, result -> {
+            int length = result.get() & 0xFF;
+            return new String(result.array(), result.position(), length, StandardCharsets.US_ASCII);
+        });
+    }
+
+    /**
+     * 提交额度
+     */
+    public CompletableFuture<Void> postStake(String sessionKey, int betOfferId, int stake) {
+        byte[] key = sessionKey.getBytes(StandardCharsets.US_ASCII);
+        if (key.length == 0 || key.length > 255) {
+            throw new IllegalArgumentException("Invalid session key length: " + key.length);
+        }
+        byte[] args = ByteBuffer.allocate(9 + key.length).putInt(betOfferId).putInt(stake)
+                .put((byte) key.length).put(key).array();
+        return send(BinaryProtocol.OP_STAKE, args, result -> null);
+    }
+
+    /**
+     * 查询投注项Top20
+     * @return 完成值为[客户ID数组, 额度数组]，按额度降序
+     */
+    public CompletableFuture<int[][]> getHighStakes(int betOfferId) {
+        byte[] args = ByteBuffer.allocate(4).putInt(betOfferId).array();
+        return send(BinaryProtocol.OP_HIGH_STAKES, args, result -> {
+            int count = result.getInt();
+            int[] customerIds = new int[count];
+            int[] stakes = new int[count];
+            for (int i = 0; i < count; i++) {
+                customerIds[i] = result.getInt();
+                stakes[i] = result.getInt();
+            }
+            return new int[][]{customerIds, stakes};
+        });
+    }
+
+    private <T> CompletableFuture<T> send(byte op, byte[] args, Function<ByteBuffer, T> decoder) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        synchronized (out) {
+            int requestId = nextRequestId++;
+            pending.put(requestId, new Pending<>(future, decoder));
+            // 读取线程失败时先设置failure再清空pending，这里在登记后检查，保证请求不会无人完成
+            IOException failed = failure;
+            if (failed == null) {
+                try {
+                    out.writeInt(BinaryProtocol.HEADER_LENGTH + args.length);
+                    out.writeInt(requestId);
+                    out.writeByte(op);
+                    out.write(args);
+                    out.flush();
+                } catch (IOException e) {
+                    failed = e;
+                    fail(e);
+                }
+            }
+            if (failed != null && pending.remove(requestId) != null) {
+                inFlight.release();
+                future.completeExceptionally(new UncheckedIOException(failed));
+            }
+        }
+        return future;
+    }
+
+    private void readLoop(DataInputStream in) {
+        try {
+            while (true) {
+                byte[] frame = BinaryProtocol.readFrame(in, BinaryProtocol.MAX_RESPONSE_LENGTH);
+                ByteBuffer response = ByteBuffer.wrap(frame);
+                int requestId = response.getInt();
+                byte status = response.get();
+                Pending<?> request = pending.remove(requestId);
+                if (request == null) {
+                    throw new IOException("Response for unknown request " + requestId);
+                }
+                inFlight.release();
+                request.complete(status, response);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 连接失败：之后的请求立即失败，在途请求全部以异常完成
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        for (Integer requestId : pending.keySet()) {
+            Pending<?> request = pending.remove(requestId);
+            if (request != null) {
+                inFlight.release();
+                request.future.completeExceptionally(new UncheckedIOException(failure));
+            }
+        }
+    }
+
+    /**
+     * 当前等待响应的请求数
+     */
+    public int getInFlightCount() {
+        return pending.size();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 关闭失败无需处理
+        }
+        try {
+            reader.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Pending<T> {
+        final CompletableFuture<T> future;
+        final Function<ByteBuffer, T> decoder;
+
+        Pending(CompletableFuture<T> future, Function<ByteBuffer, T> decoder) {
+            this.future = future;
+            this.decoder = decoder;
+        }
+
+        void complete(byte status, ByteBuffer result) {
+            if (status != BinaryProtocol.STATUS_OK) {
+                String message = new String(result.array(), result.position(), result.remaining(), StandardCharsets.UTF_8);
+                future.completeExceptionally(new BinaryStatusException(status, message));
+                return;
+            }
+            T value;
+            try {
+                value = decoder.apply(result);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            future.complete(value);
+        }
+    }
+}
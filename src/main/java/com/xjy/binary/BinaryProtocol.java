@@ -0,0 +1,71 @@
+package com.xjy.binary;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * 面向内部高频客户端的二进制协议：长连接上带请求ID的流水线帧，整数均为定长大端
+ * <p>
+ * 请求帧：int 长度 + int 请求ID + byte 操作码 + 参数；响应帧：int 长度 + int 请求ID + byte 状态 + 结果
+ * （长度不含自身4字节）。客户端可以不等响应连续发送多个请求，服务端按请求顺序返回，请求ID用于对应请求与响应。
+ * 会话密钥编码为 byte 长度 + ASCII字节。
+ */
+public final class BinaryProtocol {
+    // 操作码及参数 → 结果
+    public static final byte OP_GET_SESSION = 1;   // int customerId → byte 长度 + sessionKey
+    public static final byte OP_STAKE = 2;         // int betOfferId + int stake + byte 长度 + sessionKey → 空
+    public static final byte OP_HIGH_STAKES = 3;   // int betOfferId → int 条数 + 条数 × (int customerId, int stake)
+
+    // 响应状态（非OK时结果为UTF-8错误信息），括号内为HTTP接口的对应状态码
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_BAD_REQUEST = 1;    // 400：参数不合法（如负数客户ID或投注项ID）或未知操作码
+    public static final byte STATUS_UNAUTHORIZED = 2;   // 401：会话无效或已过期
+    public static final byte STATUS_READ_ONLY = 3;      // 421：只读副本不处理会话和写入
+    public static final byte STATUS_UNAVAILABLE = 4;    // 503：集群中负责该请求的节点不可用
+    public static final byte STATUS_ERROR = 5;          // 500：服务端内部错误
+
+    // 帧头长度：请求ID + 操作码/状态
+    static final int HEADER_LENGTH = 5;
+    // 请求帧最大长度：最长的请求（提交额度）不超过300字节，超出即视为错误数据并断开连接
+    static final int MAX_REQUEST_LENGTH = 1024;
+    // 响应帧最大长度，防止错误数据导致大量分配
+    static final int MAX_RESPONSE_LENGTH = 1 << 20;
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * 与HTTP接口对应的状态码，便于与HTTP压测结果对比
+     */
+    public static int httpStatus(byte status) {
+        switch (status) {
+            case STATUS_OK:
+                return 200;
+            case STATUS_BAD_REQUEST:
+                return 400;
+            case STATUS_UNAUTHORIZED:
+                return 401;
+            case STATUS_READ_ONLY:
+                return 421;
+            case STATUS_UNAVAILABLE:
+                return 503;
+            default:
+                return 500;
+        }
+    }
+
+    /**
+     * 读取一帧（不含长度字段）
+     * @param maxLength 允许的最大帧长度
+     * @throws java.io.EOFException 对端已关闭连接
+     */
+    static byte[] readFrame(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER_LENGTH || length > maxLength) {
+            throw new IOException("Invalid binary frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+}
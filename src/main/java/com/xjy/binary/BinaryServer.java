@@ -0,0 +1,241 @@
+package com.xjy.binary;
+
+import com.xjy.SessionManager;
+import com.xjy.SessionService;
+import com.xjy.StakeService;
+import com.xjy.cluster.PeerUnavailableException;
+import com.xjy.replica.ReadOnlyReplicaException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二进制协议服务端：与HTTP接口共用SessionService/StakeService，集群和副本模式下的转发、只读语义保持一致
+ * <p>
+ * 每条连接一个线程，按顺序处理流水线上的请求；响应先写入缓冲区，输入缓冲区中没有待处理的请求时才刷出，
+ * 连续到达的一批请求只需一次写系统调用。
+ */
+public class BinaryServer implements Closeable {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int port;
+    private final SessionService sessionService;
+    private final StakeService stakeService;
+    private final ExecutorService connectionThreads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "binary-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    // 按操作码统计的请求数（下标为操作码，0为未知操作码）
+    private final LongAdder[] requestCounts = new LongAdder[BinaryProtocol.OP_HIGH_STAKES + 1];
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    public BinaryServer(int port, SessionService sessionService, StakeService stakeService) {
+        this.port = port;
+        this.sessionService = sessionService;
+        this.stakeService = stakeService;
+        for (int i = 0; i < requestCounts.length; i++) {
+            requestCounts[i] = new LongAdder();
+        }
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port), 1024);
+        running = true;
+        acceptor = new Thread(this::acceptLoop, "binary-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                connectionThreads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Binary protocol accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedInputStream buffered = new BufferedInputStream(socket.getInputStream(), 65536);
+            DataInputStream in = new DataInputStream(buffered);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 65536));
+            while (running) {
+                byte[] frame = BinaryProtocol.readFrame(in, BinaryProtocol.MAX_REQUEST_LENGTH);
+                ByteBuffer request = ByteBuffer.wrap(frame);
+                int requestId = request.getInt();
+                byte op = request.get();
+                byte status = BinaryProtocol.STATUS_OK;
+                byte[] result;
+                try {
+                    result = handle(op, request);
+                } catch (BinaryRequestException e) {
+                    status = e.status;
+                    result = e.getMessage().getBytes(StandardCharsets.UTF_8);
+                } catch (ReadOnlyReplicaException e) {
+                    status = BinaryProtocol.STATUS_READ_ONLY;
+                    result = e.getMessage().getBytes(StandardCharsets.UTF_8);
+                } catch (PeerUnavailableException e) {
+                    status = BinaryProtocol.STATUS_UNAVAILABLE;
+                    result = e.getMessage().getBytes(StandardCharsets.UTF_8);
+                } catch (RuntimeException e) {
+                    status = BinaryProtocol.STATUS_ERROR;
+                    result = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                }
+                out.writeInt(BinaryProtocol.HEADER_LENGTH + result.length);
+                out.writeInt(requestId);
+                out.writeByte(status);
+                out.write(result);
+                if (buffered.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // 对端关闭连接或服务关闭
+        } catch (IOException e) {
+            System.err.println("Binary protocol connection failed: " + e.getMessage());
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private byte[] handle(byte op, ByteBuffer args) {
+        requestCounts[op >= 0 && op < requestCounts.length ? op : 0].increment();
+        if (args.remaining() < 4) {
+            throw new BinaryRequestException(BinaryProtocol.STATUS_BAD_REQUEST, "Truncated request");
+        }
+        switch (op) {
+            case BinaryProtocol.OP_GET_SESSION: {
+                int customerId = args.getInt();
+                if (customerId < 0) {
+                    // HTTP路由只匹配非负整数ID，这里同样按参数不合法拒绝
+                    throw new BinaryRequestException(BinaryProtocol.STATUS_BAD_REQUEST, "Invalid customer id: " + customerId);
+                }
+                byte[] sessionKey = sessionService.getOrCreateSession(customerId).getBytes(StandardCharsets.US_ASCII);
+                byte[] result = new byte[1 + sessionKey.length];
+                result[0] = (byte) sessionKey.length;
+                System.arraycopy(sessionKey, 0, result, 1, sessionKey.length);
+                return result;
+            }
+            case BinaryProtocol.OP_STAKE: {
+                if (args.remaining() < 9) {
+                    throw new BinaryRequestException(BinaryProtocol.STATUS_BAD_REQUEST, "Truncated request");
+                }
+                int betOfferId = checkBetOfferId(args.getInt());
+                int stake = args.getInt();
+                int keyLength = args.get() & 0xFF;
+                if (stake <= 0) {
+                    throw new BinaryRequestException(BinaryProtocol.STATUS_BAD_REQUEST,
+                            "Invalid stake value. Stake must be a positive integer");
+                }
+                if (keyLength != args.remaining() || SessionManager.customerIdOf(args.array(), args.position(),
+                        args.position() + keyLength) < 0) {
+                    // 格式无效的Key直接拒绝，不构造字符串
+                    throw new BinaryRequestException(BinaryProtocol.STATUS_UNAUTHORIZED, "Unauthorized. Invalid sessionId");
+                }
+                String sessionKey = new String(args.array(), args.position(), keyLength, StandardCharsets.US_ASCII);
+                Integer customerId = sessionService.validateSession(sessionKey);
+                if (customerId == null) {
+                    throw new BinaryRequestException(BinaryProtocol.STATUS_UNAUTHORIZED, "Unauthorized. Invalid sessionId");
+                }
+                stakeService.saveStake(betOfferId, customerId, stake);
+                return EMPTY;
+            }
+            case BinaryProtocol.OP_HIGH_STAKES:
+                return stakeService.getTopStakesBinary(checkBetOfferId(args.getInt()));
+            default:
+                throw new BinaryRequestException(BinaryProtocol.STATUS_BAD_REQUEST, "Unknown operation: " + op);
+        }
+    }
+
+    /**
+     * HTTP路由只匹配非负整数ID，负数投注项ID同样按参数不合法拒绝，避免创建HTTP无法查询和关闭的投注项
+     */
+    private static int checkBetOfferId(int betOfferId) {
+        if (betOfferId < 0) {
+            throw new BinaryRequestException(BinaryProtocol.STATUS_BAD_REQUEST, "Invalid bet offer id: " + betOfferId);
+        }
+        return betOfferId;
+    }
+
+    /**
+     * 当前连接数
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * 按操作码统计的请求数
+     * @param op 操作码，0为未知操作码
+     */
+    public long getRequestCount(int op) {
+        return requestCounts[op].sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // 关闭失败不影响退出
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 同上
+            }
+        }
+        connectionThreads.shutdown();
+        if (acceptor != null) {
+            acceptor.interrupt();
+        }
+    }
+
+    /**
+     * 请求参数或会话不合法：按指定状态返回，不计为服务端错误
+     */
+    private static final class BinaryRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final byte status;
+
+        BinaryRequestException(byte status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.xjy.binary;
+
+/**
+ * 二进制协议请求被服务端拒绝或处理失败
+ */
+public class BinaryStatusException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final byte status;
+
+    public BinaryStatusException(byte status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * 响应状态，见BinaryProtocol.STATUS_*
+     */
+    public byte getStatus() {
+        return status;
+    }
+
+    /**
+     * 与HTTP接口对应的状态码
+     */
+    public int getHttpStatus() {
+        return BinaryProtocol.httpStatus(status);
+    }
+}
@@ -0,0 +1,78 @@
+package com.xjy.cluster;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * 集群成员与分区：投注项和客户按ID在一致性哈希环上分配到节点，每个远程节点一个内部协议客户端
+ * <p>
+ * 所有节点使用相同的节点列表和虚拟节点数，因此无需协调即可对任意ID得到相同的归属。
+ */
+public class Cluster implements Closeable {
+    private final ClusterNode[] nodes;
+    private final int localNodeId;
+    private final HashRing ring;
+    // 按节点ID存放，本节点为null
+    private final PeerClient[] peers;
+
+    /**
+     * @param nodes 集群节点（下标即节点ID）
+     * @param localNodeId 本节点ID
+     * @param virtualNodes 每个节点的虚拟节点数
+     * @param timeoutMillis 连接和调用远程节点的超时时间
+     */
+    public Cluster(List<ClusterNode> nodes, int localNodeId, int virtualNodes, int timeoutMillis) {
+        if (localNodeId < 0 || localNodeId >= nodes.size()) {
+            throw new IllegalArgumentException("Invalid node id " + localNodeId + " for a cluster of " + nodes.size() + " nodes");
+        }
+        this.nodes = nodes.toArray(new ClusterNode[0]);
+        this.localNodeId = localNodeId;
+        this.ring = new HashRing(this.nodes.length, virtualNodes);
+        this.peers = new PeerClient[this.nodes.length];
+        for (ClusterNode node : this.nodes) {
+            if (node.getId() != localNodeId) {
+                peers[node.getId()] = new PeerClient(node, timeoutMillis);
+            }
+        }
+    }
+
+    /**
+     * 投注项或客户ID所属的节点ID
+     */
+    public int ownerOf(int id) {
+        return ring.ownerOf(id);
+    }
+
+    public boolean isLocal(int nodeId) {
+        return nodeId == localNodeId;
+    }
+
+    /**
+     * 远程节点的客户端
+     * @param nodeId 非本节点的ID
+     */
+    public PeerClient peer(int nodeId) {
+        return peers[nodeId];
+    }
+
+    public ClusterNode node(int nodeId) {
+        return nodes[nodeId];
+    }
+
+    public ClusterNode localNode() {
+        return nodes[localNodeId];
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    @Override
+    public void close() {
+        for (PeerClient peer : peers) {
+            if (peer != null) {
+                peer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.xjy.cluster;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 集群节点：HTTP地址和内部协议地址，节点ID为其在集群配置中的下标
+ */
+public final class ClusterNode {
+    private final int id;
+    private final String host;
+    private final int httpPort;
+    private final int clusterPort;
+
+    public ClusterNode(int id, String host, int httpPort, int clusterPort) {
+        this.id = id;
+        this.host = host;
+        this.httpPort = httpPort;
+        this.clusterPort = clusterPort;
+    }
+
+    /**
+     * 解析集群配置：逗号分隔的 host:httpPort:clusterPort，所有节点的配置必须相同（顺序决定节点ID）
+     */
+    public static List<ClusterNode> parseAll(String spec) {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] fields = part.trim().split(":");
+            if (fields.length != 3 || fields[0].isEmpty()) {
+                throw new IllegalArgumentException("Invalid cluster node (expected host:httpPort:clusterPort): " + part);
+            }
+            try {
+                nodes.add(new ClusterNode(nodes.size(), fields[0],
+                        Integer.parseInt(fields[1]), Integer.parseInt(fields[2])));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cluster node port: " + part);
+            }
+        }
+        return nodes;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    public int getClusterPort() {
+        return clusterPort;
+    }
+
+    public String httpAddress() {
+        return host + ":" + httpPort;
+    }
+
+    public String clusterAddress() {
+        return host + ":" + clusterPort;
+    }
+}
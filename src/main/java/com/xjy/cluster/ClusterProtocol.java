@@ -0,0 +1,61 @@
+package com.xjy.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * 节点间内部协议：长连接上的请求/响应帧，同一连接上请求按顺序处理
+ * <p>
+ * 请求帧：int 长度 + byte 操作码 + 参数；响应帧：int 长度 + byte 状态 + 结果（长度不含自身4字节，整数均为大端）。
+ * 所有操作都可安全重试：额度按最大值合并，获取Session返回同一个有效Key。
+ */
+public final class ClusterProtocol {
+    // 操作码及参数 → 结果
+    public static final byte OP_GET_SESSION = 1;       // int customerId → UTF-8 sessionKey
+    public static final byte OP_VALIDATE_SESSION = 2;  // UTF-8 sessionKey → int customerId（无效为-1）
+    public static final byte OP_SAVE_STAKES = 3;       // int count + count × (int betOfferId, int customerId, int stake) → 空
+    public static final byte OP_TOP_STAKES = 4;        // int betOfferId → Top20响应体
+    public static final byte OP_TOP_STAKES_MULTI = 5;  // int count + count × int betOfferId → 多投注项响应体
+    public static final byte OP_RANK = 6;              // int betOfferId + int customerId → int 名次
+    public static final byte OP_STAKES_PAGE = 7;       // int betOfferId + int fromRank + int limit → 分页响应体
+    public static final byte OP_WINDOWED_TOP_STAKES = 8; // int betOfferId + int windowSeconds → 时间窗口Top20响应体
+    public static final byte OP_CLOSE_OFFER = 9;       // int betOfferId + UTF-8 adminToken → int 是否关闭（1/0）
+    public static final byte OP_TOP_STAKES_BINARY = 10; // int betOfferId → Top20定长二进制编码
+
+    // 响应状态
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_ERROR = 1;         // 结果为UTF-8错误信息
+    public static final byte STATUS_UNSUPPORTED = 2;   // 本节点不支持该操作（如存储不支持关闭投注项），结果为UTF-8错误信息
+
+    // 单帧最大长度，防止错误数据导致大量分配
+    static final int MAX_FRAME_LENGTH = 64 << 20;
+
+    private ClusterProtocol() {
+    }
+
+    /**
+     * 写出一帧（不刷出）
+     * @param type 操作码或响应状态
+     */
+    static void writeFrame(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeInt(payload.length + 1);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    /**
+     * 读取一帧
+     * @return 帧内容（首字节为操作码或响应状态）
+     * @throws java.io.EOFException 对端已关闭连接
+     */
+    static byte[] readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid cluster frame length: " + length);
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,199 @@
+package com.xjy.cluster;
+
+import com.xjy.SessionManager;
+import com.xjy.StakeManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 内部协议服务端：处理其他节点转发来的请求，直接调用本地的SessionManager/StakeManager（不再转发）
+ * <p>
+ * 每条连接一个线程；对端的连接池只在并发调用时新建连接，连接数与对端的并发请求数相当。
+ */
+public class ClusterServer implements Closeable {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int port;
+    private final SessionManager sessionManager;
+    private final StakeManager stakeManager;
+    // 管理令牌：转发来的关闭投注项请求需携带与本节点相同的令牌，未配置时拒绝关闭
+    private final byte[] adminToken;
+    private final ExecutorService connectionThreads = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "cluster-connection");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /**
+     * @param adminToken 管理令牌（与HTTP管理接口相同），未配置时为null
+     */
+    public ClusterServer(int port, SessionManager sessionManager, StakeManager stakeManager, String adminToken) {
+        this.port = port;
+        this.sessionManager = sessionManager;
+        this.stakeManager = stakeManager;
+        this.adminToken = adminToken == null ? null : adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port), 1024);
+        running = true;
+        acceptor = new Thread(this::acceptLoop, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                connectionThreads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Cluster accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (running) {
+                byte[] frame = ClusterProtocol.readFrame(in);
+                byte status = ClusterProtocol.STATUS_OK;
+                byte[] result;
+                try {
+                    result = handle(frame[0], ByteBuffer.wrap(frame, 1, frame.length - 1));
+                } catch (UnsupportedOperationException e) {
+                    // 与本地调用一样返回501，而不是当作节点内部错误
+                    status = ClusterProtocol.STATUS_UNSUPPORTED;
+                    result = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                } catch (RuntimeException e) {
+                    status = ClusterProtocol.STATUS_ERROR;
+                    result = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+                }
+                ClusterProtocol.writeFrame(out, status, result);
+                out.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // 对端关闭连接或服务关闭
+        } catch (IOException e) {
+            System.err.println("Cluster connection failed: " + e.getMessage());
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    private byte[] handle(byte op, ByteBuffer args) {
+        switch (op) {
+            case ClusterProtocol.OP_GET_SESSION:
+                return sessionManager.getOrCreateSession(args.getInt()).getBytes(StandardCharsets.UTF_8);
+            case ClusterProtocol.OP_VALIDATE_SESSION: {
+                String sessionKey = new String(args.array(), args.position(), args.remaining(), StandardCharsets.UTF_8);
+                Integer customerId = sessionManager.validateSession(sessionKey);
+                return intBytes(customerId == null ? -1 : customerId);
+            }
+            case ClusterProtocol.OP_SAVE_STAKES: {
+                int count = args.getInt();
+                int[] betOfferIds = new int[count];
+                int[] customerIds = new int[count];
+                int[] stakes = new int[count];
+                for (int i = 0; i < count; i++) {
+                    betOfferIds[i] = args.getInt();
+                    customerIds[i] = args.getInt();
+                    stakes[i] = args.getInt();
+                }
+                if (count == 1) {
+                    stakeManager.saveStake(betOfferIds[0], customerIds[0], stakes[0]);
+                } else if (count > 1) {
+                    stakeManager.saveStakes(betOfferIds, customerIds, stakes, count);
+                }
+                return EMPTY;
+            }
+            case ClusterProtocol.OP_TOP_STAKES:
+                return stakeManager.getTopStakesResponse(args.getInt());
+            case ClusterProtocol.OP_TOP_STAKES_BINARY:
+                return stakeManager.getTopStakesBinary(args.getInt());
+            case ClusterProtocol.OP_TOP_STAKES_MULTI: {
+                int count = args.getInt();
+                int[] betOfferIds = new int[count];
+                for (int i = 0; i < count; i++) {
+                    betOfferIds[i] = args.getInt();
+                }
+                return stakeManager.getTopStakesResponses(betOfferIds, count);
+            }
+            case ClusterProtocol.OP_RANK:
+                return intBytes(stakeManager.getRank(args.getInt(), args.getInt()));
+            case ClusterProtocol.OP_STAKES_PAGE:
+                return stakeManager.getStakesPageResponse(args.getInt(), args.getInt(), args.getInt());
+            case ClusterProtocol.OP_CLOSE_OFFER: {
+                int betOfferId = args.getInt();
+                byte[] token = new byte[args.remaining()];
+                args.get(token);
+                // 内部端口没有其他认证，关闭投注项与HTTP管理接口一样按固定时间比较令牌
+                if (adminToken == null || !MessageDigest.isEqual(adminToken, token)) {
+                    throw new SecurityException("Forbidden. Invalid admin token");
+                }
+                return intBytes(stakeManager.closeOffer(betOfferId) ? 1 : 0);
+            }
+            case ClusterProtocol.OP_WINDOWED_TOP_STAKES:
+                return stakeManager.getWindowedTopStakesResponse(args.getInt(), args.getInt());
+            default:
+                throw new IllegalArgumentException("Unknown cluster operation: " + op);
+        }
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // 关闭失败不影响退出
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 同上
+            }
+        }
+        connectionThreads.shutdown();
+        if (acceptor != null) {
+            acceptor.interrupt();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.xjy.cluster;
+
+import com.xjy.SessionManager;
+import com.xjy.SessionService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 集群模式的会话服务：Session保存在客户ID所属的节点上
+ * <p>
+ * SessionKey末尾是客户ID的Base62编码，任意节点都能直接从Key算出所属节点并转发校验，无需共享Session表；
+ * 格式无效的Key在本地直接拒绝，不产生网络请求。
+ */
+public class ClusterSessions implements SessionService {
+    private final Cluster cluster;
+    private final SessionManager localSessions;
+
+    public ClusterSessions(Cluster cluster, SessionManager localSessions) {
+        this.cluster = cluster;
+        this.localSessions = localSessions;
+    }
+
+    @Override
+    public String getOrCreateSession(int customerId) {
+        int owner = cluster.ownerOf(customerId);
+        if (cluster.isLocal(owner)) {
+            return localSessions.getOrCreateSession(customerId);
+        }
+        byte[] sessionKey = cluster.peer(owner).call(ClusterProtocol.OP_GET_SESSION,
+                ByteBuffer.allocate(4).putInt(customerId).array());
+        return new String(sessionKey, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Integer validateSession(String sessionKey) {
+        // 格式无效的Key不转发
+        int customerId = SessionManager.customerIdOf(sessionKey);
+        if (customerId < 0) {
+            return null;
+        }
+        int owner = cluster.ownerOf(customerId);
+        if (cluster.isLocal(owner)) {
+            return localSessions.validateSession(sessionKey);
+        }
+        int validated = cluster.peer(owner).callInt(ClusterProtocol.OP_VALIDATE_SESSION,
+                sessionKey.getBytes(StandardCharsets.UTF_8));
+        return validated < 0 ? null : validated;
+    }
+}
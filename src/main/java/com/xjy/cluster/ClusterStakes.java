@@ -0,0 +1,221 @@
+package com.xjy.cluster;
+
+import com.xjy.StakeManager;
+import com.xjy.StakeService;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 集群模式的额度服务：每个投注项的额度、Top20和名次索引只保存在其所属节点上
+ * <p>
+ * 单投注项操作整体转发给所属节点；批量写入和多投注项查询按所属节点分组，每个节点只调用一次，
+ * 结果按原始顺序拼回，响应格式与单机模式一致。
+ */
+public class ClusterStakes implements StakeService {
+    private final Cluster cluster;
+    private final StakeManager localStakes;
+    // 转发关闭投注项时携带的管理令牌（所有节点配置相同），未配置时为空
+    private final byte[] adminToken;
+
+    /**
+     * @param adminToken 管理令牌，未配置时为null
+     */
+    public ClusterStakes(Cluster cluster, StakeManager localStakes, String adminToken) {
+        this.cluster = cluster;
+        this.localStakes = localStakes;
+        this.adminToken = adminToken == null ? new byte[0] : adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void saveStake(int betOfferId, int customerId, int stake) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            localStakes.saveStake(betOfferId, customerId, stake);
+            return;
+        }
+        cluster.peer(owner).call(ClusterProtocol.OP_SAVE_STAKES,
+                ByteBuffer.allocate(16).putInt(1).putInt(betOfferId).putInt(customerId).putInt(stake).array());
+    }
+
+    @Override
+    public void saveStakes(int[] betOfferIds, int[] customerIds, int[] stakes, int count) {
+        int[] owners = new int[count];
+        int[] ownerCounts = new int[cluster.size()];
+        for (int i = 0; i < count; i++) {
+            owners[i] = cluster.ownerOf(betOfferIds[i]);
+            ownerCounts[owners[i]]++;
+        }
+        for (int owner = 0; owner < ownerCounts.length; owner++) {
+            int ownerCount = ownerCounts[owner];
+            if (ownerCount == 0) {
+                continue;
+            }
+            if (cluster.isLocal(owner)) {
+                if (ownerCount == count) {
+                    localStakes.saveStakes(betOfferIds, customerIds, stakes, count);
+                    continue;
+                }
+                int[] ownerOfferIds = new int[ownerCount];
+                int[] ownerCustomerIds = new int[ownerCount];
+                int[] ownerStakes = new int[ownerCount];
+                int n = 0;
+                for (int i = 0; i < count; i++) {
+                    if (owners[i] == owner) {
+                        ownerOfferIds[n] = betOfferIds[i];
+                        ownerCustomerIds[n] = customerIds[i];
+                        ownerStakes[n] = stakes[i];
+                        n++;
+                    }
+                }
+                localStakes.saveStakes(ownerOfferIds, ownerCustomerIds, ownerStakes, ownerCount);
+            } else {
+                ByteBuffer payload = ByteBuffer.allocate(4 + ownerCount * 12).putInt(ownerCount);
+                for (int i = 0; i < count; i++) {
+                    if (owners[i] == owner) {
+                        payload.putInt(betOfferIds[i]).putInt(customerIds[i]).putInt(stakes[i]);
+                    }
+                }
+                cluster.peer(owner).call(ClusterProtocol.OP_SAVE_STAKES, payload.array());
+            }
+        }
+    }
+
+    @Override
+    public boolean closeOffer(int betOfferId) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            return localStakes.closeOffer(betOfferId);
+        }
+        return cluster.peer(owner).callInt(ClusterProtocol.OP_CLOSE_OFFER,
+                ByteBuffer.allocate(4 + adminToken.length).putInt(betOfferId).put(adminToken).array()) == 1;
+    }
+
+    @Override
+    public byte[] getTopStakesResponse(int betOfferId) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            return localStakes.getTopStakesResponse(betOfferId);
+        }
+        return cluster.peer(owner).call(ClusterProtocol.OP_TOP_STAKES,
+                ByteBuffer.allocate(4).putInt(betOfferId).array());
+    }
+
+    @Override
+    public byte[] getTopStakesBinary(int betOfferId) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            return localStakes.getTopStakesBinary(betOfferId);
+        }
+        return cluster.peer(owner).call(ClusterProtocol.OP_TOP_STAKES_BINARY,
+                ByteBuffer.allocate(4).putInt(betOfferId).array());
+    }
+
+    @Override
+    public byte[] getTopStakesResponses(int[] betOfferIds, int count) {
+        int[] owners = new int[count];
+        int[] ownerCounts = new int[cluster.size()];
+        for (int i = 0; i < count; i++) {
+            owners[i] = cluster.ownerOf(betOfferIds[i]);
+            ownerCounts[owners[i]]++;
+        }
+        // 每个投注项一行：记录各行在所属节点响应中的位置，最后按请求顺序拼接
+        byte[][] lineSources = new byte[count][];
+        int[] lineStarts = new int[count];
+        int[] lineEnds = new int[count];
+        int length = 0;
+        for (int owner = 0; owner < ownerCounts.length; owner++) {
+            int ownerCount = ownerCounts[owner];
+            if (ownerCount == 0) {
+                continue;
+            }
+            if (ownerCount == count && cluster.isLocal(owner)) {
+                return localStakes.getTopStakesResponses(betOfferIds, count);
+            }
+            int[] ownerOfferIds = new int[ownerCount];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (owners[i] == owner) {
+                    ownerOfferIds[n++] = betOfferIds[i];
+                }
+            }
+            byte[] response;
+            if (cluster.isLocal(owner)) {
+                response = localStakes.getTopStakesResponses(ownerOfferIds, ownerCount);
+            } else {
+                ByteBuffer payload = ByteBuffer.allocate(4 + ownerCount * 4).putInt(ownerCount);
+                for (int betOfferId : ownerOfferIds) {
+                    payload.putInt(betOfferId);
+                }
+                response = cluster.peer(owner).call(ClusterProtocol.OP_TOP_STAKES_MULTI, payload.array());
+            }
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                if (owners[i] != owner) {
+                    continue;
+                }
+                int end = position;
+                while (end < response.length && response[end] != '\n') {
+                    end++;
+                }
+                lineSources[i] = response;
+                lineStarts[i] = position;
+                lineEnds[i] = Math.min(end + 1, response.length);
+                length += lineEnds[i] - position;
+                position = lineEnds[i];
+            }
+        }
+        byte[] result = new byte[length];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            int lineLength = lineEnds[i] - lineStarts[i];
+            System.arraycopy(lineSources[i], lineStarts[i], result, position, lineLength);
+            position += lineLength;
+        }
+        return result;
+    }
+
+    @Override
+    public byte[] getWindowedTopStakesResponse(int betOfferId, int windowSeconds) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            return localStakes.getWindowedTopStakesResponse(betOfferId, windowSeconds);
+        }
+        return cluster.peer(owner).call(ClusterProtocol.OP_WINDOWED_TOP_STAKES,
+                ByteBuffer.allocate(8).putInt(betOfferId).putInt(windowSeconds).array());
+    }
+
+    /**
+     * 各节点使用相同的窗口配置，直接返回本节点的设置
+     */
+    @Override
+    public int getMaxWindowSeconds() {
+        return localStakes.getMaxWindowSeconds();
+    }
+
+    @Override
+    public int getRank(int betOfferId, int customerId) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            return localStakes.getRank(betOfferId, customerId);
+        }
+        return cluster.peer(owner).callInt(ClusterProtocol.OP_RANK,
+                ByteBuffer.allocate(8).putInt(betOfferId).putInt(customerId).array());
+    }
+
+    @Override
+    public byte[] getStakesPageResponse(int betOfferId, int fromRank, int limit) {
+        int owner = cluster.ownerOf(betOfferId);
+        if (cluster.isLocal(owner)) {
+            return localStakes.getStakesPageResponse(betOfferId, fromRank, limit);
+        }
+        return cluster.peer(owner).call(ClusterProtocol.OP_STAKES_PAGE,
+                ByteBuffer.allocate(12).putInt(betOfferId).putInt(fromRank).putInt(limit).array());
+    }
+
+    @Override
+    public String ownerAddress(int betOfferId) {
+        int owner = cluster.ownerOf(betOfferId);
+        return cluster.isLocal(owner) ? null : cluster.node(owner).httpAddress();
+    }
+}
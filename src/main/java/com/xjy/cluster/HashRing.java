@@ -0,0 +1,63 @@
+package com.xjy.cluster;
+
+import java.util.Arrays;
+
+/**
+ * 一致性哈希环：每个节点在环上放置若干虚拟节点，键归属于顺时针方向的第一个虚拟节点
+ * <p>
+ * 环在构造后不再变化，哈希点和所属节点分别存放在两个有序int数组中，查询为一次二分查找，不产生对象。
+ * 增减节点时只有相邻区间的键改变归属（约1/N）。
+ */
+public class HashRing {
+    // 按哈希值升序排列的虚拟节点，owners[i]为points[i]所属的节点ID
+    private final int[] points;
+    private final int[] owners;
+
+    /**
+     * @param nodeCount 节点数
+     * @param virtualNodes 每个节点的虚拟节点数（越多分布越均匀）
+     */
+    public HashRing(int nodeCount, int virtualNodes) {
+        if (nodeCount <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Node count and virtual nodes must be positive");
+        }
+        // 高32位放哈希值、低32位放节点ID，排序后即为环上顺序（哈希冲突时按节点ID，结果与构造顺序无关）
+        long[] entries = new long[nodeCount * virtualNodes];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int point = mix(node * 0x01000193 + (v + 1) * 0x9E3779B9);
+                entries[node * virtualNodes + v] = ((long) point << 32) | node;
+            }
+        }
+        Arrays.sort(entries);
+        points = new int[entries.length];
+        owners = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = (int) (entries[i] >> 32);
+            owners[i] = (int) entries[i];
+        }
+    }
+
+    /**
+     * 键所属的节点ID
+     */
+    public int ownerOf(int key) {
+        int index = Arrays.binarySearch(points, mix(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * murmur3的32位终结函数：连续的ID也能均匀散布到整个环上
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
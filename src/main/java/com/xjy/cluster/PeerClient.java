@@ -0,0 +1,157 @@
+package com.xjy.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 到单个节点的内部协议客户端：池化的阻塞长连接，每次调用独占一条连接
+ * <p>
+ * 空闲连接可能已被对端关闭，调用失败时换一条新连接重试一次（所有操作均可安全重试），仍失败则抛出PeerUnavailableException。
+ */
+public class PeerClient implements Closeable {
+    private final ClusterNode node;
+    private final int timeoutMillis;
+    private final ConcurrentLinkedQueue<Connection> idleConnections = new ConcurrentLinkedQueue<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile boolean closed;
+
+    public PeerClient(ClusterNode node, int timeoutMillis) {
+        this.node = node;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 调用一次远程操作
+     * @param op 操作码
+     * @param payload 参数
+     * @return 结果
+     * @throws PeerUnavailableException 节点无法连接或超时
+     * @throws UnsupportedOperationException 节点不支持该操作（如存储不支持关闭投注项）
+     * @throws IllegalStateException 节点处理请求出错
+     */
+    public byte[] call(byte op, byte[] payload) {
+        calls.increment();
+        Connection connection = idleConnections.poll();
+        byte[] frame;
+        try {
+            if (connection == null) {
+                connection = new Connection();
+                frame = connection.call(op, payload);
+            } else {
+                try {
+                    frame = connection.call(op, payload);
+                } catch (IOException e) {
+                    connection.close();
+                    connection = new Connection();
+                    frame = connection.call(op, payload);
+                }
+            }
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            failures.increment();
+            throw new PeerUnavailableException(node, e);
+        }
+        release(connection);
+        if (frame[0] == ClusterProtocol.STATUS_UNSUPPORTED) {
+            throw new UnsupportedOperationException(new String(frame, 1, frame.length - 1, StandardCharsets.UTF_8));
+        }
+        if (frame[0] != ClusterProtocol.STATUS_OK) {
+            throw new IllegalStateException("Cluster node " + node.getId() + " failed: "
+                    + new String(frame, 1, frame.length - 1, StandardCharsets.UTF_8));
+        }
+        return Arrays.copyOfRange(frame, 1, frame.length);
+    }
+
+    /**
+     * 调用一次返回int的远程操作
+     */
+    public int callInt(byte op, byte[] payload) {
+        byte[] result = call(op, payload);
+        if (result.length != 4) {
+            throw new IllegalStateException("Cluster node " + node.getId() + " returned " + result.length + " bytes, expected 4");
+        }
+        return (result[0] & 0xFF) << 24 | (result[1] & 0xFF) << 16 | (result[2] & 0xFF) << 8 | (result[3] & 0xFF);
+    }
+
+    public ClusterNode getNode() {
+        return node;
+    }
+
+    /**
+     * 累计调用次数
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * 累计失败（节点不可用）次数
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    private void release(Connection connection) {
+        idleConnections.offer(connection);
+        // 与close并发时，归还的连接可能未被关闭，这里补充关闭
+        if (closed && idleConnections.remove(connection)) {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        Connection() throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(node.getHost(), node.getClusterPort()), timeoutMillis);
+                socket.setSoTimeout(timeoutMillis);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        byte[] call(byte op, byte[] payload) throws IOException {
+            ClusterProtocol.writeFrame(out, op, payload);
+            out.flush();
+            return ClusterProtocol.readFrame(in);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响后续调用
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.xjy.cluster;
+
+/**
+ * 转发目标节点无法连接或未在超时时间内响应
+ */
+public class PeerUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public PeerUnavailableException(ClusterNode node, Throwable cause) {
+        super("Cluster node " + node.getId() + " (" + node.clusterAddress() + ") is unavailable: " + cause.getMessage(), cause);
+    }
+}
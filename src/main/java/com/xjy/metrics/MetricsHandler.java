@@ -0,0 +1,35 @@
+package com.xjy.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.xjy.model.ApiResponse;
+import com.xjy.util.HttpUtils;
+
+import java.io.IOException;
+
+/**
+ * JDK引擎的 GET /metrics 处理器（与RequestDispatcher并列注册），抓取请求本身不计入路由统计
+ */
+public class MetricsHandler implements HttpHandler {
+    public static final String PATH = "/metrics";
+
+    private final ServiceMetrics metrics;
+
+    public MetricsHandler(ServiceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod()) || !PATH.equals(path)) {
+                HttpUtils.sendResponse(exchange, ApiResponse.error(404, "Resource not found: " + path));
+                return;
+            }
+            HttpUtils.sendResponse(exchange, ApiResponse.ok(metrics.scrape()));
+        } catch (Exception e) {
+            HttpUtils.sendError(exchange, 500, "Internal server error: " + e.getMessage());
+        }
+    }
+}
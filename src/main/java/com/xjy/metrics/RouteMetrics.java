@@ -0,0 +1,69 @@
+package com.xjy.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个路由的统计：请求数、各状态码计数、处理耗时直方图
+ */
+public class RouteMetrics {
+    private static final int MAX_STATUS = 600;
+
+    private final String name;
+    private final LongAdder requests = new LongAdder();
+    // 状态码 → 计数，首次出现时创建
+    private final AtomicReferenceArray<LongAdder> statusCounts = new AtomicReferenceArray<>(MAX_STATUS);
+    private final ConcurrentHistogram latency = new ConcurrentHistogram();
+
+    RouteMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 记录一次请求
+     * @param status 响应状态码
+     * @param elapsedNanos 处理耗时（纳秒）
+     */
+    public void record(int status, long elapsedNanos) {
+        requests.increment();
+        statusCounter(status).increment();
+        latency.record(elapsedNanos);
+    }
+
+    private LongAdder statusCounter(int status) {
+        int index = status >= 0 && status < MAX_STATUS ? status : 0;
+        LongAdder counter = statusCounts.get(index);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = statusCounts.compareAndExchange(index, null, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    String name() {
+        return name;
+    }
+
+    long requests() {
+        return requests.sum();
+    }
+
+    /**
+     * 状态码计数，未出现过返回-1
+     */
+    long statusCount(int status) {
+        LongAdder counter = statusCounts.get(status);
+        return counter == null ? -1 : counter.sum();
+    }
+
+    static int maxStatus() {
+        return MAX_STATUS;
+    }
+
+    ConcurrentHistogram latency() {
+        return latency;
+    }
+}
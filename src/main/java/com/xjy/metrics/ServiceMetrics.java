@@ -0,0 +1,258 @@
+package com.xjy.metrics;
+
+import com.xjy.Route;
+import com.xjy.SessionManager;
+import com.xjy.StakeManager;
+import com.xjy.admission.AdmissionController;
+import com.xjy.binary.BinaryServer;
+import com.xjy.replica.ReplicaClient;
+import com.xjy.replica.ReplicationServer;
+import com.xjy.store.BudgetedStakeStore;
+import com.xjy.stream.HighStakesStreams;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 服务指标：按路由统计请求数、状态码、处理耗时，并汇总StakeManager、SessionManager的运行指标
+ * <p>
+ * 记录路径只做LongAdder累加，不加锁；导出为Prometheus文本格式（/metrics）。
+ */
+public class ServiceMetrics {
+    /**
+     * 未匹配到路由（404、路径参数非法等）的请求统计名
+     */
+    public static final String OTHER_ROUTE = "other";
+
+    private static final Route[] ROUTES = Route.values();
+    private static final String[] BUCKET_LABELS = new String[ConcurrentHistogram.BUCKET_BOUNDS_SECONDS.length];
+    // 二进制协议操作名，下标为操作码（0为未知操作码）
+    private static final String[] BINARY_OPS = {"unknown", "get_session", "stake", "highstakes"};
+
+    static {
+        for (int i = 0; i < BUCKET_LABELS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(ConcurrentHistogram.BUCKET_BOUNDS_SECONDS[i]).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private final StakeManager stakeManager;
+    private final SessionManager sessionManager;
+    private final HighStakesStreams streams;
+    // 按Route序号存放，最后一个为未匹配路由
+    private final RouteMetrics[] routeMetrics = new RouteMetrics[ROUTES.length + 1];
+    // 准入控制（未启用时为null）
+    private volatile AdmissionController admission;
+    // 主从复制（未启用时为null）
+    private volatile ReplicationServer replicationServer;
+    private volatile ReplicaClient replicaClient;
+    // 带内存预算的存储（未启用时为null）
+    private volatile BudgetedStakeStore budgetedStore;
+    // 二进制协议服务端（未启用时为null）
+    private volatile BinaryServer binaryServer;
+
+    public ServiceMetrics(StakeManager stakeManager, SessionManager sessionManager, HighStakesStreams streams) {
+        this.stakeManager = stakeManager;
+        this.sessionManager = sessionManager;
+        this.streams = streams;
+        for (Route route : ROUTES) {
+            routeMetrics[route.ordinal()] = new RouteMetrics(route.name().toLowerCase());
+        }
+        routeMetrics[ROUTES.length] = new RouteMetrics(OTHER_ROUTE);
+    }
+
+    /**
+     * 导出准入控制的各路由并发上限、并发数和拒绝数
+     */
+    public void setAdmission(AdmissionController admission) {
+        this.admission = admission;
+    }
+
+    /**
+     * 主节点：导出复制序号和已连接副本数
+     */
+    public void setReplicationServer(ReplicationServer replicationServer) {
+        this.replicationServer = replicationServer;
+    }
+
+    /**
+     * 副本：导出复制进度和延迟
+     */
+    public void setReplicaClient(ReplicaClient replicaClient) {
+        this.replicaClient = replicaClient;
+    }
+
+    /**
+     * 导出内存预算、常驻投注项数和换出/加载次数
+     */
+    public void setBudgetedStore(BudgetedStakeStore budgetedStore) {
+        this.budgetedStore = budgetedStore;
+    }
+
+    /**
+     * 导出二进制协议的连接数和各操作的请求数
+     */
+    public void setBinaryServer(BinaryServer binaryServer) {
+        this.binaryServer = binaryServer;
+    }
+
+    /**
+     * 记录一次请求
+     * @param route 匹配到的路由，未匹配时为null
+     * @param status 响应状态码
+     * @param elapsedNanos 处理耗时（纳秒）
+     */
+    public void record(Route route, int status, long elapsedNanos) {
+        routeMetrics[route == null ? ROUTES.length : route.ordinal()].record(status, elapsedNanos);
+    }
+
+    /**
+     * 导出Prometheus文本格式的指标
+     */
+    public byte[] scrape() {
+        StringBuilder sb = new StringBuilder(8192);
+
+        header(sb, "betting_http_requests_total", "counter", "Requests handled, by route.");
+        for (RouteMetrics metrics : routeMetrics) {
+            sample(sb, "betting_http_requests_total", metrics.name(), null, metrics.requests());
+        }
+
+        header(sb, "betting_http_responses_total", "counter", "Responses sent, by route and status code.");
+        for (RouteMetrics metrics : routeMetrics) {
+            for (int status = 0; status < RouteMetrics.maxStatus(); status++) {
+                long count = metrics.statusCount(status);
+                if (count >= 0) {
+                    sample(sb, "betting_http_responses_total", metrics.name(), "status=\"" + status + "\"", count);
+                }
+            }
+        }
+
+        header(sb, "betting_http_request_duration_seconds", "histogram",
+                "Time spent handling a request on the server, by route.");
+        for (RouteMetrics metrics : routeMetrics) {
+            long[] buckets = metrics.latency().bucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < BUCKET_LABELS.length; i++) {
+                cumulative += buckets[i];
+                sample(sb, "betting_http_request_duration_seconds_bucket", metrics.name(),
+                        "le=\"" + BUCKET_LABELS[i] + "\"", cumulative);
+            }
+            cumulative += buckets[BUCKET_LABELS.length];
+            sample(sb, "betting_http_request_duration_seconds_bucket", metrics.name(), "le=\"+Inf\"", cumulative);
+            sb.append("betting_http_request_duration_seconds_sum{route=\"").append(metrics.name()).append("\"} ")
+                    .append(metrics.latency().sumNanos() / 1e9).append('\n');
+            sample(sb, "betting_http_request_duration_seconds_count", metrics.name(), null, cumulative);
+        }
+
+        AdmissionController admissionController = admission;
+        if (admissionController != null) {
+            header(sb, "betting_admission_limit", "gauge", "Adaptive concurrency limit, by route.");
+            for (Route route : ROUTES) {
+                sample(sb, "betting_admission_limit", routeMetrics[route.ordinal()].name(), null,
+                        admissionController.getLimit(route));
+            }
+            header(sb, "betting_admission_in_flight", "gauge", "Admitted requests being handled, by route.");
+            for (Route route : ROUTES) {
+                sample(sb, "betting_admission_in_flight", routeMetrics[route.ordinal()].name(), null,
+                        admissionController.getInFlight(route));
+            }
+            header(sb, "betting_admission_rejected_total", "counter", "Requests shed by admission control, by route.");
+            for (Route route : ROUTES) {
+                sample(sb, "betting_admission_rejected_total", routeMetrics[route.ordinal()].name(), null,
+                        admissionController.getRejected(route));
+            }
+        }
+
+        single(sb, "betting_offers", "gauge", "Bet offers with at least one stake.", stakeManager.getOfferCount());
+        single(sb, "betting_stakes", "gauge", "Stored (bet offer, customer) stakes.", stakeManager.getStakeCount());
+        single(sb, "betting_top_stakes_updates_total", "counter", "Changes published to the top-20 boards.",
+                stakeManager.getTopStakesUpdateCount());
+        single(sb, "betting_highstakes_cache_hits_total", "counter", "High-stakes responses served from cache.",
+                stakeManager.getResponseCacheHits());
+        single(sb, "betting_highstakes_cache_misses_total", "counter", "High-stakes responses encoded on demand.",
+                stakeManager.getResponseCacheMisses());
+        single(sb, "betting_rank_indexes", "gauge", "Bet offers with an order-statistics rank index.",
+                stakeManager.getRankIndexCount());
+        single(sb, "betting_store_heap_bytes", "gauge", "Estimated heap used by stake tables.",
+                stakeManager.getStakeStore().estimatedHeapBytes());
+        BudgetedStakeStore budgeted = budgetedStore;
+        if (budgeted != null) {
+            single(sb, "betting_store_budget_bytes", "gauge", "Heap budget for stake tables.", budgeted.getBudgetBytes());
+            single(sb, "betting_store_resident_offers", "gauge", "Bet offers whose stakes are held in memory.",
+                    budgeted.getResidentOfferCount());
+            single(sb, "betting_store_evictions_total", "counter", "Bet offers spilled to disk to stay within budget.",
+                    budgeted.getEvictionCount());
+            single(sb, "betting_store_reloads_total", "counter", "Spilled bet offers loaded back on access.",
+                    budgeted.getReloadCount());
+        }
+        single(sb, "betting_window_offers", "gauge", "Bet offers with a time-windowed top-20.",
+                stakeManager.getWindowCount());
+        single(sb, "betting_sessions_live", "gauge", "Sessions currently held in memory.",
+                sessionManager.getLiveSessionCount());
+        single(sb, "betting_sessions_created_total", "counter", "Sessions created.",
+                sessionManager.getCreatedSessionCount());
+        single(sb, "betting_sessions_expired_total", "counter", "Sessions expired or replaced after expiry.",
+                sessionManager.getExpiredSessionCount());
+        single(sb, "betting_highstakes_stream_subscribers", "gauge", "Open high-stakes stream subscriptions.",
+                streams.getSubscriberCount());
+        single(sb, "betting_highstakes_stream_events_total", "counter", "Top-20 changes pushed to stream subscribers.",
+                streams.getEventsPublished());
+        single(sb, "betting_highstakes_stream_coalesced_total", "counter",
+                "Stream frames replaced by a newer frame before a slow subscriber received them.",
+                streams.getFramesCoalesced());
+
+        ReplicationServer primary = replicationServer;
+        if (primary != null) {
+            single(sb, "betting_replication_sequence", "counter", "Stake raises appended to the replication log.",
+                    primary.getSequence());
+            single(sb, "betting_replication_replicas", "gauge", "Replicas connected to this primary.",
+                    primary.getReplicaCount());
+        }
+        ReplicaClient replica = replicaClient;
+        if (replica != null) {
+            single(sb, "betting_replica_connected", "gauge", "Whether this replica is connected to its primary.",
+                    replica.isConnected() ? 1 : 0);
+            single(sb, "betting_replica_applied_sequence", "counter", "Replication sequence applied by this replica.",
+                    replica.getAppliedSequence());
+            single(sb, "betting_replica_lag_records", "gauge",
+                    "Stake raises on the primary not yet applied here (-1 until the initial sync completes).",
+                    replica.getLagRecords());
+            single(sb, "betting_replica_diverged_offers_total", "counter",
+                    "Bet offers closed or rebuilt by a full sync because they diverged from the primary.",
+                    replica.getDivergedOfferCount());
+            long sinceContact = replica.getMillisSinceLastContact();
+            header(sb, "betting_replica_last_contact_seconds", "gauge",
+                    "Time since the last frame or heartbeat from the primary (NaN before the first contact).");
+            sb.append("betting_replica_last_contact_seconds ").append(sinceContact < 0 ? "NaN" : sinceContact / 1e3).append('\n');
+        }
+        BinaryServer binary = binaryServer;
+        if (binary != null) {
+            single(sb, "betting_binary_connections", "gauge", "Open binary protocol connections.",
+                    binary.getConnectionCount());
+            header(sb, "betting_binary_requests_total", "counter", "Binary protocol requests, by operation.");
+            for (int op = 0; op < BINARY_OPS.length; op++) {
+                sb.append("betting_binary_requests_total{op=\"").append(BINARY_OPS[op]).append("\"} ")
+                        .append(binary.getRequestCount(op)).append('\n');
+            }
+        }
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String route, String extraLabel, long value) {
+        sb.append(name).append("{route=\"").append(route).append('"');
+        if (extraLabel != null) {
+            sb.append(',').append(extraLabel);
+        }
+        sb.append("} ").append(value).append('\n');
+    }
+
+    private static void single(StringBuilder sb, String name, String type, String help, long value) {
+        header(sb, name, type, help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+}
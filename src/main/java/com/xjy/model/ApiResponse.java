@@ -0,0 +1,38 @@
+package com.xjy.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 接口响应：状态码 + UTF-8编码的响应体（无响应体时为null）
+ */
+public class ApiResponse {
+    public static final ApiResponse NO_CONTENT = new ApiResponse(204, null);
+
+    private final int statusCode;
+    private final byte[] body;
+
+    public ApiResponse(int statusCode, byte[] body) {
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    public static ApiResponse ok(byte[] body) {
+        return new ApiResponse(200, body);
+    }
+
+    public static ApiResponse ok(String body) {
+        return new ApiResponse(200, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ApiResponse error(int statusCode, String message) {
+        return new ApiResponse(statusCode, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
@@ -1,17 +1,23 @@
 package com.xjy.model;
 
 /**
- * Session模型，存储SessionKey和过期时间
+ * Session模型，存储所属客户ID、SessionKey和过期时间
  */
 public class Session {
+    private final int customerId;
     private final String sessionKey;
     private final long expireTime; // 毫秒级时间戳
 
-    public Session(String sessionKey, long expireTime) {
+    public Session(int customerId, String sessionKey, long expireTime) {
+        this.customerId = customerId;
         this.sessionKey = sessionKey;
         this.expireTime = expireTime;
     }
 
+    public int getCustomerId() {
+        return customerId;
+    }
+
     public String getSessionKey() {
         return sessionKey;
     }
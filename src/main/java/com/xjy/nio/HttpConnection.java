@@ -0,0 +1,494 @@
+package com.xjy.nio;
+
+import com.xjy.model.ApiResponse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * 单个HTTP/1.1连接的状态：请求解析、流水线处理和响应写出
+ * <p>
+ * 只在所属事件循环线程中访问。读写缓冲区从池中借用，连接空闲（无未处理数据/未写出数据）时归还，
+ * 因此大量空闲长连接不占用缓冲区。
+ */
+final class HttpConnection {
+    private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_HEADER_SIZE = 512;
+    private static final byte[] EMPTY_BODY = new byte[0];
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final BufferPool bufferPool;
+    private final NioDispatcher dispatcher;
+
+    private ByteBuffer readBuffer;
+    private ByteBuffer writeBuffer;
+    // 写缓冲区放不下的数据（按顺序写出）
+    private final ArrayDeque<ByteBuffer> overflow = new ArrayDeque<>();
+    private final byte[] headerScratch = new byte[MAX_HEADER_SIZE];
+
+    // 超过读缓冲区容量的请求体：逐步累积后再分发
+    private byte[] largeBody;
+    private int largeBodyFilled;
+    private int largeMethod;
+    private ByteBuffer largeTarget;
+    private boolean largeKeepAlive;
+
+    // 当前请求是否已回复100 Continue（请求体未到齐时可能重复解析请求头）
+    private boolean continueSent;
+    private boolean closeAfterFlush;
+    private boolean inputClosed;
+    private boolean closed;
+    private long lastActive;
+
+    HttpConnection(SocketChannel channel, SelectionKey key, BufferPool bufferPool, NioDispatcher dispatcher) {
+        this.channel = channel;
+        this.key = key;
+        this.bufferPool = bufferPool;
+        this.dispatcher = dispatcher;
+        this.lastActive = System.currentTimeMillis();
+    }
+
+    long getLastActive() {
+        return lastActive;
+    }
+
+    boolean isIdle() {
+        return readBuffer == null && writeBuffer == null && overflow.isEmpty() && largeBody == null;
+    }
+
+    void onReadable() throws IOException {
+        if (readBuffer == null) {
+            readBuffer = bufferPool.acquire();
+        }
+        int n = channel.read(readBuffer);
+        if (n < 0) {
+            // 客户端关闭输出：处理完已收到的请求后关闭
+            inputClosed = true;
+        } else {
+            lastActive = System.currentTimeMillis();
+        }
+        processInput();
+    }
+
+    void onWritable() throws IOException {
+        flush();
+        if (overflow.isEmpty()) {
+            // 输出排空后继续处理流水线中已缓存的请求
+            processInput();
+        } else {
+            updateInterest();
+        }
+    }
+
+    /**
+     * 依次解析并处理读缓冲区中所有完整的请求（流水线），最后统一写出
+     */
+    private void processInput() throws IOException {
+        if (readBuffer != null) {
+            readBuffer.flip();
+            try {
+                while (!closeAfterFlush && overflow.isEmpty() && readBuffer.hasRemaining()) {
+                    if (!processNext()) {
+                        break;
+                    }
+                }
+            } finally {
+                readBuffer.compact();
+            }
+            if (inputClosed && overflow.isEmpty()) {
+                closeAfterFlush = true;
+            }
+            if (readBuffer.position() == 0) {
+                bufferPool.release(readBuffer);
+                readBuffer = null;
+            }
+        } else if (inputClosed) {
+            closeAfterFlush = true;
+        }
+        flush();
+        if (closeAfterFlush && overflow.isEmpty() && writeBuffer == null) {
+            close();
+            return;
+        }
+        updateInterest();
+    }
+
+    /**
+     * 处理缓冲区中的下一个请求
+     * @return 是否处理了完整请求（false表示需要等待更多数据）
+     */
+    private boolean processNext() throws IOException {
+        if (largeBody != null) {
+            return continueLargeBody();
+        }
+        int start = readBuffer.position();
+        int limit = readBuffer.limit();
+        int headerEnd = findHeaderEnd(start, limit);
+        if (headerEnd < 0) {
+            if (limit - start >= readBuffer.capacity()) {
+                respondAndClose(431, "Request header too large");
+            }
+            return false;
+        }
+
+        // 请求行：METHOD SP target SP version CRLF
+        int lineEnd = indexOf((byte) '\r', start, headerEnd);
+        int sp1 = indexOf((byte) ' ', start, lineEnd);
+        int sp2 = sp1 < 0 ? -1 : indexOf((byte) ' ', sp1 + 1, lineEnd);
+        if (sp1 <= start || sp2 <= sp1 + 1) {
+            respondAndClose(400, "Malformed request line");
+            return false;
+        }
+        int method = parseMethod(start, sp1);
+        boolean http10 = equalsAscii(sp2 + 1, lineEnd, "HTTP/1.0");
+
+        // 请求头：只关心Content-Length、Connection、Transfer-Encoding
+        long contentLength = 0;
+        boolean keepAlive = !http10;
+        boolean expectContinue = false;
+        int line = lineEnd + 2;
+        while (line < headerEnd - 2) {
+            int end = indexOf((byte) '\r', line, headerEnd);
+            int colon = indexOf((byte) ':', line, end);
+            if (colon > line) {
+                int valueStart = skipSpaces(colon + 1, end);
+                if (equalsIgnoreCase(line, colon, "content-length")) {
+                    contentLength = parseLength(valueStart, end);
+                    if (contentLength < 0) {
+                        respondAndClose(400, "Invalid Content-Length");
+                        return false;
+                    }
+                } else if (equalsIgnoreCase(line, colon, "connection")) {
+                    if (equalsIgnoreCase(valueStart, trimEnd(valueStart, end), "close")) {
+                        keepAlive = false;
+                    } else if (equalsIgnoreCase(valueStart, trimEnd(valueStart, end), "keep-alive")) {
+                        keepAlive = true;
+                    }
+                } else if (equalsIgnoreCase(line, colon, "expect")) {
+                    expectContinue = equalsIgnoreCase(valueStart, trimEnd(valueStart, end), "100-continue");
+                } else if (equalsIgnoreCase(line, colon, "transfer-encoding")) {
+                    respondAndClose(501, "Transfer-Encoding not supported");
+                    return false;
+                }
+            }
+            line = end + 2;
+        }
+        if (contentLength > MAX_BODY_SIZE) {
+            respondAndClose(413, "Request body too large");
+            return false;
+        }
+
+        int bodyLength = (int) contentLength;
+        int available = limit - headerEnd;
+        if (available >= bodyLength) {
+            byte[] body = EMPTY_BODY;
+            if (bodyLength > 0) {
+                body = new byte[bodyLength];
+                readBuffer.get(headerEnd, body, 0, bodyLength);
+            }
+            readBuffer.position(headerEnd + bodyLength);
+            continueSent = false;
+            handle(method, readBuffer, sp1 + 1, sp2, body, keepAlive);
+            return true;
+        }
+        if (expectContinue && !continueSent) {
+            // 客户端等待100 Continue后才发送请求体
+            continueSent = true;
+            write(CONTINUE, 0, CONTINUE.length, false);
+        }
+        if (headerEnd - start + bodyLength <= readBuffer.capacity()) {
+            // 整个请求能放进读缓冲区，等待剩余数据
+            return false;
+        }
+
+        // 请求体超过缓冲区：复制请求目标，转入累积模式
+        largeBody = new byte[bodyLength];
+        largeBodyFilled = available;
+        readBuffer.get(headerEnd, largeBody, 0, available);
+        largeMethod = method;
+        largeTarget = ByteBuffer.allocate(sp2 - sp1 - 1);
+        for (int i = sp1 + 1; i < sp2; i++) {
+            largeTarget.put(readBuffer.get(i));
+        }
+        largeKeepAlive = keepAlive;
+        continueSent = false;
+        readBuffer.position(limit);
+        return false;
+    }
+
+    private boolean continueLargeBody() throws IOException {
+        int n = Math.min(readBuffer.remaining(), largeBody.length - largeBodyFilled);
+        readBuffer.get(largeBody, largeBodyFilled, n);
+        largeBodyFilled += n;
+        if (largeBodyFilled < largeBody.length) {
+            return false;
+        }
+        byte[] body = largeBody;
+        ByteBuffer target = largeTarget;
+        largeBody = null;
+        largeTarget = null;
+        handle(largeMethod, target, 0, target.capacity(), body, largeKeepAlive);
+        return true;
+    }
+
+    private void handle(int method, ByteBuffer buffer, int targetStart, int targetEnd,
+                        byte[] body, boolean keepAlive) throws IOException {
+        ApiResponse response = dispatcher.dispatch(method, buffer, targetStart, targetEnd, body);
+        if (!keepAlive) {
+            closeAfterFlush = true;
+        }
+        writeResponse(response.getStatusCode(), response.getBody(), !keepAlive);
+    }
+
+    private void respondAndClose(int statusCode, String message) throws IOException {
+        closeAfterFlush = true;
+        writeResponse(statusCode, message.getBytes(StandardCharsets.UTF_8), true);
+    }
+
+    // ---------------------------------------------------------------- 响应写出
+
+    private void writeResponse(int statusCode, byte[] body, boolean close) throws IOException {
+        int n = 0;
+        n = putAscii(n, "HTTP/1.1 ");
+        n = putInt(n, statusCode);
+        headerScratch[n++] = ' ';
+        n = putAscii(n, reasonPhrase(statusCode));
+        n = putAscii(n, "\r\n");
+        if (body != null) {
+            n = putAscii(n, "Content-Type: text/plain; charset=utf-8\r\nContent-Length: ");
+            n = putInt(n, body.length);
+            n = putAscii(n, "\r\n");
+        }
+        if (close) {
+            n = putAscii(n, "Connection: close\r\n");
+        }
+        n = putAscii(n, "\r\n");
+        write(headerScratch, 0, n, true);
+        if (body != null && body.length > 0) {
+            write(body, 0, body.length, false);
+        }
+    }
+
+    /**
+     * 写入输出：优先放入写缓冲区，放不下时先写出到通道，仍放不下的部分排队
+     * @param copy 排队时是否需要复制（源数组会被复用时为true）
+     */
+    private void write(byte[] bytes, int offset, int length, boolean copy) throws IOException {
+        if (overflow.isEmpty()) {
+            if (writeBuffer == null) {
+                writeBuffer = bufferPool.acquire();
+            }
+            if (writeBuffer.remaining() < length) {
+                flush();
+                if (writeBuffer == null) {
+                    writeBuffer = bufferPool.acquire();
+                }
+            }
+            int fit = Math.min(writeBuffer.remaining(), length);
+            writeBuffer.put(bytes, offset, fit);
+            if (fit == length) {
+                return;
+            }
+            offset += fit;
+            length -= fit;
+        }
+        enqueue(bytes, offset, length, copy);
+    }
+
+    private void enqueue(byte[] bytes, int offset, int length, boolean copy) {
+        overflow.add(copy
+                ? ByteBuffer.wrap(Arrays.copyOfRange(bytes, offset, offset + length))
+                : ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * 将写缓冲区和排队数据写出到通道，通道写满时保留剩余数据
+     */
+    private void flush() throws IOException {
+        if (writeBuffer != null) {
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+            if (writeBuffer.hasRemaining()) {
+                writeBuffer.compact();
+                return;
+            }
+            bufferPool.release(writeBuffer);
+            writeBuffer = null;
+        }
+        while (!overflow.isEmpty()) {
+            ByteBuffer head = overflow.peek();
+            channel.write(head);
+            if (head.hasRemaining()) {
+                return;
+            }
+            overflow.poll();
+        }
+    }
+
+    private void updateInterest() {
+        if (!key.isValid()) {
+            return;
+        }
+        boolean pendingOutput = writeBuffer != null || !overflow.isEmpty();
+        // 输出积压时暂停读取（反压），避免慢客户端的流水线请求无限堆积
+        int ops = pendingOutput ? SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+        if (key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException ignore) {
+        }
+        bufferPool.release(readBuffer);
+        bufferPool.release(writeBuffer);
+        readBuffer = null;
+        writeBuffer = null;
+        overflow.clear();
+    }
+
+    // ---------------------------------------------------------------- 字节解析工具
+
+    private int findHeaderEnd(int start, int limit) {
+        for (int i = start; i + 3 < limit; i++) {
+            if (readBuffer.get(i) == '\r' && readBuffer.get(i + 1) == '\n'
+                    && readBuffer.get(i + 2) == '\r' && readBuffer.get(i + 3) == '\n') {
+                return i + 4;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (readBuffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int parseMethod(int start, int end) {
+        if (equalsIgnoreCase(start, end, "GET")) {
+            return NioDispatcher.METHOD_GET;
+        }
+        if (equalsIgnoreCase(start, end, "POST")) {
+            return NioDispatcher.METHOD_POST;
+        }
+        return NioDispatcher.METHOD_OTHER;
+    }
+
+    private long parseLength(int start, int end) {
+        end = trimEnd(start, end);
+        if (start == end || end - start > 10) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = readBuffer.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private int skipSpaces(int start, int end) {
+        while (start < end && readBuffer.get(start) == ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int start, int end) {
+        while (end > start && readBuffer.get(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean equalsAscii(int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (readBuffer.get(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, String expectedLowerCase) {
+        if (end - start != expectedLowerCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < expectedLowerCase.length(); i++) {
+            int b = readBuffer.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != Character.toLowerCase(expectedLowerCase.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int putAscii(int n, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            headerScratch[n++] = (byte) s.charAt(i);
+        }
+        return n;
+    }
+
+    private int putInt(int n, int value) {
+        if (value == 0) {
+            headerScratch[n++] = '0';
+            return n;
+        }
+        int digits = 0;
+        for (int v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = n + digits - 1; i >= n; i--) {
+            headerScratch[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return n + digits;
+    }
+
+    private static String reasonPhrase(int statusCode) {
+        switch (statusCode) {
+            case 200: return "OK";
+            case 204: return "No Content";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 413: return "Payload Too Large";
+            case 421: return "Misdirected Request";
+            case 429: return "Too Many Requests";
+            case 431: return "Request Header Fields Too Large";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 503: return "Service Unavailable";
+            default: return "Unknown";
+        }
+    }
+}
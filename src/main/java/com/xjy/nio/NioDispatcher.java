@@ -0,0 +1,148 @@
+package com.xjy.nio;
+
+import com.xjy.ApiHandler;
+import com.xjy.Route;
+import com.xjy.metrics.MetricsHandler;
+import com.xjy.metrics.ServiceMetrics;
+import com.xjy.model.ApiResponse;
+import com.xjy.replica.ReadOnlyReplicaException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * NIO前端的路由：在请求行字节上按Route.match的同一套规则匹配路由（不构造路径字符串），
+ * 解析出(路由, ID, 查询字符串, 请求体)后交给ApiHandler，状态码和错误信息与RequestDispatcher一致；
+ * 同时处理 GET /metrics 并记录各路由的请求指标。推送流（/{id}/highstakes/stream）只由jdk引擎支持，这里返回501
+ */
+public class NioDispatcher {
+    static final int METHOD_OTHER = Route.METHOD_OTHER;
+    static final int METHOD_GET = Route.METHOD_GET;
+    static final int METHOD_POST = Route.METHOD_POST;
+
+    private static final byte[] METRICS = MetricsHandler.PATH.getBytes(StandardCharsets.US_ASCII);
+
+    private final ApiHandler apiHandler;
+    private final ServiceMetrics metrics;
+
+    public NioDispatcher(ApiHandler apiHandler, ServiceMetrics metrics) {
+        this.apiHandler = apiHandler;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 分发一个请求
+     * @param method 请求方法（METHOD_*）
+     * @param buffer 请求行所在缓冲区
+     * @param targetStart 请求目标（path?query）起始位置
+     * @param targetEnd 请求目标结束位置（不含）
+     * @param body 请求体（无请求体时为空数组）
+     */
+    public ApiResponse dispatch(int method, ByteBuffer buffer, int targetStart, int targetEnd, byte[] body) {
+        long startNanos = System.nanoTime();
+        int pathEnd = targetStart;
+        while (pathEnd < targetEnd && buffer.get(pathEnd) != '?') {
+            pathEnd++;
+        }
+        // 指标抓取不计入路由统计
+        if (method == METHOD_GET && matches(buffer, targetStart, pathEnd, METRICS)) {
+            return ApiResponse.ok(metrics.scrape());
+        }
+
+        Route route = null;
+        ApiResponse response;
+        try {
+            long match = Route.match(method, new AsciiChars(buffer), targetStart, pathEnd);
+            if (match == Route.NO_MATCH) {
+                response = apiHandler.notFound(ascii(buffer, targetStart, pathEnd));
+            } else {
+                route = Route.routeOf(match);
+                String query = pathEnd < targetEnd ? ascii(buffer, pathEnd + 1, targetEnd) : null;
+                response = invoke(route, Route.idOf(match), query, body);
+            }
+        } catch (NumberFormatException e) {
+            response = apiHandler.invalidNumber(e);
+        } catch (ReadOnlyReplicaException e) {
+            response = apiHandler.readOnlyReplica(e);
+        } catch (Exception e) {
+            response = ApiResponse.error(500, "Internal server error: " + e.getMessage());
+        }
+        metrics.record(route, response.getStatusCode(), System.nanoTime() - startNanos);
+        return response;
+    }
+
+    private ApiResponse invoke(Route route, int id, String query, byte[] body) {
+        switch (route) {
+            case SESSION:
+                return apiHandler.getSession(id);
+            case STAKE:
+                return apiHandler.postStake(id, query, body);
+            case BATCH_STAKES:
+                return apiHandler.postStakeBatch(query, body);
+            case HIGH_STAKES_MULTI:
+                return apiHandler.getHighStakesMulti(query);
+            case RANK:
+                return apiHandler.getRank(id, query);
+            case STAKES_PAGE:
+                return apiHandler.getStakesPage(id, query);
+            case CLOSE_OFFER:
+                return apiHandler.closeOffer(id, query);
+            case HIGH_STAKES_STREAM:
+                return ApiResponse.error(501, "Streaming is not supported by the nio engine");
+            case HIGH_STAKES:
+            default:
+                return apiHandler.getHighStakes(id, query);
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String ascii(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 缓冲区字节的字符视图（按ISO-8859-1逐字节映射，下标为缓冲区绝对位置），供Route.match直接读取请求行
+     */
+    private static final class AsciiChars implements CharSequence {
+        private final ByteBuffer buffer;
+
+        AsciiChars(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int length() {
+            return buffer.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (buffer.get(index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return ascii(buffer, start, end);
+        }
+
+        @Override
+        public String toString() {
+            return ascii(buffer, 0, buffer.limit());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.xjy.persist;
+
+import java.util.Locale;
+
+/**
+ * 写前日志落盘策略
+ * <ul>
+ *     <li>always：每次写入等待所在批次fsync完成后才返回（组提交，并发写入共享一次fsync）</li>
+ *     <li>batch：后台线程每写出一批就fsync，写入不等待（掉电最多丢失最近一批）</li>
+ *     <li>interval：后台线程持续写出，按固定间隔fsync（默认，掉电最多丢失一个间隔内的数据）</li>
+ * </ul>
+ */
+public enum FsyncPolicy {
+    ALWAYS,
+    BATCH,
+    INTERVAL;
+
+    public static FsyncPolicy parse(String value) {
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown fsync policy: " + value + " (expected always, batch or interval)");
+        }
+    }
+}
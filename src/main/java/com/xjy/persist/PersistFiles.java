@@ -0,0 +1,76 @@
+package com.xjy.persist;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 数据目录下的文件命名与枚举
+ * <p>
+ * 段文件：wal-{段编号}.log；快照：snapshot-{回放起始段编号}.snap。编号固定20位，字典序即数值序。
+ */
+final class PersistFiles {
+    private static final String WAL_PREFIX = "wal-";
+    private static final String WAL_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private PersistFiles() {
+    }
+
+    static Path walSegment(Path directory, long segment) {
+        return directory.resolve(WAL_PREFIX + String.format("%020d", segment) + WAL_SUFFIX);
+    }
+
+    static Path snapshot(Path directory, long walSegment) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%020d", walSegment) + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * 升序列出所有段编号
+     */
+    static List<Long> listWalSegments(Path directory) throws IOException {
+        return list(directory, WAL_PREFIX, WAL_SUFFIX);
+    }
+
+    /**
+     * 升序列出所有快照的回放起始段编号
+     */
+    static List<Long> listSnapshots(Path directory) throws IOException {
+        return list(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * fsync目录，保证新建、重命名的文件在掉电后仍然存在（不支持的平台忽略）
+     */
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // 部分平台不支持打开目录
+        }
+    }
+
+    private static List<Long> list(Path directory, String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                String digits = name.substring(prefix.length(), name.length() - suffix.length());
+                try {
+                    numbers.add(Long.parseLong(digits));
+                } catch (NumberFormatException e) {
+                    // 非本服务生成的文件，忽略
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+}
@@ -0,0 +1,52 @@
+package com.xjy.persist;
+
+import com.xjy.StakeManager;
+import com.xjy.store.StakeListener;
+
+/**
+ * 恢复数据时的批量写入缓冲：攒够一批后通过StakeManager.saveStakes批量合并（同时重建Top20）；
+ * 遇到关闭投注项的记录时先提交之前的记录再关闭，保证关闭之前的额度不会在关闭之后写回
+ */
+final class RestoreBuffer {
+    private static final int CAPACITY = 1 << 16;
+
+    private final StakeManager stakeManager;
+    private final int[] betOfferIds = new int[CAPACITY];
+    private final int[] customerIds = new int[CAPACITY];
+    private final int[] stakes = new int[CAPACITY];
+    private int size;
+    private long total;
+
+    RestoreBuffer(StakeManager stakeManager) {
+        this.stakeManager = stakeManager;
+    }
+
+    void add(int betOfferId, int customerId, int stake) {
+        if (stake == StakeListener.CLOSED_STAKE) {
+            flush();
+            stakeManager.closeOffer(betOfferId);
+            return;
+        }
+        betOfferIds[size] = betOfferId;
+        customerIds[size] = customerId;
+        stakes[size] = stake;
+        if (++size == CAPACITY) {
+            flush();
+        }
+    }
+
+    void flush() {
+        if (size > 0) {
+            stakeManager.saveStakes(betOfferIds, customerIds, stakes, size);
+            total += size;
+            size = 0;
+        }
+    }
+
+    /**
+     * 已提交的记录总数
+     */
+    long total() {
+        return total;
+    }
+}
@@ -0,0 +1,171 @@
+package com.xjy.persist;
+
+import com.xjy.StakeManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 额度持久化：启动时加载最新快照并回放之后的写前日志，运行时记录额度提升，定期生成快照并清理旧日志
+ * <p>
+ * 保留最近两份快照及较早一份快照之后的全部日志段，最新快照损坏时可回退到上一份。
+ */
+public class StakePersistence {
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long segmentBytes;
+    private final long snapshotIntervalSeconds;
+
+    private StakeManager stakeManager;
+    private WalWriter walWriter;
+    private ScheduledExecutorService snapshotScheduler;
+
+    // 上次快照时日志已追加的记录数（无新写入时跳过快照），-1表示尚未生成过快照
+    private long snapshotAppendedRecords = -1;
+
+    /**
+     * @param directory 数据目录（不存在时自动创建）
+     * @param fsyncPolicy 日志落盘策略
+     * @param fsyncIntervalMillis interval策略的fsync间隔
+     * @param segmentBytes 日志段文件大小上限
+     * @param snapshotIntervalSeconds 快照间隔，不大于0时只在关闭时生成快照
+     */
+    public StakePersistence(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis,
+                            long segmentBytes, long snapshotIntervalSeconds) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.segmentBytes = segmentBytes;
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    /**
+     * 恢复数据并开始记录：需在服务开始处理请求之前调用
+     */
+    public void start(StakeManager stakeManager) throws IOException {
+        this.stakeManager = stakeManager;
+        Files.createDirectories(directory);
+        long startNanos = System.nanoTime();
+        RestoreBuffer buffer = new RestoreBuffer(stakeManager);
+
+        // 1. 从最新的可用快照开始
+        long replayFrom = 0;
+        long snapshotRecords = 0;
+        List<Long> snapshots = PersistFiles.listSnapshots(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path file = PersistFiles.snapshot(directory, snapshots.get(i));
+            try {
+                snapshotRecords = StakeSnapshot.load(file, buffer);
+                replayFrom = snapshots.get(i);
+                break;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Skipping unreadable snapshot " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+
+        // 2. 回放快照之后的日志段
+        long walRecords = 0;
+        long nextSegment = Math.max(1, replayFrom);
+        for (long segment : PersistFiles.listWalSegments(directory)) {
+            if (segment >= replayFrom) {
+                walRecords += WalReader.replay(PersistFiles.walSegment(directory, segment), buffer);
+            }
+            nextSegment = Math.max(nextSegment, segment + 1);
+        }
+        buffer.flush();
+        if (walRecords == 0 && !snapshots.isEmpty()) {
+            snapshotAppendedRecords = 0;
+        }
+        System.out.printf("Restored %d stakes from snapshot and %d from write-ahead log in %d ms (%s)%n",
+                snapshotRecords, walRecords, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos),
+                directory.toAbsolutePath());
+
+        // 3. 新写入从新段开始记录（不在可能残缺的旧段后追加）
+        walWriter = new WalWriter(directory, nextSegment, fsyncPolicy, fsyncIntervalMillis, segmentBytes);
+        stakeManager.addStakeListener(walWriter);
+
+        if (snapshotIntervalSeconds > 0) {
+            snapshotScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "stake-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot,
+                    snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 生成快照并清理不再需要的日志段（自上次快照以来无新写入时跳过）
+     */
+    public synchronized void snapshot() throws IOException {
+        long appended = walWriter.getAppendedRecords();
+        if (appended == snapshotAppendedRecords) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        // 先切换日志段：旧段中的记录在切换前已写入存储，一定包含在接下来的快照中
+        long segment = walWriter.rotate();
+        long records = StakeSnapshot.write(PersistFiles.snapshot(directory, segment),
+                stakeManager.getStakeStore(), segment);
+        snapshotAppendedRecords = appended;
+        deleteObsoleteFiles();
+        System.out.printf("Snapshot of %d stakes written in %d ms (replay from segment %d)%n",
+                records, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), segment);
+    }
+
+    /**
+     * 停止定期快照，生成最终快照并关闭日志
+     */
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            snapshot();
+        } finally {
+            stakeManager.removeStakeListener(walWriter);
+            walWriter.close();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // 异常不能抛出，否则定时任务会被取消
+            System.err.println("Snapshot failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保留最近两份快照，删除更早的快照以及较早一份快照之前的日志段
+     */
+    private void deleteObsoleteFiles() throws IOException {
+        List<Long> snapshots = PersistFiles.listSnapshots(directory);
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        int keepFrom = Math.max(0, snapshots.size() - 2);
+        for (int i = 0; i < keepFrom; i++) {
+            Files.deleteIfExists(PersistFiles.snapshot(directory, snapshots.get(i)));
+        }
+        long oldestNeeded = snapshots.get(keepFrom);
+        for (long segment : PersistFiles.listWalSegments(directory)) {
+            if (segment < oldestNeeded) {
+                Files.deleteIfExists(PersistFiles.walSegment(directory, segment));
+            }
+        }
+    }
+}
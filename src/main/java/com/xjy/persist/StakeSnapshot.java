@@ -0,0 +1,194 @@
+package com.xjy.persist;
+
+import com.xjy.store.StakeConsumer;
+import com.xjy.store.StakeStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * 额度快照：紧凑二进制格式，写入临时文件后原子重命名，加载时内存映射并先校验CRC
+ * <p>
+ * 格式：magic(int) + 版本(int) + 回放起始段编号(long)，
+ * 之后每个投注项为 betOfferId(int) + 记录数(int) + 记录数×(customerId, stake)，以-1结束，末尾为之前所有字节的CRC32(int)。
+ * <p>
+ * 快照与写入并发进行（弱一致）：调用方需先切换日志段，遍历开始前已写入存储的额度一定包含在快照中，
+ * 之后的写入由新段覆盖；额度按最大值合并，快照与日志重叠的部分回放结果不变。
+ */
+final class StakeSnapshot {
+    private static final int MAGIC = 0x42535331; // "BSS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int END_OF_OFFERS = -1;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private StakeSnapshot() {
+    }
+
+    /**
+     * 写入快照
+     * @param file 快照文件
+     * @param stakeStore 额度存储
+     * @param walSegment 回放起始段编号
+     * @return 写入的记录数
+     */
+    static long write(Path file, StakeStore stakeStore, long walSegment) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long records;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Output out = new Output(channel);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(walSegment);
+            OfferCollector collector = new OfferCollector();
+            try {
+                stakeStore.forEachOffer(betOfferId -> {
+                    collector.reset();
+                    stakeStore.forEachStake(betOfferId, collector);
+                    if (collector.size == 0) {
+                        return;
+                    }
+                    try {
+                        out.putInt(betOfferId);
+                        out.putInt(collector.size);
+                        for (int i = 0; i < collector.size; i++) {
+                            out.putInt(collector.customerIds[i]);
+                            out.putInt(collector.stakes[i]);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    collector.total += collector.size;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.putInt(END_OF_OFFERS);
+            out.finish();
+            channel.force(true);
+            records = collector.total;
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        PersistFiles.forceDirectory(file.getParent());
+        return records;
+    }
+
+    /**
+     * 加载快照（校验通过后才写入数据）
+     * @return 加载的记录数
+     * @throws IOException 文件损坏或读取失败
+     */
+    static long load(Path file, RestoreBuffer target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + 8) {
+                throw new IOException("Snapshot too short: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            ByteBuffer content = buffer.slice();
+            content.limit((int) (size - 4));
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            if ((int) crc.getValue() != buffer.getInt((int) (size - 4))) {
+                throw new IOException("Snapshot checksum mismatch: " + file);
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unsupported snapshot format: " + file);
+            }
+            buffer.getLong();
+            long records = 0;
+            int betOfferId;
+            while ((betOfferId = buffer.getInt()) != END_OF_OFFERS) {
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    target.add(betOfferId, buffer.getInt(), buffer.getInt());
+                }
+                records += count;
+            }
+            return records;
+        }
+    }
+
+    /**
+     * 收集单个投注项的全部记录（写出前需要先知道记录数）
+     */
+    private static final class OfferCollector implements StakeConsumer {
+        int[] customerIds = new int[1024];
+        int[] stakes = new int[1024];
+        int size;
+        long total;
+
+        void reset() {
+            size = 0;
+        }
+
+        @Override
+        public void accept(int customerId, int stake) {
+            if (size == customerIds.length) {
+                customerIds = Arrays.copyOf(customerIds, size * 2);
+                stakes = Arrays.copyOf(stakes, size * 2);
+            }
+            customerIds[size] = customerId;
+            stakes[size] = stake;
+            size++;
+        }
+    }
+
+    /**
+     * 带CRC的缓冲写出
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+        private final CRC32 crc = new CRC32();
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            if (buffer.remaining() < 4) {
+                drain();
+            }
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            if (buffer.remaining() < 8) {
+                drain();
+            }
+            buffer.putLong(value);
+        }
+
+        /**
+         * 写出剩余数据和CRC
+         */
+        void finish() throws IOException {
+            drain();
+            buffer.putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private void drain() throws IOException {
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.xjy.persist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 回放写前日志段文件：内存映射后逐批校验CRC，遇到不完整或损坏的批次即停止（崩溃时未写完的尾部）
+ */
+final class WalReader {
+
+    private WalReader() {
+    }
+
+    /**
+     * 回放一个段文件
+     * @return 回放的记录数
+     */
+    static long replay(Path file, RestoreBuffer target) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            long records = 0;
+            while (buffer.remaining() >= WalWriter.BATCH_HEADER_BYTES) {
+                int batchStart = buffer.position();
+                int magic = buffer.getInt();
+                int count = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                long length = (long) count * WalWriter.RECORD_BYTES;
+                if (magic != WalWriter.BATCH_MAGIC || count <= 0 || length > buffer.remaining()) {
+                    warnTruncated(file, batchStart, size);
+                    return records;
+                }
+                ByteBuffer payload = buffer.slice();
+                payload.limit((int) length);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    warnTruncated(file, batchStart, size);
+                    return records;
+                }
+                for (int i = 0; i < count; i++) {
+                    target.add(buffer.getInt(), buffer.getInt(), buffer.getInt());
+                }
+                records += count;
+            }
+            if (buffer.hasRemaining()) {
+                warnTruncated(file, buffer.position(), size);
+            }
+            return records;
+        }
+    }
+
+    private static void warnTruncated(Path file, long position, long size) {
+        System.err.printf("Ignoring incomplete write-ahead log tail in %s at offset %d (%d bytes)%n",
+                file.getFileName(), position, size - position);
+    }
+}
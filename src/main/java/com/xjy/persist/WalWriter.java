@@ -0,0 +1,353 @@
+package com.xjy.persist;
+
+import com.xjy.store.StakeListener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * 写前日志：记录额度提升(betOfferId, customerId, stake)，组提交写入分段文件
+ * <p>
+ * 写入线程只把12字节记录追加到内存缓冲区；后台刷盘线程交换缓冲区后整批写出，每批带CRC32校验，
+ * 并按FsyncPolicy调用fsync（batch/interval策略下每批最多攒1毫秒）。段文件超过大小上限或快照请求时切换到新段。
+ * <p>
+ * 批次格式：magic(int) + 记录数(int) + CRC32(int) + 记录数×(betOfferId, customerId, stake)；
+ * 关闭投注项记为(betOfferId, 0, CLOSED_STAKE)。
+ */
+public class WalWriter implements StakeListener {
+    static final int BATCH_MAGIC = 0x57414C31; // "WAL1"
+    static final int BATCH_HEADER_BYTES = 12;
+    static final int RECORD_BYTES = 12;
+    // 单个缓冲区上限，写满时写入线程等待刷盘线程交换缓冲区
+    private static final int BUFFER_BYTES = 1 << 20;
+    // batch/interval策略下刷盘线程被唤醒后再等待的时间，让更多记录攒成一批，避免每条记录一次系统调用
+    private static final long LINGER_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final long segmentBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+
+    // 以下字段由lock保护
+    private ByteBuffer pending = ByteBuffer.allocate(BUFFER_BYTES);
+    private long appendedRecords;
+    private long durableRecords;
+    private CompletableFuture<Long> rotation;
+    private boolean closing;
+    private IOException failure;
+
+    // 以下字段只由刷盘线程访问
+    private ByteBuffer spare = ByteBuffer.allocate(BUFFER_BYTES);
+    private final ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER_BYTES);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long segment;
+    private long segmentSize;
+    private boolean unsynced;
+    private long nextFsyncNanos;
+
+    private final Thread flusher;
+
+    /**
+     * @param directory 数据目录
+     * @param firstSegment 第一个段文件编号（需大于已有的所有段）
+     * @param fsyncPolicy 落盘策略
+     * @param fsyncIntervalMillis interval策略的fsync间隔
+     * @param segmentBytes 段文件大小上限
+     */
+    public WalWriter(Path directory, long firstSegment, FsyncPolicy fsyncPolicy,
+                     long fsyncIntervalMillis, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.segmentBytes = segmentBytes;
+        this.segment = firstSegment;
+        this.channel = openSegment(firstSegment);
+        this.nextFsyncNanos = System.nanoTime() + fsyncIntervalNanos;
+        this.flusher = new Thread(this::flushLoop, "wal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    @Override
+    public void onStakeRaised(int betOfferId, int customerId, int stake) {
+        lock.lock();
+        try {
+            reserve();
+            append(betOfferId, customerId, stake);
+            awaitDurable(appendedRecords);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onStakesRaised(int betOfferId, int[] customerIds, int[] stakes, int from, int to) {
+        lock.lock();
+        try {
+            for (int i = from; i < to; i++) {
+                reserve();
+                append(betOfferId, customerIds[i], stakes[i]);
+            }
+            awaitDurable(appendedRecords);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onOfferClosed(int betOfferId) {
+        lock.lock();
+        try {
+            reserve();
+            append(betOfferId, 0, CLOSED_STAKE);
+            awaitDurable(appendedRecords);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 切换到新段文件：之前追加的记录都写入旧段，之后的记录写入新段
+     * @return 新段编号（快照从该段开始回放）
+     */
+    public long rotate() throws IOException {
+        CompletableFuture<Long> future;
+        lock.lock();
+        try {
+            checkAvailable();
+            if (rotation == null) {
+                rotation = new CompletableFuture<>();
+                notEmpty.signal();
+            }
+            future = rotation;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            return future.join();
+        } catch (RuntimeException e) {
+            throw new IOException("Write-ahead log rotation failed", e.getCause() != null ? e.getCause() : e);
+        }
+    }
+
+    /**
+     * 累计追加的记录数
+     */
+    public long getAppendedRecords() {
+        lock.lock();
+        try {
+            return appendedRecords;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写出剩余记录、fsync并关闭
+     */
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closing = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // ---------------------------------------------------------------- 写入线程（持有lock）
+
+    private void reserve() {
+        checkAvailable();
+        while (pending.remaining() < RECORD_BYTES) {
+            notFull.awaitUninterruptibly();
+            checkAvailable();
+        }
+    }
+
+    private void append(int betOfferId, int customerId, int stake) {
+        boolean wasEmpty = pending.position() == 0;
+        pending.putInt(betOfferId).putInt(customerId).putInt(stake);
+        appendedRecords++;
+        // 缓冲区由空变为非空时唤醒刷盘线程；写满时提前结束其等待
+        if (wasEmpty || pending.remaining() < RECORD_BYTES) {
+            notEmpty.signal();
+        }
+    }
+
+    private void awaitDurable(long records) {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        // 关闭过程中已追加的记录仍会被写出，只有刷盘失败才放弃等待
+        while (durableRecords < records) {
+            if (failure != null) {
+                throw new IllegalStateException("Write-ahead log is unavailable", failure);
+            }
+            durable.awaitUninterruptibly();
+        }
+    }
+
+    private void checkAvailable() {
+        if (failure != null) {
+            throw new IllegalStateException("Write-ahead log is unavailable", failure);
+        }
+        if (closing) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    // ---------------------------------------------------------------- 刷盘线程
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                ByteBuffer batch;
+                long batchRecords;
+                CompletableFuture<Long> rotateRequest;
+                boolean finish;
+                lock.lock();
+                try {
+                    while (pending.position() == 0 && rotation == null && !closing) {
+                        if (unsynced) {
+                            long wait = nextFsyncNanos - System.nanoTime();
+                            if (wait <= 0) {
+                                break;
+                            }
+                            notEmpty.awaitNanos(wait);
+                        } else {
+                            notEmpty.await();
+                        }
+                    }
+                    if (fsyncPolicy != FsyncPolicy.ALWAYS && pending.position() > 0
+                            && pending.remaining() >= RECORD_BYTES && rotation == null && !closing) {
+                        notEmpty.awaitNanos(LINGER_NANOS);
+                    }
+                    // 交换缓冲区，写入线程可立即继续追加
+                    batch = pending;
+                    pending = spare;
+                    batchRecords = appendedRecords;
+                    rotateRequest = rotation;
+                    rotation = null;
+                    finish = closing;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                spare = batch;
+
+                batch.flip();
+                if (batch.hasRemaining()) {
+                    writeBatch(batch);
+                }
+                batch.clear();
+
+                long now = System.nanoTime();
+                if (unsynced && (fsyncPolicy != FsyncPolicy.INTERVAL || now >= nextFsyncNanos
+                        || rotateRequest != null || finish)) {
+                    channel.force(false);
+                    unsynced = false;
+                    nextFsyncNanos = now + fsyncIntervalNanos;
+                }
+                if (!unsynced) {
+                    publishDurable(batchRecords);
+                }
+                if (finish) {
+                    channel.close();
+                    return;
+                }
+                if (rotateRequest != null || segmentSize >= segmentBytes) {
+                    rollSegment();
+                    if (rotateRequest != null) {
+                        rotateRequest.complete(segment);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            IOException cause = e instanceof IOException ? (IOException) e : new IOException(e);
+            System.err.println("Write-ahead log failed: " + e.getMessage());
+            lock.lock();
+            try {
+                failure = cause;
+                if (rotation != null) {
+                    rotation.completeExceptionally(cause);
+                }
+                notFull.signalAll();
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // 已失败，忽略关闭异常
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeBatch(ByteBuffer batch) throws IOException {
+        int length = batch.remaining();
+        crc.reset();
+        crc.update(batch.array(), batch.arrayOffset() + batch.position(), length);
+        header.clear();
+        header.putInt(BATCH_MAGIC).putInt(length / RECORD_BYTES).putInt((int) crc.getValue());
+        header.flip();
+        ByteBuffer[] buffers = {header, batch};
+        while (header.hasRemaining() || batch.hasRemaining()) {
+            channel.write(buffers);
+        }
+        segmentSize += BATCH_HEADER_BYTES + length;
+        unsynced = true;
+    }
+
+    private void publishDurable(long records) {
+        lock.lock();
+        try {
+            if (records > durableRecords) {
+                durableRecords = records;
+                durable.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rollSegment() throws IOException {
+        channel.force(false);
+        channel.close();
+        segment++;
+        channel = openSegment(segment);
+        segmentSize = 0;
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        FileChannel opened = FileChannel.open(PersistFiles.walSegment(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        PersistFiles.forceDirectory(directory);
+        return opened;
+    }
+}
@@ -0,0 +1,16 @@
+package com.xjy.replica;
+
+/**
+ * 副本只读：会话、写入和时间窗口查询需发往主节点
+ */
+public class ReadOnlyReplicaException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param primaryHttpAddress 主节点的HTTP地址（host:port），未配置时为null，错误信息中不带地址
+     */
+    public ReadOnlyReplicaException(String primaryHttpAddress) {
+        super("Read-only replica; sessions, stakes and windowed queries must be sent to the primary"
+                + (primaryHttpAddress == null ? "" : " at " + primaryHttpAddress));
+    }
+}
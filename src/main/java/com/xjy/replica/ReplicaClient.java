@@ -0,0 +1,316 @@
+package com.xjy.replica;
+
+import com.xjy.StakeManager;
+import com.xjy.store.HeapStakeStore;
+import com.xjy.store.StakeListener;
+import com.xjy.store.StakeStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * 副本端：连接主节点接收复制流，按批通过StakeManager.saveStakes应用到本地（同时更新Top20、名次索引和推送流）
+ * <p>
+ * 断线后每秒重连一次，握手时带上主节点纪元和下一条待接收的序号，主节点据此续传或全量同步。
+ * 复制延迟以记录数（主节点最新序号与已应用序号之差）和距上次收到主节点数据的时间表示。
+ * <p>
+ * 全量同步以主节点数据为准：本地为空时直接应用，否则先暂存到独立的存储，同步结束时逐个投注项对比——
+ * 本地有而主节点没有的投注项（已在主节点关闭或属于旧纪元）直接关闭；本地存在高于主节点或主节点没有的额度时
+ * 判定该投注项已分叉，关闭后用主节点数据重建；其余投注项按最大值合并。
+ */
+public class ReplicaClient implements Closeable {
+    private static final long RECONNECT_DELAY_MILLIS = 1000L;
+
+    private final String host;
+    private final int port;
+    private final StakeManager stakeManager;
+
+    private final int[] betOfferIds = new int[ReplicationProtocol.MAX_RECORDS_PER_FRAME];
+    private final int[] customerIds = new int[ReplicationProtocol.MAX_RECORDS_PER_FRAME];
+    private final int[] stakes = new int[ReplicationProtocol.MAX_RECORDS_PER_FRAME];
+
+    // 复制进度：只由复制线程写入
+    private volatile long epoch;
+    private volatile long appliedSeq;
+    private volatile long primarySeq;
+    private volatile long lastContactMillis;
+    private volatile boolean synced;
+    private volatile boolean connected;
+    // 全量同步时发现与主节点不一致而重建或关闭的投注项数
+    private volatile long divergedOffers;
+
+    private volatile boolean running;
+    private volatile Socket socket;
+    private Thread thread;
+
+    /**
+     * @param host 主节点地址
+     * @param port 主节点复制端口
+     */
+    public ReplicaClient(String host, int port, StakeManager stakeManager) {
+        this.host = host;
+        this.port = port;
+        this.stakeManager = stakeManager;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "replica-client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        String lastError = null;
+        while (running) {
+            try {
+                replicate();
+            } catch (IOException e) {
+                // 同一错误只打印一次，避免主节点不可用时每秒刷屏
+                String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                if (running && !error.equals(lastError)) {
+                    System.err.println("Replication from " + host + ":" + port + " interrupted: " + error);
+                    lastError = error;
+                }
+            } catch (RuntimeException e) {
+                // 应用记录失败时本地数据可能只应用了一部分：重连后全量同步，而不是让复制线程退出
+                synced = false;
+                epoch = 0;
+                lastError = null;
+                System.err.println("Failed to apply replication from " + host + ":" + port + ", resyncing: " + e);
+            } finally {
+                connected = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void replicate() throws IOException {
+        try (Socket s = new Socket()) {
+            socket = s;
+            s.setTcpNoDelay(true);
+            s.connect(new InetSocketAddress(host, port), ReplicationProtocol.HEARTBEAT_MILLIS * 3);
+            s.setSoTimeout(ReplicationProtocol.HEARTBEAT_MILLIS * 3);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+            out.writeInt(ReplicationProtocol.HANDSHAKE_MAGIC);
+            out.writeLong(epoch);
+            out.writeLong(appliedSeq);
+            out.flush();
+            long primaryEpoch = in.readLong();
+            connected = true;
+            if (primaryEpoch != epoch) {
+                synced = false;
+            }
+            // 全量同步暂存：本地已有数据时使用，本地为空时直接应用
+            StakeStore fullSync = null;
+            boolean applyDirectly = false;
+
+            while (running) {
+                byte type = in.readByte();
+                long seq = in.readLong();
+                long head = in.readLong();
+                int count = in.readInt();
+                if (count < 0 || count > ReplicationProtocol.MAX_RECORDS_PER_FRAME) {
+                    throw new IOException("Invalid replication frame record count: " + count);
+                }
+                for (int i = 0; i < count; i++) {
+                    betOfferIds[i] = in.readInt();
+                    customerIds[i] = in.readInt();
+                    stakes[i] = in.readInt();
+                }
+                switch (type) {
+                    case ReplicationProtocol.FRAME_SNAPSHOT:
+                        if (fullSync == null && !applyDirectly) {
+                            applyDirectly = stakeManager.getStakeStore().offerCount() == 0;
+                            if (!applyDirectly) {
+                                fullSync = new HeapStakeStore();
+                            }
+                        }
+                        if (applyDirectly) {
+                            apply(count);
+                        } else {
+                            for (int i = 0; i < count; i++) {
+                                fullSync.mergeMax(betOfferIds[i], customerIds[i], stakes[i]);
+                            }
+                        }
+                        break;
+                    case ReplicationProtocol.FRAME_SNAPSHOT_END:
+                        if (!applyDirectly) {
+                            // 主节点没有数据时不会发送数据块，本地数据全部关闭
+                            replaceWith(fullSync != null ? fullSync : new HeapStakeStore());
+                        }
+                        fullSync = null;
+                        applyDirectly = false;
+                        // 全量同步完成后才接受新纪元，中途断开会重新全量同步
+                        epoch = primaryEpoch;
+                        appliedSeq = seq;
+                        synced = true;
+                        break;
+                    case ReplicationProtocol.FRAME_BATCH:
+                        if (seq != appliedSeq) {
+                            throw new IOException("Replication gap: expected sequence " + appliedSeq + ", got " + seq);
+                        }
+                        apply(count);
+                        appliedSeq = seq + count;
+                        break;
+                    case ReplicationProtocol.FRAME_HEARTBEAT:
+                        break;
+                    default:
+                        throw new IOException("Unknown replication frame type: " + type);
+                }
+                primarySeq = head;
+                lastContactMillis = System.currentTimeMillis();
+            }
+        } finally {
+            socket = null;
+        }
+    }
+
+    private void apply(int count) {
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            if (stakes[i] == StakeListener.CLOSED_STAKE) {
+                // 关闭投注项：先应用之前的记录，再关闭
+                applyRange(from, i);
+                stakeManager.closeOffer(betOfferIds[i]);
+                from = i + 1;
+            }
+        }
+        applyRange(from, count);
+    }
+
+    /**
+     * 用全量同步暂存的主节点数据替换本地数据：本地多出的投注项直接关闭，分叉的投注项关闭后重建，其余按最大值合并
+     */
+    private void replaceWith(StakeStore primary) {
+        StakeStore local = stakeManager.getStakeStore();
+        int[] localOfferIds = new int[local.offerCount()];
+        int[] localOfferCount = new int[1];
+        local.forEachOffer(betOfferId -> {
+            if (localOfferCount[0] < localOfferIds.length) {
+                localOfferIds[localOfferCount[0]++] = betOfferId;
+            }
+        });
+        long removed = 0;
+        for (int i = 0; i < localOfferCount[0]; i++) {
+            if (!primary.containsOffer(localOfferIds[i]) && stakeManager.closeOffer(localOfferIds[i])) {
+                removed++;
+            }
+        }
+        long[] rebuilt = new long[1];
+        int[] count = new int[1];
+        primary.forEachOffer(betOfferId -> {
+            if (local.containsOffer(betOfferId) && diverged(local, primary, betOfferId)) {
+                applyRange(0, count[0]);
+                count[0] = 0;
+                stakeManager.closeOffer(betOfferId);
+                rebuilt[0]++;
+            }
+            primary.forEachStake(betOfferId, (customerId, stake) -> {
+                betOfferIds[count[0]] = betOfferId;
+                customerIds[count[0]] = customerId;
+                stakes[count[0]] = stake;
+                if (++count[0] == stakes.length) {
+                    applyRange(0, count[0]);
+                    count[0] = 0;
+                }
+            });
+        });
+        applyRange(0, count[0]);
+        if (removed + rebuilt[0] > 0) {
+            divergedOffers += removed + rebuilt[0];
+            System.out.printf("Full sync from %s:%d closed %d bet offers missing on the primary and rebuilt %d diverged ones%n",
+                    host, port, removed, rebuilt[0]);
+        }
+    }
+
+    /**
+     * 本地是否存在高于主节点或主节点没有的额度（按最大值合并无法消除，需要重建）
+     */
+    private static boolean diverged(StakeStore local, StakeStore primary, int betOfferId) {
+        boolean[] diverged = new boolean[1];
+        local.forEachStake(betOfferId, (customerId, stake) -> {
+            if (stake > primary.getStake(betOfferId, customerId)) {
+                diverged[0] = true;
+            }
+        });
+        return diverged[0];
+    }
+
+    private void applyRange(int from, int to) {
+        if (from == 0) {
+            if (to > 0) {
+                stakeManager.saveStakes(betOfferIds, customerIds, stakes, to);
+            }
+        } else if (to > from) {
+            stakeManager.saveStakes(Arrays.copyOfRange(betOfferIds, from, to), Arrays.copyOfRange(customerIds, from, to),
+                    Arrays.copyOfRange(stakes, from, to), to - from);
+        }
+    }
+
+    /**
+     * 是否已连接主节点
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * 已应用的记录序号（下一条待接收记录的序号）
+     */
+    public long getAppliedSequence() {
+        return appliedSeq;
+    }
+
+    /**
+     * 复制延迟（记录数）：主节点最新序号与已应用序号之差；尚未完成全量同步时返回-1
+     */
+    public long getLagRecords() {
+        return synced ? Math.max(0, primarySeq - appliedSeq) : -1;
+    }
+
+    /**
+     * 全量同步时因与主节点不一致而关闭或重建的投注项总数
+     */
+    public long getDivergedOfferCount() {
+        return divergedOffers;
+    }
+
+    /**
+     * 距上次收到主节点数据（含心跳）的毫秒数；从未连接成功时返回-1
+     */
+    public long getMillisSinceLastContact() {
+        long last = lastContactMillis;
+        return last == 0 ? -1 : System.currentTimeMillis() - last;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+                // 关闭失败不影响退出
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
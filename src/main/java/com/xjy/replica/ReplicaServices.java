@@ -0,0 +1,86 @@
+package com.xjy.replica;
+
+import com.xjy.SessionService;
+import com.xjy.StakeManager;
+import com.xjy.StakeService;
+
+/**
+ * 副本的会话和额度服务：查询直接读取本地复制的数据，会话和写入请求抛出ReadOnlyReplicaException
+ * <p>
+ * Session不参与复制，只有主节点能校验，因此副本上的会话接口同样拒绝。
+ */
+public class ReplicaServices implements SessionService, StakeService {
+    private final StakeManager localStakes;
+    private final String primaryAddress;
+
+    /**
+     * @param primaryAddress 主节点的HTTP地址（host:port），客户端据此改发会话和写入请求；未配置时为null
+     */
+    public ReplicaServices(StakeManager localStakes, String primaryAddress) {
+        this.localStakes = localStakes;
+        this.primaryAddress = primaryAddress;
+    }
+
+    @Override
+    public String getOrCreateSession(int customerId) {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public Integer validateSession(String sessionKey) {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public void saveStake(int betOfferId, int customerId, int stake) {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public void saveStakes(int[] betOfferIds, int[] customerIds, int[] stakes, int count) {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public boolean closeOffer(int betOfferId) {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public byte[] getTopStakesResponse(int betOfferId) {
+        return localStakes.getTopStakesResponse(betOfferId);
+    }
+
+    @Override
+    public byte[] getTopStakesBinary(int betOfferId) {
+        return localStakes.getTopStakesBinary(betOfferId);
+    }
+
+    @Override
+    public byte[] getTopStakesResponses(int[] betOfferIds, int count) {
+        return localStakes.getTopStakesResponses(betOfferIds, count);
+    }
+
+    /**
+     * 时间窗口需要每次提交的额度和提交时间，复制流只包含额度提升，因此窗口查询同样交给主节点
+     */
+    @Override
+    public byte[] getWindowedTopStakesResponse(int betOfferId, int windowSeconds) {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public int getMaxWindowSeconds() {
+        throw new ReadOnlyReplicaException(primaryAddress);
+    }
+
+    @Override
+    public int getRank(int betOfferId, int customerId) {
+        return localStakes.getRank(betOfferId, customerId);
+    }
+
+    @Override
+    public byte[] getStakesPageResponse(int betOfferId, int fromRank, int limit) {
+        return localStakes.getStakesPageResponse(betOfferId, fromRank, limit);
+    }
+}
@@ -0,0 +1,146 @@
+package com.xjy.replica;
+
+import com.xjy.store.StakeListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 主节点的复制积压日志：按提交顺序为每次额度提升分配序号（从0开始），最近capacity条保存在环形数组中
+ * <p>
+ * 写入线程只在锁内追加12字节记录；各副本的发送线程按自己的进度读取，读到最新时在条件变量上等待。
+ * 副本断线重连后只要序号仍在积压范围内即可续传，落后超过capacity条时需要全量同步。
+ */
+public class ReplicationLog implements StakeListener {
+    private final int capacity;
+    // 环形数组：序号seq的记录位于 (seq % capacity) * 3
+    private final int[] records;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+
+    // 以下字段由lock保护
+    private long head; // 下一条记录的序号
+    private int waiters;
+
+    /**
+     * @param capacity 保留的最近记录数
+     */
+    public ReplicationLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Replication backlog must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.records = new int[capacity * 3];
+    }
+
+    @Override
+    public void onStakeRaised(int betOfferId, int customerId, int stake) {
+        lock.lock();
+        try {
+            append(betOfferId, customerId, stake);
+            signalWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onStakesRaised(int betOfferId, int[] customerIds, int[] stakes, int from, int to) {
+        lock.lock();
+        try {
+            for (int i = from; i < to; i++) {
+                append(betOfferId, customerIds[i], stakes[i]);
+            }
+            signalWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 关闭投注项记为(betOfferId, 0, CLOSED_STAKE)，副本收到后同样关闭
+     */
+    @Override
+    public void onOfferClosed(int betOfferId) {
+        lock.lock();
+        try {
+            append(betOfferId, 0, CLOSED_STAKE);
+            signalWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 下一条记录的序号（即已追加的记录总数）
+     */
+    public long head() {
+        lock.lock();
+        try {
+            return head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 序号是否可以续传（仍在积压范围内或恰好为下一条）
+     */
+    public boolean contains(long seq) {
+        lock.lock();
+        try {
+            return seq <= head && seq >= head - capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 从seq开始读取最多max条记录，没有新记录时最多等待timeout
+     * @param dest 输出：每条记录为(betOfferId, customerId, stake)，长度至少max * 3
+     * @return 读取的记录数（超时为0），seq已超出积压范围返回-1
+     */
+    public int read(long seq, int[] dest, int max, long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = unit.toNanos(timeout);
+            while (head == seq && nanos > 0) {
+                waiters++;
+                try {
+                    nanos = appended.awaitNanos(nanos);
+                } finally {
+                    waiters--;
+                }
+            }
+            if (seq > head || seq < head - capacity) {
+                return -1;
+            }
+            int count = (int) Math.min(max, head - seq);
+            for (int i = 0; i < count; i++) {
+                int index = (int) ((seq + i) % capacity) * 3;
+                dest[i * 3] = records[index];
+                dest[i * 3 + 1] = records[index + 1];
+                dest[i * 3 + 2] = records[index + 2];
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(int betOfferId, int customerId, int stake) {
+        int index = (int) (head % capacity) * 3;
+        records[index] = betOfferId;
+        records[index + 1] = customerId;
+        records[index + 2] = stake;
+        head++;
+    }
+
+    private void signalWaiters() {
+        if (waiters > 0) {
+            appended.signalAll();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.xjy.replica;
+
+/**
+ * 主从复制协议：副本连接主节点后发送握手，之后主节点单向推送帧
+ * <p>
+ * 握手（副本→主节点）：magic(int) + 主节点纪元(long，首次为0) + 下一条待接收的序号(long)；
+ * 主节点回复自己的纪元(long)。纪元相同且序号仍在主节点的积压日志中时从该序号继续推送，否则先全量同步。
+ * <p>
+ * 帧（主节点→副本）：类型(byte) + 序号(long) + 主节点最新序号(long) + 记录数(int)
+ * + 记录数×(betOfferId, customerId, stake)，整数均为大端。
+ */
+public final class ReplicationProtocol {
+    static final int HANDSHAKE_MAGIC = 0x52504C31; // "RPL1"
+
+    // 全量同步数据块：序号为同步完成后的续传序号，记录不推进副本序号
+    static final byte FRAME_SNAPSHOT = 1;
+    // 全量同步结束：序号为续传序号
+    static final byte FRAME_SNAPSHOT_END = 2;
+    // 增量批次：序号为第一条记录的序号
+    static final byte FRAME_BATCH = 3;
+    // 心跳：无记录，只更新主节点最新序号
+    static final byte FRAME_HEARTBEAT = 4;
+
+    // 单帧最多记录数
+    static final int MAX_RECORDS_PER_FRAME = 8192;
+    // 主节点空闲时的心跳间隔；副本超过3个间隔收不到数据即认为连接断开
+    static final int HEARTBEAT_MILLIS = 1000;
+
+    private ReplicationProtocol() {
+    }
+}
@@ -0,0 +1,210 @@
+package com.xjy.replica;
+
+import com.xjy.StakeManager;
+import com.xjy.store.StakeStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 主节点的复制服务：每个副本一条连接、一个发送线程，按副本自己的进度从积压日志读取并批量推送
+ * <p>
+ * 新副本、主节点重启（纪元变化）或落后超出积压范围的副本先全量同步：记下当前序号S后遍历存储推送全部额度，
+ * 再从S开始推送增量。遍历期间的写入可能同时出现在全量数据和增量中，额度按最大值合并，重复应用不影响结果。
+ * 慢副本只影响自己的发送线程，不会阻塞写入。
+ */
+public class ReplicationServer implements Closeable {
+    private final int port;
+    private final StakeManager stakeManager;
+    private final ReplicationLog log;
+    // 本次启动的纪元：序号只在同一纪元内有意义
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final Set<Socket> replicas = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    public ReplicationServer(int port, StakeManager stakeManager, ReplicationLog log) {
+        this.port = port;
+        this.stakeManager = stakeManager;
+        this.log = log;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        running = true;
+        acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                replicas.add(socket);
+                Thread sender = new Thread(() -> serve(socket), "replication-sender-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        String replica = socket.getRemoteSocketAddress().toString();
+        try (socket) {
+            socket.setSoTimeout(ReplicationProtocol.HEARTBEAT_MILLIS * 3);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            if (in.readInt() != ReplicationProtocol.HANDSHAKE_MAGIC) {
+                throw new IOException("Invalid replication handshake");
+            }
+            long replicaEpoch = in.readLong();
+            long seq = in.readLong();
+            out.writeLong(epoch);
+
+            if (replicaEpoch == epoch && log.contains(seq)) {
+                System.out.printf("Replica %s resumed at sequence %d%n", replica, seq);
+            } else {
+                long startNanos = System.nanoTime();
+                seq = fullSync(out);
+                System.out.printf("Replica %s fully synced in %d ms, streaming from sequence %d%n",
+                        replica, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), seq);
+            }
+            stream(out, seq);
+        } catch (EOFException | SocketException e) {
+            // 副本断开或服务关闭
+        } catch (IOException e) {
+            System.err.println("Replication to " + replica + " stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.remove(socket);
+        }
+    }
+
+    /**
+     * 全量同步：按投注项分块推送存储中的全部额度
+     * @return 续传序号
+     */
+    private long fullSync(DataOutputStream out) throws IOException {
+        long resumeSeq = log.head();
+        StakeStore stakeStore = stakeManager.getStakeStore();
+        int[] records = new int[ReplicationProtocol.MAX_RECORDS_PER_FRAME * 3];
+        int[] count = new int[1];
+        try {
+            stakeStore.forEachOffer(betOfferId -> stakeStore.forEachStake(betOfferId, (customerId, stake) -> {
+                int index = count[0] * 3;
+                records[index] = betOfferId;
+                records[index + 1] = customerId;
+                records[index + 2] = stake;
+                if (++count[0] == ReplicationProtocol.MAX_RECORDS_PER_FRAME) {
+                    try {
+                        writeFrame(out, ReplicationProtocol.FRAME_SNAPSHOT, resumeSeq, records, count[0]);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0] = 0;
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (count[0] > 0) {
+            writeFrame(out, ReplicationProtocol.FRAME_SNAPSHOT, resumeSeq, records, count[0]);
+        }
+        writeFrame(out, ReplicationProtocol.FRAME_SNAPSHOT_END, resumeSeq, records, 0);
+        out.flush();
+        return resumeSeq;
+    }
+
+    /**
+     * 从seq开始持续推送增量：有积压时整批发送，空闲时发送心跳
+     */
+    private void stream(DataOutputStream out, long seq) throws IOException, InterruptedException {
+        int[] records = new int[ReplicationProtocol.MAX_RECORDS_PER_FRAME * 3];
+        while (running) {
+            int count = log.read(seq, records, ReplicationProtocol.MAX_RECORDS_PER_FRAME,
+                    ReplicationProtocol.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+            if (count < 0) {
+                // 副本落后超出积压范围：断开后副本重连时会全量同步
+                throw new IOException("Replica fell behind the replication backlog at sequence " + seq);
+            }
+            if (count == 0) {
+                writeFrame(out, ReplicationProtocol.FRAME_HEARTBEAT, seq, records, 0);
+            } else {
+                writeFrame(out, ReplicationProtocol.FRAME_BATCH, seq, records, count);
+                seq += count;
+            }
+            out.flush();
+        }
+    }
+
+    private void writeFrame(DataOutputStream out, byte type, long seq, int[] records, int count) throws IOException {
+        out.writeByte(type);
+        out.writeLong(seq);
+        out.writeLong(log.head());
+        out.writeInt(count);
+        for (int i = 0; i < count * 3; i++) {
+            out.writeInt(records[i]);
+        }
+    }
+
+    /**
+     * 已连接的副本数
+     */
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * 主节点最新序号（已追加的额度提升总数）
+     */
+    public long getSequence() {
+        return log.head();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // 关闭失败不影响退出
+        }
+        for (Socket socket : replicas) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 同上
+            }
+        }
+        if (acceptor != null) {
+            acceptor.interrupt();
+        }
+    }
+}
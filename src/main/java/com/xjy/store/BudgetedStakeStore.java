@@ -0,0 +1,526 @@
+package com.xjy.store;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * 带内存预算的堆内Stake存储：估算内存超出预算时把最久未访问的投注项换出到磁盘，下次访问时再加载
+ * <p>
+ * 每个投注项记录最近访问时刻（秒级粗粒度时钟，同一秒内重复访问不产生写入）。后台线程每秒汇总各投注项额度表的估算内存，
+ * 超出预算时按最近访问时刻从旧到新换出，直到降到预算的90%以下，留出余量避免在预算边界反复换入换出。
+ * <p>
+ * 换出文件每个投注项一个（offer-{id}.spill）：按客户ID排序后以变长整数写入客户ID差值和额度，通常每条记录3~6字节，末尾为CRC32。
+ * 文件只在投注项换出期间有效，加载后即删除；启动和关闭时清空目录（持久化数据由快照和写前日志负责）。
+ * <p>
+ * 并发：读写单条额度前先增加投注项的引用计数，再检查换出标记；换出线程先设置换出标记，再短暂等待引用计数归零，
+ * 等不到（如批量写入正在进行）就放弃本次换出、留到下一轮。两边都是volatile读写，因此要么访问方看到换出标记转去等待加载，
+ * 要么换出方等到访问结束，不会丢失写入。整体遍历（快照、全量复制、重建名次索引）不持有引用计数：
+ * 换出后旧额度表不会再被写入，遍历拿到的旧表仍然完整，慢速遍历不会阻塞换出线程和写入。
+ */
+public class BudgetedStakeStore implements StakeStore {
+    private static final String SPILL_PREFIX = "offer-";
+    private static final String SPILL_SUFFIX = ".spill";
+    private static final int SPILL_MAGIC = 0x42535350; // "BSSP"
+    // 每个投注项除额度表外的固定开销估算（投注项对象、引用计数、外层表槽位）
+    private static final long OFFER_OVERHEAD_BYTES = 64;
+    // 超出预算后换出到预算的该比例以下
+    private static final double LOW_WATERMARK = 0.9;
+    private static final long CHECK_INTERVAL_MILLIS = 1000;
+    // 换出时等待进行中访问结束的最长自旋次数，超过则跳过该投注项
+    private static final int MAX_SPILL_SPINS = 1 << 14;
+
+    private final ConcurrentIntObjectMap<Offer> offers = new ConcurrentIntObjectMap<>();
+    private final Path directory;
+    private final long budgetBytes;
+    private final ScheduledExecutorService evictor;
+    private final long startNanos = System.nanoTime();
+
+    // 粗粒度时钟（启动后的秒数），由换出线程推进
+    private volatile long clock;
+    // 投注项换出后的回调，未设置时为null
+    private volatile IntConsumer evictionListener;
+
+    // 最近一次汇总（及之后换出、加载）的常驻估算内存和投注项数
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final AtomicInteger residentOffers = new AtomicInteger();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder skippedSpills = new LongAdder();
+
+    /**
+     * @param directory 换出文件目录（不存在时自动创建，已有的换出文件会被删除）
+     * @param budgetBytes 额度表的堆内存预算（字节）
+     */
+    public BudgetedStakeStore(Path directory, long budgetBytes) throws IOException {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive: " + budgetBytes);
+        }
+        this.directory = directory;
+        this.budgetBytes = budgetBytes;
+        Files.createDirectories(directory);
+        deleteSpillFiles();
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "stake-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::enforceBudget, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int mergeMax(int betOfferId, int customerId, int stake) {
+        Offer offer = offers.computeIfAbsent(betOfferId, Offer::new);
+        ConcurrentIntIntMap customerStakes = pin(offer);
+        try {
+            return customerStakes.mergeMax(customerId, stake);
+        } finally {
+            offer.pins.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void mergeMaxBatch(int betOfferId, int[] customerIds, int[] stakes, int from, int to, int[] previous) {
+        Offer offer = offers.computeIfAbsent(betOfferId, Offer::new);
+        ConcurrentIntIntMap customerStakes = pin(offer);
+        try {
+            for (int i = from; i < to; i++) {
+                previous[i] = customerStakes.mergeMax(customerIds[i], stakes[i]);
+            }
+        } finally {
+            offer.pins.decrementAndGet();
+        }
+    }
+
+    @Override
+    public int getStake(int betOfferId, int customerId) {
+        Offer offer = offers.get(betOfferId);
+        if (offer == null) {
+            return 0;
+        }
+        ConcurrentIntIntMap customerStakes = pin(offer);
+        try {
+            return customerStakes.get(customerId);
+        } finally {
+            offer.pins.decrementAndGet();
+        }
+    }
+
+    @Override
+    public boolean containsOffer(int betOfferId) {
+        return offers.get(betOfferId) != null;
+    }
+
+    /**
+     * 常驻的投注项直接遍历额度表，不持有引用计数（回调可能很慢，如向副本写出）：遍历期间被换出时，
+     * 旧表在换出后不再被写入，结果与换出时刻一致；已换出的投注项直接从换出文件读取，不加载回内存
+     * （快照、全量复制等整体遍历不会把冷数据全部换入）
+     */
+    @Override
+    public void forEachStake(int betOfferId, StakeConsumer consumer) {
+        Offer offer = offers.get(betOfferId);
+        if (offer == null) {
+            return;
+        }
+        ConcurrentIntIntMap customerStakes = offer.stakes;
+        if (customerStakes == null) {
+            // 换出和加载都在投注项锁内进行，读取换出文件期间状态不变；文件只在此处短暂读取，不在锁内回调
+            long[] entries;
+            synchronized (offer) {
+                customerStakes = offer.stakes;
+                if (customerStakes == null) {
+                    if (offer.removed) {
+                        return;
+                    }
+                    entries = new long[offer.spilledCount];
+                    int[] count = new int[1];
+                    readSpill(offer.betOfferId, (customerId, stake) ->
+                            entries[count[0]++] = ((long) customerId << 32) | (stake & 0xFFFFFFFFL));
+                } else {
+                    entries = null;
+                }
+            }
+            if (entries != null) {
+                for (long entry : entries) {
+                    consumer.accept((int) (entry >>> 32), (int) entry);
+                }
+                return;
+            }
+        }
+        customerStakes.forEach(consumer);
+    }
+
+    @Override
+    public void forEachOffer(IntConsumer consumer) {
+        offers.forEach((betOfferId, offer) -> consumer.accept(betOfferId));
+    }
+
+    @Override
+    public boolean supportsRemoveOffer() {
+        return true;
+    }
+
+    @Override
+    public boolean removeOffer(int betOfferId) {
+        Offer offer = offers.remove(betOfferId);
+        if (offer == null) {
+            return false;
+        }
+        synchronized (offer) {
+            offer.removed = true;
+            if (offer.stakes == null) {
+                try {
+                    Files.deleteIfExists(spillPath(betOfferId));
+                } catch (IOException e) {
+                    System.err.println("Failed to delete spill file of closed offer " + betOfferId + ": " + e.getMessage());
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void setEvictionListener(IntConsumer listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public long estimatedHeapBytes() {
+        return residentBytes.get();
+    }
+
+    @Override
+    public int offerCount() {
+        return offers.size();
+    }
+
+    @Override
+    public long stakeCount() {
+        long[] total = new long[1];
+        offers.forEach((betOfferId, offer) -> {
+            ConcurrentIntIntMap customerStakes = offer.stakes;
+            total[0] += customerStakes != null ? customerStakes.size() : offer.spilledCount;
+        });
+        return total[0];
+    }
+
+    /**
+     * 额度表的堆内存预算（字节）
+     */
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * 常驻内存的投注项数
+     */
+    public int getResidentOfferCount() {
+        return residentOffers.get();
+    }
+
+    /**
+     * 累计换出次数
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 累计从换出文件加载的次数
+     */
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+    /**
+     * 因仍有访问进行中而跳过换出的次数
+     */
+    public long getSkippedSpillCount() {
+        return skippedSpills.sum();
+    }
+
+    /**
+     * 停止换出线程并删除换出文件（需在生成最终快照之后调用）
+     */
+    @Override
+    public void close() throws IOException {
+        evictor.shutdown();
+        try {
+            evictor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        deleteSpillFiles();
+    }
+
+    /**
+     * 增加引用计数并返回常驻的额度表，投注项已换出时先加载；调用方用完后需减少引用计数
+     */
+    private ConcurrentIntIntMap pin(Offer offer) {
+        for (;;) {
+            offer.pins.incrementAndGet();
+            // 先读换出标记再读额度表：换出完成时额度表置空先于清除标记，不会读到换出前的旧表
+            if (!offer.evicting) {
+                ConcurrentIntIntMap customerStakes = offer.stakes;
+                if (customerStakes != null) {
+                    long now = clock;
+                    if (offer.lastAccess != now) {
+                        offer.lastAccess = now;
+                    }
+                    return customerStakes;
+                }
+            }
+            offer.pins.decrementAndGet();
+            load(offer);
+        }
+    }
+
+    /**
+     * 加载已换出的投注项（换出进行中时在投注项锁上等待其完成）
+     */
+    private void load(Offer offer) {
+        synchronized (offer) {
+            if (offer.stakes != null) {
+                return;
+            }
+            ConcurrentIntIntMap customerStakes = new ConcurrentIntIntMap(offer.spilledCount + (offer.spilledCount >>> 1));
+            if (!offer.removed) {
+                // 已关闭的投注项不再读取文件：持有旧引用的并发写入落在一张不再可见的空表上
+                Path file = spillPath(offer.betOfferId);
+                readSpill(offer.betOfferId, customerStakes::mergeMax);
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            offer.lastAccess = clock;
+            offer.spilledCount = 0;
+            offer.stakes = customerStakes;
+            reloads.increment();
+            residentBytes.addAndGet(estimatedBytes(customerStakes));
+            residentOffers.incrementAndGet();
+        }
+    }
+
+    /**
+     * 换出线程：汇总常驻内存，超出预算时按最近访问时刻从旧到新换出
+     */
+    private void enforceBudget() {
+        try {
+            clock = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+            int capacity = offers.size() + 16;
+            Offer[] resident = new Offer[capacity];
+            long[] order = new long[capacity];
+            int[] count = new int[1];
+            long[] total = new long[1];
+            offers.forEach((betOfferId, offer) -> {
+                ConcurrentIntIntMap customerStakes = offer.stakes;
+                if (customerStakes == null || count[0] == resident.length) {
+                    return;
+                }
+                total[0] += estimatedBytes(customerStakes);
+                // 高位为最近访问时刻、低位为下标，排序后即按访问时刻从旧到新
+                order[count[0]] = (offer.lastAccess << 32) | count[0];
+                resident[count[0]++] = offer;
+            });
+            residentBytes.set(total[0]);
+            residentOffers.set(count[0]);
+            if (total[0] <= budgetBytes) {
+                return;
+            }
+            Arrays.sort(order, 0, count[0]);
+            long target = (long) (budgetBytes * LOW_WATERMARK);
+            long remaining = total[0];
+            for (int i = 0; i < count[0] && remaining > target; i++) {
+                Offer offer = resident[(int) order[i]];
+                long freed = spill(offer);
+                if (freed > 0) {
+                    remaining -= freed;
+                    residentBytes.addAndGet(-freed);
+                    residentOffers.decrementAndGet();
+                    IntConsumer listener = evictionListener;
+                    if (listener != null) {
+                        listener.accept(offer.betOfferId);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Stake eviction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 换出投注项
+     * @return 释放的估算内存，未换出（已换出、已关闭、仍有访问进行中或写文件失败）时返回0
+     */
+    private long spill(Offer offer) {
+        synchronized (offer) {
+            ConcurrentIntIntMap customerStakes = offer.stakes;
+            if (customerStakes == null || offer.removed) {
+                return 0;
+            }
+            offer.evicting = true;
+            try {
+                // 短暂等待进行中的读写结束（单条读写只持有引用计数一次操作的时间），
+                // 等不到时放弃本次换出，不在投注项锁内长时间自旋阻塞写入
+                int spins = 0;
+                while (offer.pins.get() > 0) {
+                    if (++spins > MAX_SPILL_SPINS) {
+                        skippedSpills.increment();
+                        return 0;
+                    }
+                    Thread.onSpinWait();
+                }
+                offer.spilledCount = writeSpill(offer.betOfferId, customerStakes);
+                offer.stakes = null;
+                evictions.increment();
+                return estimatedBytes(customerStakes);
+            } catch (IOException e) {
+                System.err.println("Failed to spill bet offer " + offer.betOfferId + ": " + e.getMessage());
+                return 0;
+            } finally {
+                offer.evicting = false;
+            }
+        }
+    }
+
+    /**
+     * 写出换出文件：magic + 投注项ID + 记录数 + 按客户ID排序的(客户ID差值, 额度)变长整数 + CRC32
+     * @return 写出的记录数
+     */
+    private int writeSpill(int betOfferId, ConcurrentIntIntMap customerStakes) throws IOException {
+        // 换出期间没有并发写入，记录数不变
+        long[] entries = new long[customerStakes.size()];
+        int[] count = new int[1];
+        customerStakes.forEach((customerId, stake) -> entries[count[0]++] = ((long) customerId << 32) | stake);
+        Arrays.sort(entries, 0, count[0]);
+
+        ByteBuffer buffer = ByteBuffer.allocate(16 + count[0] * 10);
+        buffer.putInt(SPILL_MAGIC).putInt(betOfferId).putInt(count[0]);
+        int previousCustomerId = 0;
+        for (int i = 0; i < count[0]; i++) {
+            // 客户ID非负，排序后差值非负
+            int customerId = (int) (entries[i] >>> 32);
+            putVarInt(buffer, customerId - previousCustomerId);
+            putVarInt(buffer, (int) entries[i]);
+            previousCustomerId = customerId;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(spillPath(betOfferId), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return count[0];
+    }
+
+    /**
+     * 读取换出文件（先校验CRC）
+     */
+    private void readSpill(int betOfferId, StakeConsumer consumer) {
+        Path file = spillPath(betOfferId);
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (bytes.length < 16) {
+                throw new IOException("Spill file too short: " + file);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length - 4);
+            if ((int) crc.getValue() != buffer.getInt(bytes.length - 4)) {
+                throw new IOException("Spill file checksum mismatch: " + file);
+            }
+            if (buffer.getInt() != SPILL_MAGIC || buffer.getInt() != betOfferId) {
+                throw new IOException("Unexpected spill file content: " + file);
+            }
+            int count = buffer.getInt();
+            int customerId = 0;
+            for (int i = 0; i < count; i++) {
+                customerId += getVarInt(buffer);
+                consumer.accept(customerId, getVarInt(buffer));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path spillPath(int betOfferId) {
+        return directory.resolve(SPILL_PREFIX + betOfferId + SPILL_SUFFIX);
+    }
+
+    private void deleteSpillFiles() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SPILL_PREFIX + "*" + SPILL_SUFFIX)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static long estimatedBytes(ConcurrentIntIntMap customerStakes) {
+        return ConcurrentIntIntMap.estimatedBytes(customerStakes.capacity()) + OFFER_OVERHEAD_BYTES;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * 单个投注项的常驻状态
+     */
+    private static final class Offer {
+        final int betOfferId;
+        // 正在访问额度表的线程数
+        final AtomicInteger pins = new AtomicInteger();
+        // 额度表，已换出时为null
+        volatile ConcurrentIntIntMap stakes;
+        // 换出进行中（只在投注项锁内设置和清除）
+        volatile boolean evicting;
+        // 已被关闭删除（投注项锁内设置）
+        volatile boolean removed;
+        // 最近访问时刻（粗粒度时钟）
+        volatile long lastAccess;
+        // 换出时的记录数
+        volatile int spilledCount;
+
+        Offer(int betOfferId) {
+            this.betOfferId = betOfferId;
+            this.stakes = new ConcurrentIntIntMap();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.xjy.store;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 并发int→int开放寻址表（线性探测），专用于保存客户ID → 最高额度
+ * <p>
+ * 每个槽位是一个long：高32位为客户ID，低32位为额度。额度必须为正数，
+ * 因此0表示空槽；低32位≤0的非0值表示该槽位已在扩容中迁走（额度取负保留迁移时的值）。
+ * 读写均基于CAS无锁完成，只有扩容期间访问到已迁移槽位的线程需要等待扩容结束。
+ * 每条记录占用8字节（负载因子0.75时约11字节），不产生装箱对象和链表节点。
+ */
+public class ConcurrentIntIntMap {
+    private static final int MIN_CAPACITY = 8;
+    private static final long EMPTY = 0L;
+    // 空槽位被迁移后的标记（客户ID=Integer.MIN_VALUE，额度=0，正常记录不会出现）
+    private static final long EMPTY_MOVED = Long.MIN_VALUE;
+
+    private static final AtomicReferenceFieldUpdater<Table, Table> NEXT =
+            AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "next");
+
+    private volatile Table table;
+    private final AtomicInteger size = new AtomicInteger();
+
+    public ConcurrentIntIntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public ConcurrentIntIntMap(int initialCapacity) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < initialCapacity) {
+            capacity <<= 1;
+        }
+        this.table = new Table(capacity);
+    }
+
+    /**
+     * 原子地将key对应的值合并为最大值
+     * @param key 客户ID
+     * @param value 正整数额度
+     * @return 合并前的值，不存在则返回0
+     */
+    public int mergeMax(int key, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Value must be positive: " + value);
+        }
+        long packed = pack(key, value);
+        retry:
+        for (;;) {
+            Table t = table;
+            int index = hash(key) & t.mask;
+            for (int probes = 0; probes <= t.mask; probes++) {
+                long current = t.slots.get(index);
+                if (current == EMPTY) {
+                    if (t.slots.compareAndSet(index, EMPTY, packed)) {
+                        if (size.incrementAndGet() > t.threshold) {
+                            resize(t);
+                        }
+                        return 0;
+                    }
+                    // 槽位被抢占，重新检查同一槽位
+                    probes--;
+                    continue;
+                }
+                if (isMoved(current)) {
+                    awaitResize(t);
+                    continue retry;
+                }
+                if (keyOf(current) == key) {
+                    int existing = valueOf(current);
+                    if (existing >= value) {
+                        return existing;
+                    }
+                    if (t.slots.compareAndSet(index, current, packed)) {
+                        return existing;
+                    }
+                    probes--;
+                    continue;
+                }
+                index = (index + 1) & t.mask;
+            }
+            // 并发插入把表填满：扩容后重试
+            resize(t);
+        }
+    }
+
+    /**
+     * 查询key对应的值
+     * @return 值，不存在则返回0
+     */
+    public int get(int key) {
+        retry:
+        for (;;) {
+            Table t = table;
+            int index = hash(key) & t.mask;
+            for (int probes = 0; probes <= t.mask; probes++) {
+                long current = t.slots.get(index);
+                if (current == EMPTY) {
+                    return 0;
+                }
+                if (isMoved(current)) {
+                    awaitResize(t);
+                    continue retry;
+                }
+                if (keyOf(current) == key) {
+                    return valueOf(current);
+                }
+                index = (index + 1) & t.mask;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 遍历所有记录（弱一致：遍历开始前完成的写入一定可见，之后的并发写入可能不可见，不会重复返回同一key）
+     */
+    public void forEach(StakeConsumer consumer) {
+        Table t = table;
+        int capacity = t.mask + 1;
+        for (int i = 0; i < capacity; i++) {
+            long current = t.slots.get(i);
+            if (current == EMPTY || current == EMPTY_MOVED) {
+                continue;
+            }
+            int value = valueOf(current);
+            if (value < 0) {
+                // 已迁移的槽位只保留了迁移时的额度（取负），之后的写入在新表中，需按key重新查询
+                value = Math.max(-value, get(keyOf(current)));
+            }
+            consumer.accept(keyOf(current), value);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 当前表容量（槽位数），用于估算内存占用
+     */
+    public int capacity() {
+        return table.mask + 1;
+    }
+
+    /**
+     * 估算给定容量的表占用的堆内存（字节）：槽位数组 + 表对象、计数器等固定开销
+     */
+    public static long estimatedBytes(int capacity) {
+        return capacity * 8L + 96;
+    }
+
+    /**
+     * 扩容：由触发阈值的线程完成，逐个槽位打上迁移标记后复制到新表
+     */
+    private void resize(Table t) {
+        Table next = new Table((t.mask + 1) << 1);
+        if (!NEXT.compareAndSet(t, null, next)) {
+            awaitResize(t);
+            return;
+        }
+        int capacity = t.mask + 1;
+        for (int i = 0; i < capacity; i++) {
+            long current;
+            do {
+                current = t.slots.get(i);
+            } while (!t.slots.compareAndSet(i, current, current == EMPTY ? EMPTY_MOVED : movedOf(current)));
+            if (current != EMPTY) {
+                next.insertExclusive(current);
+            }
+        }
+        table = next;
+    }
+
+    /**
+     * 等待正在进行的扩容结束
+     */
+    private void awaitResize(Table t) {
+        while (table == t) {
+            Thread.yield();
+        }
+    }
+
+    private static boolean isMoved(long slot) {
+        return slot != EMPTY && (int) slot <= 0;
+    }
+
+    private static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static long movedOf(long slot) {
+        return pack(keyOf(slot), -valueOf(slot));
+    }
+
+    private static int keyOf(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    private static int valueOf(long slot) {
+        return (int) slot;
+    }
+
+    static int hash(int key) {
+        // murmur3 fmix32，打散连续的客户ID
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static final class Table {
+        final AtomicLongArray slots;
+        final int mask;
+        final int threshold;
+        volatile Table next; // 扩容目标表
+
+        Table(int capacity) {
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+            this.threshold = capacity - (capacity >>> 2); // 负载因子0.75
+        }
+
+        /**
+         * 扩容复制：新表发布前只有扩容线程访问
+         */
+        void insertExclusive(long slot) {
+            int index = hash(keyOf(slot)) & mask;
+            while (slots.get(index) != EMPTY) {
+                index = (index + 1) & mask;
+            }
+            slots.set(index, slot);
+        }
+    }
+}
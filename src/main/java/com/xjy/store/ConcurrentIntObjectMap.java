@@ -0,0 +1,148 @@
+package com.xjy.store;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * 并发int→对象开放寻址表（线性探测），用于投注项ID作为键的外层表
+ * <p>
+ * 读操作无锁；插入和扩容在表锁内完成（新增投注项远少于读写投注）。
+ * 写入时先写键再写值，读到非空值即可保证对应的键可见。
+ */
+public class ConcurrentIntObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private volatile Table table = new Table(MIN_CAPACITY);
+    private volatile int size;
+
+    /**
+     * 查询key对应的值
+     * @return 值，不存在则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int index = ConcurrentIntIntMap.hash(key) & t.mask;
+        for (;;) {
+            Object value = t.values.get(index);
+            if (value == null) {
+                return null;
+            }
+            if (t.keys.get(index) == key) {
+                return (V) value;
+            }
+            index = (index + 1) & t.mask;
+        }
+    }
+
+    /**
+     * 获取key对应的值，不存在则用mappingFunction创建（创建过程在表锁内执行，需保持轻量）
+     */
+    public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        synchronized (this) {
+            value = get(key);
+            if (value != null) {
+                return value;
+            }
+            value = mappingFunction.apply(key);
+            if (size + 1 > table.threshold) {
+                table = table.resized();
+            }
+            table.insert(key, value);
+            size++;
+            return value;
+        }
+    }
+
+    /**
+     * 删除key对应的值
+     * <p>
+     * 线性探测表原地删除需要移动后续槽位，无锁读可能因此漏读其他键；删除很少发生（如关闭投注项），
+     * 因此在表锁内重建一张不含该键的新表后整体替换，读线程始终看到完整的旧表或新表。
+     * @return 被删除的值，不存在则返回null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(int key) {
+        V value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Table t = table;
+        Table next = new Table(t.mask + 1);
+        for (int i = 0; i <= t.mask; i++) {
+            Object v = t.values.get(i);
+            if (v != null && t.keys.get(i) != key) {
+                next.insert(t.keys.get(i), v);
+            }
+        }
+        table = next;
+        size--;
+        return value;
+    }
+
+    /**
+     * 遍历所有(key, value)
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjectConsumer<? super V> consumer) {
+        Table t = table;
+        int capacity = t.mask + 1;
+        for (int i = 0; i < capacity; i++) {
+            Object value = t.values.get(i);
+            if (value != null) {
+                consumer.accept(t.keys.get(i), (V) value);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 遍历(int键, 值)的回调
+     */
+    @FunctionalInterface
+    public interface IntObjectConsumer<V> {
+        void accept(int key, V value);
+    }
+
+    private static final class Table {
+        final AtomicIntegerArray keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+        final int threshold;
+
+        Table(int capacity) {
+            this.keys = new AtomicIntegerArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+            this.threshold = capacity >>> 1; // 负载因子0.5
+        }
+
+        void insert(int key, Object value) {
+            int index = ConcurrentIntIntMap.hash(key) & mask;
+            while (values.get(index) != null) {
+                index = (index + 1) & mask;
+            }
+            keys.set(index, key);
+            values.set(index, value);
+        }
+
+        Table resized() {
+            Table next = new Table((mask + 1) << 1);
+            for (int i = 0; i <= mask; i++) {
+                Object value = values.get(i);
+                if (value != null) {
+                    next.insert(keys.get(i), value);
+                }
+            }
+            return next;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.xjy.store;
+
+import java.util.function.IntConsumer;
+
+/**
+ * 堆内Stake存储：int键外层表（投注项ID）+ 每个投注项一个int→int开放寻址表（客户ID → 最高额度）
+ */
+public class HeapStakeStore implements StakeStore {
+    private final ConcurrentIntObjectMap<ConcurrentIntIntMap> offerStakes = new ConcurrentIntObjectMap<>();
+
+    @Override
+    public int mergeMax(int betOfferId, int customerId, int stake) {
+        return offerStakes.computeIfAbsent(betOfferId, k -> new ConcurrentIntIntMap())
+                .mergeMax(customerId, stake);
+    }
+
+    @Override
+    public void mergeMaxBatch(int betOfferId, int[] customerIds, int[] stakes, int from, int to, int[] previous) {
+        ConcurrentIntIntMap customerStakes = offerStakes.computeIfAbsent(betOfferId, k -> new ConcurrentIntIntMap(to - from));
+        for (int i = from; i < to; i++) {
+            previous[i] = customerStakes.mergeMax(customerIds[i], stakes[i]);
+        }
+    }
+
+    @Override
+    public int getStake(int betOfferId, int customerId) {
+        ConcurrentIntIntMap customerStakes = offerStakes.get(betOfferId);
+        return customerStakes == null ? 0 : customerStakes.get(customerId);
+    }
+
+    @Override
+    public boolean containsOffer(int betOfferId) {
+        return offerStakes.get(betOfferId) != null;
+    }
+
+    @Override
+    public void forEachStake(int betOfferId, StakeConsumer consumer) {
+        ConcurrentIntIntMap customerStakes = offerStakes.get(betOfferId);
+        if (customerStakes != null) {
+            customerStakes.forEach(consumer);
+        }
+    }
+
+    @Override
+    public void forEachOffer(IntConsumer consumer) {
+        offerStakes.forEach((betOfferId, customerStakes) -> consumer.accept(betOfferId));
+    }
+
+    @Override
+    public boolean removeOffer(int betOfferId) {
+        return offerStakes.remove(betOfferId) != null;
+    }
+
+    @Override
+    public boolean supportsRemoveOffer() {
+        return true;
+    }
+
+    @Override
+    public long estimatedHeapBytes() {
+        long[] total = new long[1];
+        offerStakes.forEach((betOfferId, customerStakes) ->
+                total[0] += ConcurrentIntIntMap.estimatedBytes(customerStakes.capacity()));
+        return total[0];
+    }
+
+    @Override
+    public int offerCount() {
+        return offerStakes.size();
+    }
+
+    @Override
+    public long stakeCount() {
+        long[] total = new long[1];
+        offerStakes.forEach((betOfferId, customerStakes) -> total[0] += customerStakes.size());
+        return total[0];
+    }
+}
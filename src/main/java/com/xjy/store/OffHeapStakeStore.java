@@ -0,0 +1,618 @@
+package com.xjy.store;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 堆外Stake存储：所有投注项的客户额度表都放在内存映射文件中，堆上只保留少量固定大小的字段
+ * <p>
+ * 数据按块文件（stakes-00000.dat…）映射，地址为(块号 << 32 | 块内偏移)。结构与堆内实现一致：
+ * <ul>
+ *     <li>投注项目录：开放寻址表，每项16字节（表地址、投注项ID），读无锁，新增投注项时加锁</li>
+ *     <li>每个投注项一张额度表：槽位为long（高32位客户ID、低32位额度），CAS合并最大值，
+ *     扩容协议与{@link ConcurrentIntIntMap}相同（迁走的槽位额度取负）</li>
+ * </ul>
+ * 扩容后的旧区域可能仍被并发读取，因此运行期间不复用，关闭时并入空闲链表供下次启动复用。
+ * <p>
+ * 文件同时作为重启镜像：正常关闭时刷盘并写入"已正常关闭"标记，启动时直接映射使用，无需加载；
+ * 未正常关闭（进程崩溃或宕机）的镜像可能不一致，启动时丢弃，由写前日志和快照恢复。
+ */
+public class OffHeapStakeStore implements StakeStore {
+    private static final String CHUNK_PREFIX = "stakes-";
+    private static final String CHUNK_SUFFIX = ".dat";
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // 文件头（位于0号块开头）
+    private static final long MAGIC = 0x4253534F46463031L; // "BSSOFF01"
+    private static final int HEADER_BYTES = 4096;
+    private static final int H_MAGIC = 0;
+    private static final int H_CHUNK_BYTES = 8;
+    private static final int H_CLEAN = 16;
+    private static final int H_DIRECTORY = 24;
+    private static final int H_NEXT_FREE = 32;
+    private static final int H_FREE_HEADS = 64;
+    private static final int SIZE_CLASSES = 32;
+
+    // 区域头：额度表与目录共用
+    private static final int R_MASK = 0;      // 容量-1（不可变）
+    private static final int R_SIZE = 8;      // 记录数
+    private static final int R_NEXT = 16;     // 扩容状态：0未扩容，RESIZING扩容中
+    private static final int R_LINK = 24;     // 空闲/退役链表指针
+    private static final int R_SLOTS = 32;
+    private static final long RESIZING = 1L;
+
+    private static final int MIN_CAPACITY = 8;
+    private static final int MIN_DIRECTORY_CAPACITY = 16;
+    private static final int DIRECTORY_ENTRY_BYTES = 16;
+
+    private static final long EMPTY = 0L;
+    // 空槽位被迁移后的标记（客户ID=Integer.MIN_VALUE，额度=0，正常记录不会出现）
+    private static final long EMPTY_MOVED = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final long chunkBytes;
+
+    // 已映射的块，只在分配锁内追加（写时复制）
+    private volatile ByteBuffer[] chunks;
+    // 当前投注项目录的地址
+    private volatile long offerDirectory;
+
+    // 以下字段只在this锁内访问
+    private long nextFree;
+    // 按区域大小（2^k个long）分级：可复用的空闲区域、本次运行退役的区域
+    private final long[] freeHeads = new long[SIZE_CLASSES];
+    private final long[] retiredHeads = new long[SIZE_CLASSES];
+    private boolean closed;
+
+    /**
+     * 打开（或创建）存储目录
+     * @param directory 块文件所在目录
+     * @param chunkBytes 新建存储时单个块文件的大小（打开已有存储时以文件头记录为准）
+     */
+    public OffHeapStakeStore(Path directory, long chunkBytes) throws IOException {
+        if (chunkBytes < HEADER_BYTES * 2L || chunkBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 8 KB and 2 GB: " + chunkBytes);
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+
+        int existing = countChunks(directory);
+        ByteBuffer header = existing > 0 ? openImage(directory, existing) : null;
+        if (header != null) {
+            this.chunkBytes = getLong(header, H_CHUNK_BYTES);
+            ByteBuffer[] mapped = new ByteBuffer[existing];
+            mapped[0] = header;
+            for (int i = 1; i < existing; i++) {
+                mapped[i] = map(directory, i, this.chunkBytes);
+            }
+            this.chunks = mapped;
+            this.offerDirectory = getLong(header, H_DIRECTORY);
+            this.nextFree = getLong(header, H_NEXT_FREE);
+            for (int i = 0; i < SIZE_CLASSES; i++) {
+                freeHeads[i] = getLong(header, H_FREE_HEADS + i * 8);
+            }
+        } else {
+            deleteChunks(directory);
+            this.chunkBytes = chunkBytes;
+            header = map(directory, 0, chunkBytes);
+            this.chunks = new ByteBuffer[] {header};
+            setLong(header, H_MAGIC, MAGIC);
+            setLong(header, H_CHUNK_BYTES, chunkBytes);
+            this.nextFree = HEADER_BYTES;
+            synchronized (this) {
+                this.offerDirectory = allocate(MIN_DIRECTORY_CAPACITY * 2, MIN_DIRECTORY_CAPACITY);
+            }
+        }
+        // 运行期间标记为未正常关闭，崩溃后的镜像不会被误用
+        setLong(header, H_CLEAN, 0L);
+        ((MappedByteBuffer) header).force(0, HEADER_BYTES);
+    }
+
+    @Override
+    public int mergeMax(int betOfferId, int customerId, int stake) {
+        long table = tableOf(betOfferId);
+        if (table == 0) {
+            table = createTable(betOfferId, MIN_CAPACITY);
+        }
+        return mergeMax(betOfferId, table, customerId, stake);
+    }
+
+    @Override
+    public void mergeMaxBatch(int betOfferId, int[] customerIds, int[] stakes, int from, int to, int[] previous) {
+        long table = tableOf(betOfferId);
+        if (table == 0) {
+            table = createTable(betOfferId, to - from);
+        }
+        for (int i = from; i < to; i++) {
+            previous[i] = mergeMax(betOfferId, table, customerIds[i], stakes[i]);
+        }
+    }
+
+    @Override
+    public int getStake(int betOfferId, int customerId) {
+        long table = tableOf(betOfferId);
+        return table == 0 ? 0 : get(betOfferId, table, customerId);
+    }
+
+    @Override
+    public boolean containsOffer(int betOfferId) {
+        return tableOf(betOfferId) != 0;
+    }
+
+    /**
+     * 遍历投注项下的所有记录（弱一致：遍历开始前完成的写入一定可见，不会重复返回同一客户）
+     */
+    @Override
+    public void forEachStake(int betOfferId, StakeConsumer consumer) {
+        long table = tableOf(betOfferId);
+        if (table == 0) {
+            return;
+        }
+        int capacity = (int) getLong(table + R_MASK) + 1;
+        for (int i = 0; i < capacity; i++) {
+            long current = getLong(slot(table, i));
+            if (current == EMPTY || current == EMPTY_MOVED) {
+                continue;
+            }
+            int value = valueOf(current);
+            if (value < 0) {
+                // 已迁移的槽位只保留了迁移时的额度（取负），之后的写入在新表中
+                value = Math.max(-value, getStake(betOfferId, keyOf(current)));
+            }
+            consumer.accept(keyOf(current), value);
+        }
+    }
+
+    @Override
+    public void forEachOffer(IntConsumer consumer) {
+        long dir = offerDirectory;
+        int capacity = (int) getLong(dir + R_MASK) + 1;
+        for (int i = 0; i < capacity; i++) {
+            long entry = directoryEntry(dir, i);
+            if (getLong(entry) != 0) {
+                consumer.accept((int) getLong(entry + 8));
+            }
+        }
+    }
+
+    @Override
+    public int offerCount() {
+        return (int) getLong(offerDirectory + R_SIZE);
+    }
+
+    @Override
+    public long stakeCount() {
+        long dir = offerDirectory;
+        int capacity = (int) getLong(dir + R_MASK) + 1;
+        long total = 0;
+        for (int i = 0; i < capacity; i++) {
+            long table = getLong(directoryEntry(dir, i));
+            if (table != 0) {
+                total += getLong(table + R_SIZE);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 已映射的文件总大小（字节）
+     */
+    public long mappedBytes() {
+        return chunks.length * chunkBytes;
+    }
+
+    /**
+     * 刷盘并写入正常关闭标记；调用前需停止所有写入
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ByteBuffer[] mapped = chunks;
+        // 本次运行退役的区域已无读者，并入空闲链表
+        for (int k = 0; k < SIZE_CLASSES; k++) {
+            long region = retiredHeads[k];
+            while (region != 0) {
+                long next = getLong(region + R_LINK);
+                setLong(region + R_LINK, freeHeads[k]);
+                freeHeads[k] = region;
+                region = next;
+            }
+            retiredHeads[k] = 0;
+        }
+        ByteBuffer header = mapped[0];
+        setLong(header, H_DIRECTORY, offerDirectory);
+        setLong(header, H_NEXT_FREE, nextFree);
+        for (int k = 0; k < SIZE_CLASSES; k++) {
+            setLong(header, H_FREE_HEADS + k * 8, freeHeads[k]);
+        }
+        for (ByteBuffer chunk : mapped) {
+            ((MappedByteBuffer) chunk).force();
+        }
+        setLong(header, H_CLEAN, 1L);
+        ((MappedByteBuffer) header).force(0, HEADER_BYTES);
+    }
+
+    private int mergeMax(int betOfferId, long table, int key, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Value must be positive: " + value);
+        }
+        long packed = pack(key, value);
+        long t = table;
+        retry:
+        for (;;) {
+            int mask = (int) getLong(t + R_MASK);
+            int index = hash(key) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long address = slot(t, index);
+                long current = getLong(address);
+                if (current == EMPTY) {
+                    if (compareAndSet(address, EMPTY, packed)) {
+                        if (getAndAdd(t + R_SIZE, 1) + 1 > threshold(mask)) {
+                            resize(betOfferId, t);
+                        }
+                        return 0;
+                    }
+                    // 槽位被抢占，重新检查同一槽位
+                    probes--;
+                    continue;
+                }
+                if (isMoved(current)) {
+                    t = awaitResize(betOfferId, t);
+                    continue retry;
+                }
+                if (keyOf(current) == key) {
+                    int existing = valueOf(current);
+                    if (existing >= value) {
+                        return existing;
+                    }
+                    if (compareAndSet(address, current, packed)) {
+                        return existing;
+                    }
+                    probes--;
+                    continue;
+                }
+                index = (index + 1) & mask;
+            }
+            // 并发插入把表填满：扩容后重试
+            resize(betOfferId, t);
+            t = tableOf(betOfferId);
+        }
+    }
+
+    private int get(int betOfferId, long table, int key) {
+        long t = table;
+        retry:
+        for (;;) {
+            int mask = (int) getLong(t + R_MASK);
+            int index = hash(key) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long current = getLong(slot(t, index));
+                if (current == EMPTY) {
+                    return 0;
+                }
+                if (isMoved(current)) {
+                    t = awaitResize(betOfferId, t);
+                    continue retry;
+                }
+                if (keyOf(current) == key) {
+                    return valueOf(current);
+                }
+                index = (index + 1) & mask;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * 扩容：由抢到扩容标记的线程分配新区域，逐个槽位打上迁移标记后复制，再更新目录
+     */
+    private void resize(int betOfferId, long table) {
+        if (!compareAndSet(table + R_NEXT, 0L, RESIZING)) {
+            awaitResize(betOfferId, table);
+            return;
+        }
+        int capacity = (int) getLong(table + R_MASK) + 1;
+        long next;
+        try {
+            synchronized (this) {
+                next = allocate(capacity << 1, capacity << 1);
+            }
+        } catch (RuntimeException e) {
+            setLong(table + R_NEXT, 0L);
+            throw e;
+        }
+        int nextMask = (capacity << 1) - 1;
+        long copied = 0;
+        for (int i = 0; i < capacity; i++) {
+            long address = slot(table, i);
+            long current;
+            do {
+                current = getLong(address);
+            } while (!compareAndSet(address, current, current == EMPTY ? EMPTY_MOVED : movedOf(current)));
+            if (current != EMPTY) {
+                // 新区域发布前只有扩容线程访问
+                int index = hash(keyOf(current)) & nextMask;
+                while (getLong(slot(next, index)) != EMPTY) {
+                    index = (index + 1) & nextMask;
+                }
+                setLong(slot(next, index), current);
+                copied++;
+            }
+        }
+        setLong(next + R_SIZE, copied);
+        synchronized (this) {
+            setDirectoryTable(betOfferId, next);
+            retire(table, Integer.numberOfTrailingZeros(capacity));
+        }
+    }
+
+    /**
+     * 等待正在进行的扩容结束
+     * @return 投注项当前的额度表地址
+     */
+    private long awaitResize(int betOfferId, long table) {
+        long current;
+        while ((current = tableOf(betOfferId)) == table) {
+            Thread.yield();
+        }
+        return current;
+    }
+
+    /**
+     * 查找投注项的额度表地址
+     * @return 表地址，投注项不存在则返回0
+     */
+    private long tableOf(int betOfferId) {
+        long dir = offerDirectory;
+        int mask = (int) getLong(dir + R_MASK);
+        int index = hash(betOfferId) & mask;
+        for (;;) {
+            long entry = directoryEntry(dir, index);
+            // 先读表地址再读键：写入时先写键再写地址
+            long table = getLong(entry);
+            if (table == 0) {
+                return 0;
+            }
+            if ((int) getLong(entry + 8) == betOfferId) {
+                return table;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    private synchronized long createTable(int betOfferId, int expectedSize) {
+        long table = tableOf(betOfferId);
+        if (table != 0) {
+            return table;
+        }
+        int capacity = MIN_CAPACITY;
+        while (threshold(capacity - 1) < expectedSize) {
+            capacity <<= 1;
+        }
+        table = allocate(capacity, capacity);
+        long dir = offerDirectory;
+        int dirCapacity = (int) getLong(dir + R_MASK) + 1;
+        long offers = getLong(dir + R_SIZE);
+        if (offers + 1 > dirCapacity >>> 1) {
+            // 目录负载因子0.5：复制到两倍大小的新目录后发布，旧目录仍可被并发读取（每项2个long）
+            long grown = allocate(dirCapacity << 2, dirCapacity << 1);
+            for (int i = 0; i < dirCapacity; i++) {
+                long entry = directoryEntry(dir, i);
+                long existing = getLong(entry);
+                if (existing != 0) {
+                    insertDirectoryEntry(grown, (int) getLong(entry + 8), existing);
+                }
+            }
+            setLong(grown + R_SIZE, offers);
+            offerDirectory = grown;
+            retire(dir, Integer.numberOfTrailingZeros(dirCapacity << 1));
+            dir = grown;
+        }
+        insertDirectoryEntry(dir, betOfferId, table);
+        setLong(dir + R_SIZE, offers + 1);
+        return table;
+    }
+
+    /**
+     * 更新目录中投注项的表地址（调用方持有this锁）
+     */
+    private void setDirectoryTable(int betOfferId, long table) {
+        long dir = offerDirectory;
+        int mask = (int) getLong(dir + R_MASK);
+        int index = hash(betOfferId) & mask;
+        while ((int) getLong(directoryEntry(dir, index) + 8) != betOfferId || getLong(directoryEntry(dir, index)) == 0) {
+            index = (index + 1) & mask;
+        }
+        setLong(directoryEntry(dir, index), table);
+    }
+
+    private void insertDirectoryEntry(long dir, int betOfferId, long table) {
+        int mask = (int) getLong(dir + R_MASK);
+        int index = hash(betOfferId) & mask;
+        while (getLong(directoryEntry(dir, index)) != 0) {
+            index = (index + 1) & mask;
+        }
+        long entry = directoryEntry(dir, index);
+        setLong(entry + 8, betOfferId);
+        setLong(entry, table);
+    }
+
+    /**
+     * 分配2^k个long的区域（调用方持有this锁）：优先复用上次运行留下的空闲区域，否则在块尾追加
+     * @param words 区域可用的long数（2的幂；额度表每个槽位1个，目录每项2个）
+     * @param capacity 写入区域头的容量
+     */
+    private long allocate(int words, int capacity) {
+        if (closed) {
+            throw new IllegalStateException("Off-heap stake store is closed");
+        }
+        int sizeClass = Integer.numberOfTrailingZeros(words);
+        long bytes = R_SLOTS + (long) words * 8;
+        long region = freeHeads[sizeClass];
+        if (region != 0) {
+            freeHeads[sizeClass] = getLong(region + R_LINK);
+            for (long offset = 0; offset < bytes; offset += 8) {
+                setLong(region + offset, 0L);
+            }
+        } else {
+            if (bytes > chunkBytes - HEADER_BYTES) {
+                throw new IllegalStateException("Region of " + bytes + " bytes exceeds chunk size " + chunkBytes);
+            }
+            int chunk = (int) (nextFree >>> 32);
+            long offset = (int) nextFree;
+            if (offset + bytes > chunkBytes) {
+                chunk++;
+                offset = 0;
+                ByteBuffer[] grown = Arrays.copyOf(chunks, chunk + 1);
+                try {
+                    grown[chunk] = map(directory, chunk, chunkBytes);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to map stake store chunk " + chunk, e);
+                }
+                chunks = grown;
+            }
+            region = ((long) chunk << 32) | offset;
+            nextFree = region + bytes;
+        }
+        setLong(region + R_MASK, capacity - 1);
+        return region;
+    }
+
+    /**
+     * 将扩容后弃用的区域记入退役链表（调用方持有this锁）
+     */
+    private void retire(long region, int sizeClass) {
+        setLong(region + R_LINK, retiredHeads[sizeClass]);
+        retiredHeads[sizeClass] = region;
+    }
+
+    private long getLong(long address) {
+        return (long) LONGS.getVolatile(chunks[(int) (address >>> 32)], (int) address);
+    }
+
+    private void setLong(long address, long value) {
+        LONGS.setVolatile(chunks[(int) (address >>> 32)], (int) address, value);
+    }
+
+    private boolean compareAndSet(long address, long expected, long value) {
+        return LONGS.compareAndSet(chunks[(int) (address >>> 32)], (int) address, expected, value);
+    }
+
+    private long getAndAdd(long address, long delta) {
+        return (long) LONGS.getAndAdd(chunks[(int) (address >>> 32)], (int) address, delta);
+    }
+
+    private static long getLong(ByteBuffer buffer, int offset) {
+        return (long) LONGS.getVolatile(buffer, offset);
+    }
+
+    private static void setLong(ByteBuffer buffer, int offset, long value) {
+        LONGS.setVolatile(buffer, offset, value);
+    }
+
+    private static long slot(long table, int index) {
+        return table + R_SLOTS + ((long) index << 3);
+    }
+
+    private static long directoryEntry(long dir, int index) {
+        return dir + R_SLOTS + (long) index * DIRECTORY_ENTRY_BYTES;
+    }
+
+    private static int threshold(int mask) {
+        int capacity = mask + 1;
+        return capacity - (capacity >>> 2); // 负载因子0.75
+    }
+
+    private static boolean isMoved(long slot) {
+        return slot != EMPTY && (int) slot <= 0;
+    }
+
+    private static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    private static long movedOf(long slot) {
+        return pack(keyOf(slot), -valueOf(slot));
+    }
+
+    private static int keyOf(long slot) {
+        return (int) (slot >>> 32);
+    }
+
+    private static int valueOf(long slot) {
+        return (int) slot;
+    }
+
+    private static int hash(int key) {
+        return ConcurrentIntIntMap.hash(key);
+    }
+
+    /**
+     * 打开已有镜像：校验文件头和正常关闭标记，不可用时返回null（调用方重建）
+     */
+    private static ByteBuffer openImage(Path directory, int chunkCount) throws IOException {
+        ByteBuffer header = map(directory, 0, HEADER_BYTES);
+        long magic = getLong(header, H_MAGIC);
+        long chunkBytes = getLong(header, H_CHUNK_BYTES);
+        if (magic != MAGIC || chunkBytes < HEADER_BYTES * 2L || chunkBytes > Integer.MAX_VALUE) {
+            System.err.printf("Discarding off-heap stake store in %s: unrecognized header%n", directory);
+            return null;
+        }
+        if (getLong(header, H_CLEAN) != 1L) {
+            System.err.printf("Discarding off-heap stake store in %s: not closed cleanly%n", directory);
+            return null;
+        }
+        for (int i = 0; i < chunkCount; i++) {
+            if (Files.size(chunkPath(directory, i)) != chunkBytes) {
+                System.err.printf("Discarding off-heap stake store in %s: chunk %d is truncated%n", directory, i);
+                return null;
+            }
+        }
+        return map(directory, 0, chunkBytes);
+    }
+
+    private static MappedByteBuffer map(Path directory, int chunk, long bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(chunkPath(directory, chunk),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        }
+    }
+
+    /**
+     * 统计从0开始连续编号的块文件数
+     */
+    private static int countChunks(Path directory) {
+        int count = 0;
+        while (Files.exists(chunkPath(directory, count))) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void deleteChunks(Path directory) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, CHUNK_PREFIX + "*" + CHUNK_SUFFIX)) {
+            for (Path path : stream) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Path chunkPath(Path directory, int chunk) {
+        return directory.resolve(String.format("%s%05d%s", CHUNK_PREFIX, chunk, CHUNK_SUFFIX));
+    }
+}
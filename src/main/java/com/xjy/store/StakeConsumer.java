@@ -0,0 +1,9 @@
+package com.xjy.store;
+
+/**
+ * 遍历投注项下(客户ID, 额度)的回调，避免装箱
+ */
+@FunctionalInterface
+public interface StakeConsumer {
+    void accept(int customerId, int stake);
+}
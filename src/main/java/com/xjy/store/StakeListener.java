@@ -0,0 +1,38 @@
+package com.xjy.store;
+
+/**
+ * 额度提升回调：只有客户在投注项下的最高额度实际提升时才会触发（用于持久化等）
+ * <p>
+ * 回调在写入存储之后、接口返回之前执行；额度按最大值合并，重复或乱序回放结果相同。
+ */
+public interface StakeListener {
+
+    /**
+     * 日志和复制流中额度为该值的记录表示投注项已关闭（正常额度均为正整数）
+     */
+    int CLOSED_STAKE = 0;
+
+    /**
+     * 单条额度提升
+     */
+    void onStakeRaised(int betOfferId, int customerId, int stake);
+
+    /**
+     * 同一投注项下的多条额度提升
+     * @param customerIds 客户ID数组
+     * @param stakes 额度数组
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     */
+    default void onStakesRaised(int betOfferId, int[] customerIds, int[] stakes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            onStakeRaised(betOfferId, customerIds[i], stakes[i]);
+        }
+    }
+
+    /**
+     * 投注项被关闭，其全部额度已删除
+     */
+    default void onOfferClosed(int betOfferId) {
+    }
+}
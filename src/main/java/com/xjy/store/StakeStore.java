@@ -0,0 +1,103 @@
+package com.xjy.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.IntConsumer;
+
+/**
+ * Stake存储：投注项ID → (客户ID → 最高Stake)
+ * <p>
+ * 额度必须为正整数，0表示不存在。
+ */
+public interface StakeStore extends Closeable {
+
+    /**
+     * 原子地将客户在投注项下的额度合并为最大值
+     * @param betOfferId 投注项ID
+     * @param customerId 客户ID
+     * @param stake 本次提交的额度（正整数）
+     * @return 合并前的额度，不存在则返回0
+     */
+    int mergeMax(int betOfferId, int customerId, int stake);
+
+    /**
+     * 批量合并同一投注项下多个客户的额度（投注项只查找一次）
+     * @param customerIds 客户ID数组
+     * @param stakes 额度数组
+     * @param from 起始下标（含）
+     * @param to 结束下标（不含）
+     * @param previous 输出：每条记录合并前的额度（与customerIds下标对应）
+     */
+    default void mergeMaxBatch(int betOfferId, int[] customerIds, int[] stakes, int from, int to, int[] previous) {
+        for (int i = from; i < to; i++) {
+            previous[i] = mergeMax(betOfferId, customerIds[i], stakes[i]);
+        }
+    }
+
+    /**
+     * 查询客户在投注项下的最高额度
+     * @return 最高额度，不存在则返回0
+     */
+    int getStake(int betOfferId, int customerId);
+
+    /**
+     * 投注项是否已有额度记录
+     */
+    boolean containsOffer(int betOfferId);
+
+    /**
+     * 遍历投注项下的所有(客户ID, 额度)，遍历期间的并发写入可能可见也可能不可见
+     */
+    void forEachStake(int betOfferId, StakeConsumer consumer);
+
+    /**
+     * 遍历所有投注项ID
+     */
+    void forEachOffer(IntConsumer consumer);
+
+    /**
+     * 删除投注项的全部额度（关闭已结算的投注项）
+     * @return 投注项存在并被删除时返回true
+     * @throws UnsupportedOperationException 存储不支持删除投注项
+     */
+    default boolean removeOffer(int betOfferId) {
+        throw new UnsupportedOperationException("Closing bet offers is not supported by " + getClass().getSimpleName());
+    }
+
+    /**
+     * 是否支持删除投注项（不支持时removeOffer抛出UnsupportedOperationException）
+     */
+    default boolean supportsRemoveOffer() {
+        return false;
+    }
+
+    /**
+     * 设置投注项被换出内存时的回调（参数为投注项ID，如释放该投注项的名次索引），默认存储不会换出投注项
+     */
+    default void setEvictionListener(IntConsumer listener) {
+    }
+
+    /**
+     * 额度数据占用的堆内存估算（字节），数据不在堆上的存储返回0
+     */
+    default long estimatedHeapBytes() {
+        return 0;
+    }
+
+    /**
+     * 投注项数量
+     */
+    int offerCount();
+
+    /**
+     * 所有投注项的客户额度记录总数
+     */
+    long stakeCount();
+
+    /**
+     * 释放存储占用的资源（停止写入后调用），默认无操作
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,37 @@
+package com.xjy.stream;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JDK HttpServer的SSE输出端：chunked响应，每帧写出后立即flush
+ */
+public class ExchangeStreamSink implements StreamSink {
+    private final HttpExchange exchange;
+    private OutputStream body;
+
+    public ExchangeStreamSink(HttpExchange exchange) {
+        this.exchange = exchange;
+    }
+
+    @Override
+    public void open() throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0); // 0表示chunked，长度未知
+        body = exchange.getResponseBody();
+    }
+
+    @Override
+    public void write(byte[] frame) throws IOException {
+        body.write(frame);
+        body.flush();
+    }
+
+    @Override
+    public void close() {
+        exchange.close();
+    }
+}
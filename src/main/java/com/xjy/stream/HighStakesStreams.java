@@ -0,0 +1,295 @@
+package com.xjy.stream;
+
+import com.xjy.StakeManager;
+import com.xjy.store.ConcurrentIntObjectMap;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Top20变化推送（SSE）：GET /{betOfferId}/highstakes/stream
+ * <p>
+ * StakeManager在Top20变化时回调accept，写入线程只做一次表查询和一次CAS；
+ * 同一投注项的变化按最大推送频率合并，由单个调度线程读取最新的响应体字节（与GET /highstakes共用缓存）并编码成一帧。
+ * 每个订阅者只有一个待发送槽位：写出慢时新帧覆盖旧帧（每帧都是完整的Top20，丢弃中间状态不影响正确性），
+ * 因此慢客户端最多占用一帧内存和一个写线程，不会阻塞写入或其他订阅者。
+ */
+public class HighStakesStreams implements IntConsumer {
+    private static final byte[] DATA_PREFIX = "data: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FRAME_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+    // SSE注释行，用于保持连接并发现已断开的客户端
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+    private static final long HEARTBEAT_SECONDS = 15;
+
+    private final StakeManager stakeManager;
+    private final long minIntervalNanos;
+    private final int maxSubscribers;
+
+    // 投注项ID → 订阅频道（有过订阅的投注项才创建）
+    private final ConcurrentIntObjectMap<OfferChannel> channels = new ConcurrentIntObjectMap<>();
+    // 合并、编码帧的调度线程：同一频道的帧按顺序产生
+    private final ScheduledExecutorService scheduler;
+    // 写出线程：订阅者有待发送帧时才占用
+    private final ExecutorService writers;
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final LongAdder eventsPublished = new LongAdder();
+    private final LongAdder framesCoalesced = new LongAdder();
+
+    /**
+     * @param stakeManager Stake管理器
+     * @param maxEventsPerSecond 每个投注项每秒最多推送的事件数
+     * @param maxSubscribers 同时在线的订阅者上限
+     */
+    public HighStakesStreams(StakeManager stakeManager, int maxEventsPerSecond, int maxSubscribers) {
+        if (maxEventsPerSecond <= 0) {
+            throw new IllegalArgumentException("Max events per second must be positive: " + maxEventsPerSecond);
+        }
+        this.stakeManager = stakeManager;
+        this.minIntervalNanos = TimeUnit.SECONDS.toNanos(1) / maxEventsPerSecond;
+        this.maxSubscribers = maxSubscribers;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "highstakes-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "highstakes-stream-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sendHeartbeats, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Top20变化回调（在写入线程中执行）：有订阅者时安排一次合并推送
+     */
+    @Override
+    public void accept(int betOfferId) {
+        OfferChannel channel = channels.get(betOfferId);
+        if (channel != null && !channel.subscribers.isEmpty()) {
+            channel.schedulePublish();
+        }
+    }
+
+    /**
+     * 订阅投注项的Top20变化：打开输出端后立即推送一次当前Top20
+     * @return 订阅者已达上限时返回false（未调用sink.open）
+     */
+    public boolean subscribe(int betOfferId, StreamSink sink) throws IOException {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return false;
+        }
+        try {
+            sink.open();
+        } catch (IOException | RuntimeException e) {
+            subscriberCount.decrementAndGet();
+            throw e;
+        }
+        OfferChannel channel = channels.computeIfAbsent(betOfferId, OfferChannel::new);
+        Subscriber subscriber = new Subscriber(channel, sink);
+        channel.subscribers.add(subscriber);
+        // 在调度线程中读取当前状态，保证与之后的推送顺序一致
+        scheduler.execute(() -> subscriber.offer(channel.currentFrame()));
+        return true;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    /**
+     * 已推送的Top20变化事件数（每个投注项每次推送计1次，与订阅者数无关）
+     */
+    public long getEventsPublished() {
+        return eventsPublished.sum();
+    }
+
+    /**
+     * 订阅者写出慢、被新帧覆盖而未发送的帧数
+     */
+    public long getFramesCoalesced() {
+        return framesCoalesced.sum();
+    }
+
+    /**
+     * 关闭所有订阅（服务器停止后调用）
+     */
+    public void close() {
+        scheduler.shutdownNow();
+        channels.forEach((betOfferId, channel) -> {
+            for (Subscriber subscriber : channel.subscribers) {
+                subscriber.close();
+            }
+        });
+        writers.shutdown();
+    }
+
+    /**
+     * 向一段时间内没有写出的订阅者发送心跳；客户端已断开时写入失败，订阅随之移除
+     */
+    private void sendHeartbeats() {
+        long idleNanos = TimeUnit.SECONDS.toNanos(HEARTBEAT_SECONDS);
+        long now = System.nanoTime();
+        channels.forEach((betOfferId, channel) -> {
+            for (Subscriber subscriber : channel.subscribers) {
+                if (now - subscriber.lastWriteNanos >= idleNanos) {
+                    subscriber.offerIfIdle(HEARTBEAT);
+                }
+            }
+        });
+    }
+
+    private static byte[] frame(byte[] body) {
+        byte[] frame = new byte[DATA_PREFIX.length + body.length + FRAME_END.length];
+        System.arraycopy(DATA_PREFIX, 0, frame, 0, DATA_PREFIX.length);
+        System.arraycopy(body, 0, frame, DATA_PREFIX.length, body.length);
+        System.arraycopy(FRAME_END, 0, frame, DATA_PREFIX.length + body.length, FRAME_END.length);
+        return frame;
+    }
+
+    /**
+     * 单个投注项的订阅频道
+     */
+    private final class OfferChannel {
+        final int betOfferId;
+        final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+        // 已安排推送但尚未执行
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        volatile long lastPublishNanos;
+
+        // 以下字段只在调度线程访问
+        byte[] lastBody;
+        byte[] lastFrame;
+
+        OfferChannel(int betOfferId) {
+            this.betOfferId = betOfferId;
+            this.lastPublishNanos = System.nanoTime() - minIntervalNanos;
+        }
+
+        /**
+         * 安排推送：距上次推送不足最小间隔时延后执行，期间的多次变化合并为一次
+         */
+        void schedulePublish() {
+            if (scheduled.compareAndSet(false, true)) {
+                long delay = lastPublishNanos + minIntervalNanos - System.nanoTime();
+                try {
+                    scheduler.schedule(this::publish, Math.max(0L, delay), TimeUnit.NANOSECONDS);
+                } catch (RuntimeException e) {
+                    // 服务关闭中，不再推送
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void publish() {
+            // 先清除标记：读取状态之后的变化会重新安排推送
+            scheduled.set(false);
+            byte[] body = stakeManager.getTopStakesResponse(betOfferId);
+            if (body == lastBody) {
+                return; // 响应体字节按快照缓存，同一数组即Top20未变化
+            }
+            lastBody = body;
+            lastFrame = frame(body);
+            lastPublishNanos = System.nanoTime();
+            eventsPublished.increment();
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(lastFrame);
+            }
+        }
+
+        /**
+         * 当前Top20对应的帧（不影响推送去重）
+         */
+        byte[] currentFrame() {
+            byte[] body = stakeManager.getTopStakesResponse(betOfferId);
+            return body == lastBody ? lastFrame : frame(body);
+        }
+    }
+
+    /**
+     * 订阅者：单槽位邮箱，有待发送帧时占用一个写线程依次写出
+     */
+    private final class Subscriber {
+        final OfferChannel channel;
+        final StreamSink sink;
+        final AtomicReference<byte[]> pending = new AtomicReference<>();
+        final AtomicBoolean draining = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile long lastWriteNanos = System.nanoTime();
+
+        Subscriber(OfferChannel channel, StreamSink sink) {
+            this.channel = channel;
+            this.sink = sink;
+        }
+
+        void offer(byte[] frame) {
+            if (pending.getAndSet(frame) != null) {
+                framesCoalesced.increment();
+            }
+            startDrain();
+        }
+
+        /**
+         * 没有待发送帧时才放入（心跳不覆盖数据帧）
+         */
+        void offerIfIdle(byte[] frame) {
+            if (pending.compareAndSet(null, frame)) {
+                startDrain();
+            }
+        }
+
+        private void startDrain() {
+            if (!closed.get() && draining.compareAndSet(false, true)) {
+                try {
+                    writers.execute(this::drain);
+                } catch (RuntimeException e) {
+                    close();
+                }
+            }
+        }
+
+        private void drain() {
+            for (;;) {
+                byte[] frame = pending.getAndSet(null);
+                if (frame == null) {
+                    draining.set(false);
+                    // 释放标记后再检查一次，避免与offer竞争时漏掉新帧
+                    if (pending.get() == null || !draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (closed.get()) {
+                    return;
+                }
+                try {
+                    sink.write(frame);
+                    lastWriteNanos = System.nanoTime();
+                } catch (IOException | RuntimeException e) {
+                    close(); // 客户端已断开
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                channel.subscribers.remove(this);
+                subscriberCount.decrementAndGet();
+                sink.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.xjy.stream;
+
+import java.io.IOException;
+
+/**
+ * 推送流的输出端（与HTTP服务器实现无关）
+ * <p>
+ * open和write由HighStakesStreams保证不会并发调用；write可以阻塞（慢客户端），阻塞只影响该订阅者。
+ */
+public interface StreamSink {
+
+    /**
+     * 发送响应头，订阅生效前调用一次
+     */
+    void open() throws IOException;
+
+    /**
+     * 写出一帧并立即刷出
+     */
+    void write(byte[] frame) throws IOException;
+
+    /**
+     * 关闭连接（写入失败或服务关闭时调用）
+     */
+    void close();
+}
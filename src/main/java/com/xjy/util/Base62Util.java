@@ -1,19 +1,27 @@
 package com.xjy.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Base62编解码：编码和解码都通过数组下标查表，解码直接作用于字符或字节区间，无需截取子串
+ */
 public class Base62Util {
     // Base62编码字符集: A-Z(26) + a-z(26) + 0-9(10)
-    private static final String BASE62_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final char[] BASE62_CHARACTERS =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
     private static final int BASE = 62;
-    // 字符到数值的映射缓存
-    private static final Map<Character, Integer> CHAR_TO_VALUE = new HashMap<>();
+    /**
+     * 非负int编码后的最大字符数（Integer.MAX_VALUE编码为6个字符）
+     */
+    public static final int MAX_ENCODED_LENGTH = 6;
+    // 字符到数值的查找表，下标为字符（仅ASCII），非Base62字符为-1
+    private static final byte[] CHAR_TO_VALUE = new byte[128];
 
     // 静态初始化字符映射
     static {
-        for (int i = 0; i < BASE62_CHARACTERS.length(); i++) {
-            CHAR_TO_VALUE.put(BASE62_CHARACTERS.charAt(i), i);
+        Arrays.fill(CHAR_TO_VALUE, (byte) -1);
+        for (int i = 0; i < BASE62_CHARACTERS.length; i++) {
+            CHAR_TO_VALUE[BASE62_CHARACTERS[i]] = (byte) i;
         }
     }
 
@@ -24,53 +32,134 @@ public class Base62Util {
      * @throws IllegalArgumentException 如果输入为负数
      */
     public static String encode(int number) {
+        char[] chars = new char[encodedLength(number)];
+        encodeTo(number, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * 计算整数Base62编码后的字符数
+     * @param number 非负整数
+     * @return 编码长度（0编码为1个字符）
+     * @throws IllegalArgumentException 如果输入为负数
+     */
+    public static int encodedLength(int number) {
         if (number < 0) {
             throw new IllegalArgumentException("只支持非负整数转换，输入值: " + number);
         }
-        if (number == 0) {
-            return String.valueOf(BASE62_CHARACTERS.charAt(0));
-        }
-
-        StringBuilder sb = new StringBuilder();
-        while (number > 0) {
-            int remainder = number % BASE;
-            sb.append(BASE62_CHARACTERS.charAt(remainder));
-            number = number / BASE;
+        int length = 1;
+        while (number >= BASE) {
+            number /= BASE;
+            length++;
         }
+        return length;
+    }
 
-        // 反转得到正确结果（因为我们是从低位开始处理的）
-        return sb.reverse().toString();
+    /**
+     * 将整数的Base62编码写入字符数组，避免创建中间StringBuilder
+     * @param number 非负整数
+     * @param dest 目标数组，需预留encodedLength(number)个字符
+     * @param offset 写入起始位置
+     * @return 写入结束位置（不含）
+     * @throws IllegalArgumentException 如果输入为负数
+     */
+    public static int encodeTo(int number, char[] dest, int offset) {
+        int end = offset + encodedLength(number);
+        // 从低位开始由后往前写，无需反转
+        int pos = end;
+        do {
+            dest[--pos] = BASE62_CHARACTERS[number % BASE];
+            number /= BASE;
+        } while (number > 0);
+        return end;
     }
 
     /**
      * 将Base62编码字符串转换为Integer
-     * @param base62Str Base62编码字符串
+     * @param base62Str Base62编码字符串（最多MAX_ENCODED_LENGTH个字符）
      * @return 对应的整数
-     * @throws IllegalArgumentException 如果输入包含无效字符或转换后超出Integer范围
+     * @throws IllegalArgumentException 如果输入为空、超过MAX_ENCODED_LENGTH个字符（即使带前导'A'且数值在范围内）、
+     *         包含无效字符或转换后超出Integer范围；不想处理异常时使用返回-1的区间版本
      */
     public static int decode(String base62Str) {
         if (base62Str == null || base62Str.isEmpty()) {
             throw new IllegalArgumentException("Base62字符串不能为空");
         }
+        int value = decode(base62Str, 0, base62Str.length());
+        if (value < 0) {
+            throw new IllegalArgumentException("无效的Base62字符串或数值超出Integer范围: " + base62Str);
+        }
+        return value;
+    }
 
-        long result = 0; // 使用long避免中间计算溢出
-        for (int i = 0; i < base62Str.length(); i++) {
-            char c = base62Str.charAt(i);
-            Integer value = CHAR_TO_VALUE.get(c);
-
-            if (value == null) {
-                throw new IllegalArgumentException("无效的Base62字符: " + c);
+    /**
+     * 解码字符区间[from, to)，不抛出异常，供校验路径使用
+     * @return 对应的非负整数；区间为空、包含非Base62字符或超出Integer范围时返回-1
+     */
+    public static int decode(CharSequence chars, int from, int to) {
+        if (from >= to || to - from > MAX_ENCODED_LENGTH) {
+            return -1;
+        }
+        // 最多6个字符，62^6 < 2^63，用long累加后统一检查范围
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            int value = valueOf(chars.charAt(i));
+            if (value < 0) {
+                return -1;
             }
+            result = result * BASE + value;
+        }
+        return result > Integer.MAX_VALUE ? -1 : (int) result;
+    }
 
-            // 计算: result = result * 62 + 当前字符值
+    /**
+     * 解码ASCII字节区间[from, to)，规则与字符区间相同
+     * @return 对应的非负整数，无效时返回-1
+     */
+    public static int decode(byte[] bytes, int from, int to) {
+        if (from >= to || to - from > MAX_ENCODED_LENGTH) {
+            return -1;
+        }
+        long result = 0;
+        for (int i = from; i < to; i++) {
+            int value = valueOf((char) (bytes[i] & 0xFF));
+            if (value < 0) {
+                return -1;
+            }
             result = result * BASE + value;
+        }
+        return result > Integer.MAX_VALUE ? -1 : (int) result;
+    }
 
-            // 检查是否超出Integer范围
-            if (result > Integer.MAX_VALUE) {
-                throw new IllegalArgumentException("Base62字符串对应的数值超出Integer范围: " + base62Str);
+    /**
+     * 判断字符区间[from, to)是否全部为Base62字符
+     */
+    public static boolean isBase62(CharSequence chars, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (valueOf(chars.charAt(i)) < 0) {
+                return false;
             }
         }
+        return true;
+    }
 
-        return (int) result;
+    /**
+     * 判断ASCII字节区间[from, to)是否全部为Base62字符
+     */
+    public static boolean isBase62(byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (valueOf((char) (bytes[i] & 0xFF)) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 单个字符的数值
+     * @return 0~61，非Base62字符返回-1
+     */
+    private static int valueOf(char c) {
+        return c < CHAR_TO_VALUE.length ? CHAR_TO_VALUE[c] : -1;
     }
 }
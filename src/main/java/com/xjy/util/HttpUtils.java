@@ -1,6 +1,7 @@
 package com.xjy.util;
 
 import com.sun.net.httpserver.HttpExchange;
+import com.xjy.model.ApiResponse;
 
 import java.io.*;
 import java.net.URI;
@@ -27,7 +28,11 @@ public class HttpUtils {
 
     // 发送成功响应（含响应体）
     public static void sendSuccess(HttpExchange exchange, String responseBody) throws IOException {
-        byte[] responseBytes = responseBody.getBytes(StandardCharsets.UTF_8);
+        sendSuccess(exchange, responseBody.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 发送成功响应（响应体已编码为UTF-8字节）
+    public static void sendSuccess(HttpExchange exchange, byte[] responseBytes) throws IOException {
         exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
         exchange.sendResponseHeaders(200, responseBytes.length);
         try (OutputStream os = exchange.getResponseBody()) {
@@ -37,11 +42,115 @@ public class HttpUtils {
         }
     }
 
+    // 按接口响应发送（状态码 + 可选响应体）
+    public static void sendResponse(HttpExchange exchange, ApiResponse response) throws IOException {
+        byte[] body = response.getBody();
+        if (body == null) {
+            exchange.sendResponseHeaders(response.getStatusCode(), -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(response.getStatusCode(), body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        } finally {
+            exchange.close();
+        }
+    }
+
     // 发送无内容成功响应（204）
     public static void sendNoContent(HttpExchange exchange) throws IOException {
         exchange.sendResponseHeaders(204, -1); // -1表示无响应体
         exchange.close();
     }
+    // 读取请求体原始字节（读取失败返回空数组）；有Content-Length时按长度读取，小请求体只分配一次
+    public static byte[] readRequestBodyBytes(HttpExchange exchange) {
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null) {
+                return inputStream.readNBytes(Integer.parseInt(contentLength.trim()));
+            }
+            return inputStream.readAllBytes();
+        } catch (Exception e) {
+            return new byte[0];
+        }
+    }
+
+    /**
+     * 单次扫描解析请求体中的正整数额度（等价于Integer.parseInt且结果>0，仅接受ASCII数字）
+     * @param body 请求体字节
+     * @return 额度，格式无效、溢出或非正数时返回-1
+     */
+    public static int parsePositiveInt(byte[] body) {
+        if (body == null || body.length == 0) {
+            return -1;
+        }
+        int i = body[0] == '+' ? 1 : 0;
+        if (i == body.length) {
+            return -1;
+        }
+        long value = 0;
+        for (; i < body.length; i++) {
+            int digit = body[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return value > 0 ? (int) value : -1;
+    }
+
+    /**
+     * 从查询字符串中直接提取单个参数，不构建Map；同名参数取最后一个（与parseFormParams一致）
+     * @param query 未解码的查询字符串（可为null）
+     * @param name 参数名
+     * @return 解码后的参数值，不存在返回null
+     */
+    public static String getQueryParam(String query, String name) {
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+        String value = null;
+        int length = query.length();
+        int start = 0;
+        while (start <= length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            int eq = query.indexOf('=', start);
+            int keyEnd = eq < 0 || eq > end ? end : eq;
+            if (keyMatches(query, start, keyEnd, name)) {
+                value = keyEnd == end ? "" : decodeIfNeeded(query.substring(keyEnd + 1, end));
+            }
+            start = end + 1;
+        }
+        return value;
+    }
+
+    private static boolean keyMatches(String query, int start, int end, String name) {
+        if (end - start == name.length() && query.regionMatches(start, name, 0, name.length())) {
+            return true;
+        }
+        // 参数名含编码字符时走解码比较（少见）
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '+') {
+                return URLDecoder.decode(query.substring(start, end), StandardCharsets.UTF_8).equals(name);
+            }
+        }
+        return false;
+    }
+
+    private static String decodeIfNeeded(String value) {
+        return value.indexOf('%') < 0 && value.indexOf('+') < 0
+                ? value : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
     public static String readRequestBody(HttpExchange exchange)  {
         try (InputStream inputStream = exchange.getRequestBody()) {
             return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
@@ -82,7 +191,7 @@ public class HttpUtils {
     }
 
     // 解析表单格式的参数字符串为 Map
-    private static Map<String, String> parseFormParams(String body) {
+    public static Map<String, String> parseFormParams(String body) {
         Map<String, String> params = new HashMap<>();
         if (body == null || body.isBlank()) {
             return params;
@@ -0,0 +1,72 @@
+package com.xjy.util;
+
+import java.security.SecureRandom;
+
+/**
+ * 会话密钥生成器：随机前缀 + 客户ID的Base62编码
+ * <p>
+ * 复用少量按线程分片的SecureRandom实例，每次批量取随机字节并拒绝采样映射到62个字符（无取模偏差），
+ * 避免每次生成都新建SecureRandom；分片按线程ID选择，对虚拟线程同样有效。
+ */
+public class SessionKeyGenerator {
+    private static final String AVAILABLE_CHARSET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    // 小于该值的字节按62取模是均匀的，其余字节丢弃
+    private static final int REJECT_THRESHOLD = 256 - 256 % AVAILABLE_CHARSET.length();
+    // 每个分片一次取出的随机字节数
+    private static final int BUFFER_SIZE = 256;
+
+    private final int randomLength;
+    private final Stripe[] stripes;
+
+    /**
+     * @param randomLength 随机前缀长度
+     */
+    public SessionKeyGenerator(int randomLength) {
+        this.randomLength = randomLength;
+        // 分片数取不小于2倍CPU核数的2的幂
+        int stripeCount = 1;
+        while (stripeCount < Runtime.getRuntime().availableProcessors() * 2) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * 生成会话密钥
+     * @param customerId 客户ID（非负）
+     * @return 随机前缀 + Base62(customerId)
+     */
+    public String generate(int customerId) {
+        char[] key = new char[randomLength + Base62Util.encodedLength(customerId)];
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        stripe.fill(key, randomLength);
+        Base62Util.encodeTo(customerId, key, randomLength);
+        return new String(key);
+    }
+
+    /**
+     * 单个分片：独立的SecureRandom及其随机字节缓冲
+     */
+    private static final class Stripe {
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position = BUFFER_SIZE;
+
+        synchronized void fill(char[] dest, int length) {
+            int i = 0;
+            while (i < length) {
+                if (position == BUFFER_SIZE) {
+                    random.nextBytes(buffer);
+                    position = 0;
+                }
+                int b = buffer[position++] & 0xFF;
+                if (b < REJECT_THRESHOLD) {
+                    dest[i++] = AVAILABLE_CHARSET.charAt(b % AVAILABLE_CHARSET.length());
+                }
+            }
+        }
+    }
+}
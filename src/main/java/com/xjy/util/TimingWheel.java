@@ -0,0 +1,82 @@
+package com.xjy.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * 时间轮：按到期时间把元素放入环形槽位，推进时只处理已到期槽位中的元素，
+ * 工作量与实际到期的元素数量成正比，不需要全量扫描。
+ * <p>
+ * schedule可由任意线程并发调用；advance只能由单个线程（如定时任务线程）调用。
+ * 到期时间超过一圈的元素在所在槽位被处理时重新放回，因此不限制到期时间跨度。
+ */
+public class TimingWheel<T> {
+    private final long tickMillis;
+    private final ConcurrentLinkedQueue<T>[] slots;
+    private final ToLongFunction<T> deadlineOf;
+
+    // 已处理到的tick（含），只由advance线程写
+    private volatile long processedTick;
+
+    /**
+     * @param tickMillis 每个槽位的时间跨度（毫秒）
+     * @param slotCount 槽位数（覆盖常见到期跨度可避免元素重复放回）
+     * @param deadlineOf 获取元素到期时间（毫秒时间戳）
+     * @param now 当前时间（毫秒时间戳）
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int slotCount, ToLongFunction<T> deadlineOf, long now) {
+        this.tickMillis = tickMillis;
+        this.deadlineOf = deadlineOf;
+        this.slots = new ConcurrentLinkedQueue[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.processedTick = now / tickMillis - 1;
+    }
+
+    /**
+     * 按元素的到期时间放入对应槽位
+     */
+    public void schedule(T item) {
+        long tick = deadlineOf.applyAsLong(item) / tickMillis;
+        // 所在tick已处理过：放入下一个待处理槽位
+        long next = processedTick + 1;
+        if (tick < next) {
+            tick = next;
+        }
+        slots[(int) (tick % slots.length)].add(item);
+    }
+
+    /**
+     * 推进到当前时间，处理所有已完整经过的tick中到期的元素
+     * @param now 当前时间（毫秒时间戳）
+     * @param onExpired 到期元素回调
+     * @return 到期元素数量
+     */
+    public int advance(long now, Consumer<T> onExpired) {
+        // 当前tick尚未结束，只处理到上一个tick
+        long target = now / tickMillis - 1;
+        int expired = 0;
+        for (long tick = processedTick + 1; tick <= target; tick++) {
+            ConcurrentLinkedQueue<T> slot = slots[(int) (tick % slots.length)];
+            // 先推进processedTick，之后并发schedule的元素会放入后续槽位
+            processedTick = tick;
+            // 只处理本轮开始时已在槽位中的元素，期间放回的元素留到下一圈
+            for (int remaining = slot.size(); remaining > 0; remaining--) {
+                T item = slot.poll();
+                if (item == null) {
+                    break;
+                }
+                if (deadlineOf.applyAsLong(item) < now) {
+                    onExpired.accept(item);
+                    expired++;
+                } else {
+                    schedule(item);
+                }
+            }
+        }
+        return expired;
+    }
+}